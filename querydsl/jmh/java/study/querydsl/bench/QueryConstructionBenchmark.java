@@ -0,0 +1,118 @@
+package study.querydsl.bench;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.openjdk.jmh.annotations.*;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.entity.QMember;
+
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+
+/**
+ * SQL 실행 전에 드는 비용만 잰다. (Q타입 별칭, BooleanBuilder, CaseBuilder, concat 체인 + JPQL 직렬화)
+ * EntityManager 없이 new JPAQuery<>()로 만들고 toString()으로 JPQL까지만 뽑는다.
+ *
+ * QueryDslBasicTest 처럼 매번 별칭, 식을 새로 만든다.
+ * (별칭, CaseBuilder, concat 식을 상수로 빼 둔 버전도 재봤는데 서브쿼리는 거의 같았고
+ * 나머지는 쓰는 곳이 없어서 뺐다. 직렬화 비용이 대부분이다.)
+ *
+ * 할당량은 JMH gc 프로파일러(-prof gc)로 본다. (gc.alloc.rate.norm = 호출당 바이트)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryConstructionBenchmark {
+
+    String usernameParam = "member1";
+    Integer ageParam = 10;
+
+    @Benchmark
+    public String search() {
+        return new JPAQuery<Void>()
+                .select(member)
+                .from(member)
+                .where(member.username.eq(usernameParam), member.age.eq(ageParam))
+                .toString();
+    }
+
+    @Benchmark
+    public String dynamicQuery_BooleanBuilder() {
+        BooleanBuilder builder = new BooleanBuilder();
+        if (usernameParam != null) {
+            builder.and(member.username.eq(usernameParam));
+        }
+        if (ageParam != null) {
+            builder.and(member.age.eq(ageParam));
+        }
+        return new JPAQuery<Void>()
+                .select(member)
+                .from(member)
+                .where(builder)
+                .toString();
+    }
+
+    @Benchmark
+    public String join() {
+        return new JPAQuery<Void>()
+                .select(member)
+                .from(member)
+                .join(member.team, team)
+                .where(team.name.eq("teamA"))
+                .toString();
+    }
+
+    @Benchmark
+    public String subQuery() {
+        QMember memberSub = new QMember("memberSub");
+        return new JPAQuery<Void>()
+                .select(member)
+                .from(member)
+                .where(member.age.eq(JPAExpressions.select(memberSub.age.max()).from(memberSub)))
+                .toString();
+    }
+
+    @Benchmark
+    public String complexCase() {
+        return new JPAQuery<Void>()
+                .select(new CaseBuilder()
+                        .when(member.age.between(0, 20)).then("0~20살")
+                        .when(member.age.between(21, 30)).then("21~30살")
+                        .otherwise("기타"))
+                .from(member)
+                .toString();
+    }
+
+    @Benchmark
+    public String concat() {
+        return new JPAQuery<Void>()
+                .select(member.username.concat("_").concat(member.age.stringValue()))
+                .from(member)
+                .where(member.username.eq(usernameParam))
+                .toString();
+    }
+
+    @Benchmark
+    public String projection() {
+        return new JPAQuery<Void>()
+                .select(new QMemberDto(member.username, member.age))
+                .from(member)
+                .toString();
+    }
+
+    /**
+     * 직렬화 없이 식 트리만 만드는 비용
+     */
+    @Benchmark
+    public Object buildOnly_subQuery() {
+        QMember memberSub = new QMember("memberSub");
+        return member.age.eq(JPAExpressions.select(memberSub.age.max()).from(memberSub));
+    }
+}
@@ -2,12 +2,28 @@ package study.querydsl;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import study.querydsl.repository.support.BulkDmlExecutor;
+import study.querydsl.repository.support.QueryAdmissionGuard;
+import study.querydsl.repository.support.QuerydslQueryFactory;
+
+import javax.persistence.EntityManager;
 
 @SpringBootApplication
+@EnableScheduling
 public class QuerydslApplication {
 
 	public static void main(String[] args) {
 		SpringApplication.run(QuerydslApplication.class, args);
 	}
 
+	// 스프링이 주입해주는 em은 트랜잭션 단위로 바인딩되는 프록시라서 싱글톤 빈으로 공유해도 된다.
+	// JPAQueryFactory 타입으로 주입받아도 되고, 읽기 전용 모드가 필요하면 QuerydslQueryFactory로 받는다.
+	// update/delete는 BulkDmlExecutor를 거쳐서 테이블 버전, 집계 컬럼, 검색 view가 같이 맞춰진다.
+	@Bean
+	QuerydslQueryFactory jpaQueryFactory(EntityManager em, QueryAdmissionGuard guard, BulkDmlExecutor bulkDml) {
+		return new QuerydslQueryFactory(em, guard, bulkDml);
+	}
+
 }
@@ -0,0 +1,255 @@
+package study.querydsl.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * 조회 결과 캐시(VersionedResultCache) 스냅샷 - 재시작해도 캐시를 데운 상태로 시작한다.
+ *
+ * 주기적으로(querydsl.result-cache.snapshot-interval-ms) 그리고 종료할 때 등록된 캐시 전부를 파일 하나에 뜬다.
+ * 기동할 때(ApplicationRunner, 웜업(QueryWarmupRunner)과 readiness 전) 파일을 메모리 매핑해서 읽고,
+ * 도장(stamp)이 지금 TableVersions와 같은 항목만 캐시에 다시 넣는다. 나머지는 디코딩하지 않고 길이만큼 건너뛴다.
+ * 버전은 table_version에 남아 있으니 재시작 사이에 안 바뀐 테이블의 결과는 그대로 쓸 수 있다.
+ *
+ * 파일 형식 (빅 엔디언)
+ *   int magic, long database id, int 캐시 수
+ *   캐시마다 : 이름, 엔티티 이름들, int 항목 수
+ *     항목마다 : long 도장들, int 길이, (키 + 결과) 바이트
+ *   long CRC32
+ * 1. database id가 다르면(다른 DB, 새로 만든 스키마) 통째로 버린다.
+ * 2. 쓰기는 메모리에서 다 만든 뒤 임시 파일에 매핑해서 쓰고 이름을 바꾼다. 쓰다가 죽어도 이전 파일이 남는다.
+ * 3. 결과 형식(ResultCodec)을 바꾸면 캐시 이름도 바꾼다. 이름이 다르면 읽지 않는다.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ResultCacheSnapshot implements ApplicationRunner {
+
+    private static final int MAGIC = 0x51524331; // "QRC1"
+    private static final int HEADER_AND_CHECKSUM = 4 + 8 + 4 + 8;
+
+    private final TableVersions tableVersions;
+    private final Path file;
+    private final ConcurrentMap<String, VersionedResultCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    public ResultCacheSnapshot(TableVersions tableVersions,
+                               @Value("${querydsl.result-cache.snapshot-file:-}") String file) {
+        this.tableVersions = tableVersions;
+        this.file = "-".equals(file) || file.isEmpty() ? null : Paths.get(file);
+    }
+
+    public void register(VersionedResultCache<?, ?> cache) {
+        if (caches.putIfAbsent(cache.getName(), cache) != null) {
+            throw new IllegalStateException("result cache already registered: " + cache.getName());
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        try {
+            load(file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("ignored result cache snapshot {}", file, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${querydsl.result-cache.snapshot-interval-ms:60000}",
+            initialDelayString = "${querydsl.result-cache.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        if (file == null) {
+            return;
+        }
+        try {
+            write(file);
+        } catch (IOException e) {
+            log.warn("failed to write result cache snapshot {}", file, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        snapshot();
+    }
+
+    /**
+     * @return 쓴 항목 수
+     */
+    public long write(Path target) throws IOException {
+        long start = System.nanoTime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeLong(tableVersions.getDatabaseId());
+        out.writeInt(caches.size());
+
+        ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+        long written = 0;
+        for (VersionedResultCache<?, ?> cache : caches.values()) {
+            written += writeCache(cache, out, scratch);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes.size());
+            buffer.put(bytes.toByteArray());
+            buffer.force();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        log.debug("wrote {} cached results ({} bytes) to {} in {}ms",
+                written, bytes.size(), target, (System.nanoTime() - start) / 1_000_000);
+        return written;
+    }
+
+    /**
+     * @return 캐시에 다시 넣은 항목 수
+     */
+    public long load(Path source) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_AND_CHECKSUM || size > Integer.MAX_VALUE) {
+                log.warn("ignored result cache snapshot {} of {} bytes", source, size);
+                return 0;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            ByteBuffer body = buffer.duplicate();
+            body.limit((int) size - 8);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if (crc.getValue() != buffer.getLong((int) size - 8)) {
+                log.warn("ignored result cache snapshot {}: checksum mismatch", source);
+                return 0;
+            }
+
+            buffer.limit((int) size - 8);
+            if (buffer.getInt() != MAGIC) {
+                log.warn("ignored result cache snapshot {}: unknown format", source);
+                return 0;
+            }
+            if (buffer.getLong() != tableVersions.getDatabaseId()) {
+                log.info("ignored result cache snapshot {}: taken from another database", source);
+                return 0;
+            }
+
+            long[] counts = new long[2]; // 넣은 것, 버린 것
+            int cacheCount = buffer.getInt();
+            for (int i = 0; i < cacheCount; i++) {
+                readCache(buffer, counts);
+            }
+            log.info("loaded {} cached results from {} ({} stale) in {}ms",
+                    counts[0], source, counts[1], (System.nanoTime() - start) / 1_000_000);
+            return counts[0];
+        }
+    }
+
+    private static <K, V> long writeCache(VersionedResultCache<K, V> cache, DataOutputStream out,
+                                          ByteArrayOutputStream scratch) throws IOException {
+        ResultCodec.writeString(out, cache.getName());
+        Class<?>[] entityTypes = cache.getEntityTypes();
+        out.writeInt(entityTypes.length);
+        for (Class<?> entityType : entityTypes) {
+            ResultCodec.writeString(out, entityType.getSimpleName());
+        }
+
+        List<Map.Entry<K, VersionedResultCache.Entry<V>>> entries = cache.entries();
+        out.writeInt(entries.size());
+        DataOutputStream scratchOut = new DataOutputStream(scratch);
+        for (Map.Entry<K, VersionedResultCache.Entry<V>> entry : entries) {
+            for (long version : entry.getValue().stamp) {
+                out.writeLong(version);
+            }
+            scratch.reset();
+            cache.getKeyCodec().write(entry.getKey(), scratchOut);
+            cache.getValueCodec().write(entry.getValue().value, scratchOut);
+            scratchOut.flush();
+            out.writeInt(scratch.size());
+            scratch.writeTo(out);
+        }
+        return entries.size();
+    }
+
+    private void readCache(ByteBuffer buffer, long[] counts) {
+        String name = ResultCodec.readString(buffer);
+        String[] entityNames = new String[buffer.getInt()];
+        for (int i = 0; i < entityNames.length; i++) {
+            entityNames[i] = ResultCodec.readString(buffer);
+        }
+
+        VersionedResultCache<?, ?> cache = caches.get(name);
+        long[] current = cache != null && Arrays.equals(entityNames, simpleNames(cache.getEntityTypes()))
+                ? cache.currentStamp()
+                : null;
+
+        int entryCount = buffer.getInt();
+        long[] stamp = new long[entityNames.length];
+        for (int i = 0; i < entryCount; i++) {
+            for (int j = 0; j < stamp.length; j++) {
+                stamp[j] = buffer.getLong();
+            }
+            int length = buffer.getInt();
+            if (current != null && Arrays.equals(stamp, current)) {
+                ByteBuffer entry = buffer.slice();
+                entry.limit(length);
+                restore(cache, entry, stamp.clone());
+                counts[0]++;
+            } else {
+                counts[1]++;
+            }
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    private static <K, V> void restore(VersionedResultCache<K, V> cache, ByteBuffer entry, long[] stamp) {
+        K key = cache.getKeyCodec().read(entry);
+        V value = cache.getValueCodec().read(entry);
+        cache.put(key, stamp, value);
+    }
+
+    private static String[] simpleNames(Class<?>[] types) {
+        String[] names = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            names[i] = types[i].getSimpleName();
+        }
+        return names;
+    }
+}
@@ -0,0 +1,93 @@
+package study.querydsl.cache;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 캐시 키/결과를 스냅샷 파일에 쓰고 읽는 방법 (ResultCacheSnapshot)
+ * 쓰기는 DataOutput으로, 읽기는 매핑된 ByteBuffer에서 바로 한다. 필드 순서만 맞으면 된다.
+ */
+public interface ResultCodec<T> {
+
+    void write(T value, DataOutput out) throws IOException;
+
+    T read(ByteBuffer in);
+
+    static <T> ResultCodec<T> of(Writer<T> writer, Function<ByteBuffer, T> reader) {
+        return new ResultCodec<T>() {
+            @Override
+            public void write(T value, DataOutput out) throws IOException {
+                writer.write(value, out);
+            }
+
+            @Override
+            public T read(ByteBuffer in) {
+                return reader.apply(in);
+            }
+        };
+    }
+
+    /**
+     * 원소 수 + 원소들. 읽은 목록은 수정할 수 없다.
+     */
+    static <E> ResultCodec<List<E>> list(ResultCodec<E> element) {
+        return of((values, out) -> {
+            out.writeInt(values.size());
+            for (E value : values) {
+                element.write(value, out);
+            }
+        }, in -> {
+            int size = in.getInt();
+            List<E> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(element.read(in));
+            }
+            return Collections.unmodifiableList(values);
+        });
+    }
+
+    /**
+     * UTF-8 바이트 수 + 바이트. null 은 -1
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeNullableInt(DataOutput out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    static Integer readNullableInt(ByteBuffer in) {
+        return in.get() != 0 ? in.getInt() : null;
+    }
+
+    @FunctionalInterface
+    interface Writer<T> {
+        void write(T value, DataOutput out) throws IOException;
+    }
+}
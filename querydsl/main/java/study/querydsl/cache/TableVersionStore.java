@@ -0,0 +1,138 @@
+package study.querydsl.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * table_version 테이블 (TableVersion)
+ *
+ * TableVersions 메모리 카운터의 사본. 사용자 트랜잭션 안에서는 건드리지 않는다.
+ * (버전 줄을 트랜잭션마다 잡으면 회원/팀을 바꾸는 모든 쓰기가 같은 줄에서 줄을 서고, 잡는 순서가 엇갈리면 데드락이 난다.)
+ * TableVersions가 커밋된 증가분을 모아 두었다가 짧은 트랜잭션 하나로 더한다. (add)
+ *
+ * 특수 줄
+ * 1. DATABASE_ROW : 버전 기록의 계보(database id). 처음 쓸 때 임의의 값을 만든다.
+ *    ddl-auto create 등으로 DB가 새로 만들어지면 바뀌어서, 이전 DB에서 만든 ETag와 스냅샷이 안 맞는다.
+ * 2. CLEAN_ROW : 1 이면 지난번에 정상 종료해서 증가분을 다 저장했다. 실행 중에는 0 이다.
+ *    기동할 때 0 이면(비정상 종료) 저장 못 한 증가분이 있을 수 있으니 database id를 새로 만든다.
+ *    그래야 저장된 버전이 예전 도장과 우연히 같아져서 옛날 결과를 쓰는 일이 없다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TableVersionStore {
+
+    public static final String DATABASE_ROW = "@database";
+    public static final String CLEAN_ROW = "@clean";
+
+    private static final String SELECT_SQL = "select table_name, version from table_version";
+    private static final String INSERT_SQL = "insert into table_version (table_name, version) values (?, ?)";
+    private static final String SET_SQL = "update table_version set version = ? where table_name = ?";
+    private static final String ADD_SQL = "update table_version set version = version + ? where table_name = ?";
+
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 없는 줄을 만들고 전부 읽는다. 비정상 종료 뒤면 database id를 바꾼다. 읽은 뒤에는 실행 중(CLEAN_ROW = 0)으로 표시한다.
+     */
+    Map<String, Long> load(Collection<String> tables) {
+        return transactionTemplate.execute(status -> session().doReturningWork(connection -> {
+            Map<String, Long> versions = select(connection);
+            Long databaseId = versions.get(DATABASE_ROW);
+            if (databaseId == null) {
+                databaseId = new SecureRandom().nextLong();
+                insert(connection, DATABASE_ROW, databaseId);
+                log.info("initialized table_version for a new database ({})", Long.toString(databaseId, Character.MAX_RADIX));
+            } else if (!Long.valueOf(1).equals(versions.get(CLEAN_ROW))) {
+                databaseId = new SecureRandom().nextLong();
+                set(connection, DATABASE_ROW, databaseId);
+                log.warn("table_version was not saved on the last shutdown. stored ETags and result snapshots are discarded");
+            }
+            versions.put(DATABASE_ROW, databaseId);
+            set(connection, CLEAN_ROW, 0);
+            versions.remove(CLEAN_ROW);
+
+            for (String table : tables) {
+                if (!versions.containsKey(table)) {
+                    insert(connection, table, 0);
+                    versions.put(table, 0L);
+                }
+            }
+            return versions;
+        }));
+    }
+
+    /**
+     * 테이블별 증가분을 더한다. 줄은 이름 순서로 잡는다.
+     */
+    void add(Map<String, Long> increments) {
+        Map<String, Long> sorted = new TreeMap<>(increments);
+        transactionTemplate.executeWithoutResult(status -> session().doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(ADD_SQL)) {
+                for (Map.Entry<String, Long> increment : sorted.entrySet()) {
+                    statement.setLong(1, increment.getValue());
+                    statement.setString(2, increment.getKey());
+                    if (statement.executeUpdate() == 0) {
+                        // 기동 뒤에 스키마가 다시 만들어진 경우 등
+                        insert(connection, increment.getKey(), increment.getValue());
+                    }
+                }
+            }
+        }));
+    }
+
+    /**
+     * 증가분을 다 저장한 뒤에 부른다.
+     */
+    void markClean() {
+        transactionTemplate.executeWithoutResult(status -> session().doWork(connection -> set(connection, CLEAN_ROW, 1)));
+    }
+
+    private Session session() {
+        return em.unwrap(Session.class);
+    }
+
+    private static Map<String, Long> select(Connection connection) throws SQLException {
+        Map<String, Long> versions = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_SQL);
+             ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                versions.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return versions;
+    }
+
+    private static void set(Connection connection, String table, long version) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SET_SQL)) {
+            statement.setLong(1, version);
+            statement.setString(2, table);
+            if (statement.executeUpdate() == 0) {
+                insert(connection, table, version);
+            }
+        }
+    }
+
+    private static void insert(Connection connection, String table, long version) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+            statement.setString(1, table);
+            statement.setLong(2, version);
+            statement.executeUpdate();
+        }
+    }
+}
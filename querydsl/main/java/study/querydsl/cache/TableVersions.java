@@ -0,0 +1,181 @@
+package study.querydsl.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.EntityType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 엔티티(테이블)별 버전 카운터
+ *
+ * 엔티티 리스너와 벌크 연산(BulkDmlListener)이 테이블이 바뀔 때마다 올린다. (TableVersionListener)
+ * 조회 결과가 이 버전들과 요청 파라미터로만 정해진다면, 버전이 그대로일 때 결과도 그대로다.
+ * -> etag()로 ETag를 만들어 두고 If-None-Match가 같으면 쿼리 없이 304를 돌려준다.
+ * -> stamp()를 결과와 같이 저장해 두고 버전이 그대로면 결과를 다시 쓴다. (VersionedResultCache)
+ *
+ * 1. 버전은 커밋이 끝난 뒤에 올린다.
+ *    커밋 전에 올리면 그 사이 들어온 조회가 새 ETag에 옛날 결과를 담아 가서, 클라이언트가 계속 옛날 결과를 쓴다.
+ *    커밋 후에 올리면 반대로 옛날 ETag에 새 결과가 갈 수는 있는데, 다음 요청에서 200으로 다시 받으니 괜찮다.
+ * 2. 트랜잭션 하나에서 여러 번 바꿔도 커밋 때 한 번만 올린다.
+ * 3. 올린 만큼을 모아 두었다가 querydsl.table-versions.save-interval-ms 마다, 그리고 종료할 때 table_version에 더한다. (TableVersionStore)
+ *    사용자 트랜잭션에서는 버전 줄을 잡지 않으니 쓰기끼리 그 줄에서 줄을 서거나 데드락이 나지 않는다.
+ *    기동할 때 거기서 읽어 오니 재시작해도 버전이 이어지고, ETag와 저장해 둔 결과도 재시작 전 것을 그대로 쓸 수 있다.
+ *    비정상 종료로 저장 못 한 증가분이 있으면 database id가 바뀌어서 예전 ETag와 스냅샷은 통째로 안 맞는다.
+ *    ETag 앞에는 기동 시각 대신 database id를 넣는다.
+ *    서버가 여러 대면 메모리 카운터가 다른 서버의 변경을 모르니 이 방식은 안 맞는다.
+ */
+@Component
+@RequiredArgsConstructor
+public class TableVersions {
+
+    private static final Object PENDING = TableVersions.class.getName() + ".pending";
+
+    private final TableVersionStore store;
+    private final EntityManagerFactory emf;
+
+    private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> unsaved = new ConcurrentHashMap<>();
+    private volatile long databaseId;
+    private volatile String epoch;
+
+    @PostConstruct
+    public void load() {
+        List<String> tables = new ArrayList<>();
+        for (EntityType<?> entityType : emf.getMetamodel().getEntities()) {
+            tables.add(entityType.getJavaType().getSimpleName());
+        }
+
+        Map<String, Long> stored = store.load(tables);
+        databaseId = stored.remove(TableVersionStore.DATABASE_ROW);
+        epoch = Long.toString(databaseId, Character.MAX_RADIX);
+        versions.clear();
+        unsaved.clear();
+        stored.forEach((table, version) -> versions.put(table, new AtomicLong(version)));
+    }
+
+    public long version(Class<?> entityType) {
+        AtomicLong version = versions.get(entityType.getSimpleName());
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * 엔티티들의 현재 버전. 결과와 같이 저장해 두고 나중에 같은지 비교한다.
+     */
+    public long[] stamp(Class<?>... entityTypes) {
+        long[] stamp = new long[entityTypes.length];
+        for (int i = 0; i < entityTypes.length; i++) {
+            stamp[i] = version(entityTypes[i]);
+        }
+        return stamp;
+    }
+
+    /**
+     * table_version의 database id. 버전 기록이 이어지는 같은 계보인지 확인할 때 쓴다.
+     */
+    public long getDatabaseId() {
+        return databaseId;
+    }
+
+    /**
+     * 트랜잭션 안이면 커밋된 뒤에, 아니면 바로 올린다. (롤백되면 안 올린다.)
+     */
+    public void bump(Class<?> entityType) {
+        String table = entityType.getSimpleName();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            increment(table);
+            return;
+        }
+
+        pendingTables().add(table);
+    }
+
+    /**
+     * 올린 만큼을 table_version에 더한다. 실패하면 다음에 다시 더한다.
+     */
+    @Scheduled(fixedDelayString = "${querydsl.table-versions.save-interval-ms:1000}")
+    public void save() {
+        Map<String, Long> increments = new HashMap<>();
+        unsaved.forEach((table, count) -> {
+            long sum = count.sumThenReset();
+            if (sum > 0) {
+                increments.put(table, sum);
+            }
+        });
+        if (increments.isEmpty()) {
+            return;
+        }
+
+        try {
+            store.add(increments);
+        } catch (RuntimeException e) {
+            increments.forEach((table, sum) -> unsaved.computeIfAbsent(table, key -> new LongAdder()).add(sum));
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        save();
+        store.markClean();
+    }
+
+    /**
+     * 강한 ETag. "{database id}-{버전들}-{파라미터 해시}"
+     *
+     * @param params      결과를 정하는 요청 파라미터 (toString이 값을 다 보여줘야 한다. 예: @Data 조건 객체)
+     * @param entityTypes 결과에 쓰인 엔티티 전부
+     */
+    public String etag(Object params, Class<?>... entityTypes) {
+        StringBuilder etag = new StringBuilder("\"").append(epoch);
+        for (Class<?> entityType : entityTypes) {
+            etag.append('-').append(Long.toString(version(entityType), Character.MAX_RADIX));
+        }
+        String paramsHash = DigestUtils.md5DigestAsHex(String.valueOf(params).getBytes(StandardCharsets.UTF_8));
+        return etag.append('-').append(paramsHash, 0, 16).append('"').toString();
+    }
+
+    private Set<String> pendingTables() {
+        @SuppressWarnings("unchecked")
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(PENDING);
+        if (pending != null) {
+            return pending;
+        }
+
+        Set<String> created = Collections.synchronizedSet(new LinkedHashSet<>());
+        TransactionSynchronizationManager.bindResource(PENDING, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(PENDING);
+                if (status == STATUS_COMMITTED) {
+                    created.forEach(TableVersions.this::increment);
+                }
+            }
+        });
+        return created;
+    }
+
+    private void increment(String table) {
+        versions.computeIfAbsent(table, key -> new AtomicLong()).incrementAndGet();
+        unsaved.computeIfAbsent(table, key -> new LongAdder()).increment();
+    }
+}
@@ -0,0 +1,178 @@
+package study.querydsl.cache;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 테이블 버전 도장(stamp)을 붙여 두는 조회 결과 캐시
+ *
+ * 결과를 넣을 때 조회 직전에 읽은 TableVersions.stamp()를 같이 넣고,
+ * 꺼낼 때 지금 stamp와 다르면 버린다. (그 사이에 테이블이 바뀌었다.)
+ * 버전은 커밋 후에 오르니, 조회 직전에 읽은 stamp는 결과보다 같거나 옛날 것이다. 옛날 결과에 새 stamp가 붙는 일은 없다.
+ *
+ * 1. 결과는 여러 요청이 같이 보니 불변이어야 한다.
+ * 2. maxEntries를 넘으면 가장 오래 안 쓴 것부터 버린다. (LRU)
+ *    검색 요청마다 지나가는 길이라 락을 걸지 않는다. ConcurrentHashMap에 넣고 항목마다 마지막 사용 시각만 적어 둔다.
+ *    버리는 건 maxEntries의 1/16 만큼 넘쳤을 때 한 스레드만 몰아서 한다. (그동안 크기가 잠깐 maxEntries를 넘을 수 있다.)
+ * 3. ResultCacheSnapshot에 등록하면 주기적으로 파일에 떠 두고, 재시작할 때 stamp가 맞는 것만 다시 올린다.
+ */
+public class VersionedResultCache<K, V> {
+
+    private final String name;
+    private final TableVersions tableVersions;
+    private final Class<?>[] entityTypes;
+    private final ResultCodec<K> keyCodec;
+    private final ResultCodec<V> valueCodec;
+    private final int maxEntries;
+    private final int evictAt;
+    private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VersionedResultCache(String name, int maxEntries, TableVersions tableVersions,
+                                ResultCodec<K> keyCodec, ResultCodec<V> valueCodec, Class<?>... entityTypes) {
+        this.name = name;
+        this.tableVersions = tableVersions;
+        this.entityTypes = entityTypes.clone();
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.evictAt = this.maxEntries + Math.max(1, this.maxEntries / 16);
+    }
+
+    /**
+     * 지금 버전에서 만든 결과가 있으면 그대로, 없으면 loader로 만들어서 넣는다.
+     */
+    public V get(K key, Supplier<V> loader) {
+        long[] stamp = currentStamp();
+        V cached = get(key, stamp);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        V loaded = loader.get();
+        put(key, stamp, loaded);
+        return loaded;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    long[] currentStamp() {
+        return tableVersions.stamp(entityTypes);
+    }
+
+    Class<?>[] getEntityTypes() {
+        return entityTypes.clone();
+    }
+
+    ResultCodec<K> getKeyCodec() {
+        return keyCodec;
+    }
+
+    ResultCodec<V> getValueCodec() {
+        return valueCodec;
+    }
+
+    V get(K key, long[] stamp) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || !Arrays.equals(entry.stamp, stamp)) {
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        return entry.value;
+    }
+
+    void put(K key, long[] stamp, V value) {
+        // 동시에 조회한 더 새로운 결과를 옛날 결과로 덮지 않는다.
+        entries.compute(key, (k, existing) ->
+                existing == null || !isNewer(existing.stamp, stamp) ? new Entry<>(stamp, value) : existing);
+        evict();
+    }
+
+    /**
+     * 스냅샷용 복사본. (키, 도장, 결과) 오래 안 쓴 것부터. 그 순서로 다시 넣으면 LRU 순서도 그대로다.
+     */
+    List<Map.Entry<K, Entry<V>>> entries() {
+        List<Map.Entry<K, Entry<V>>> copy = new ArrayList<>(entries.size());
+        entries.forEach((key, entry) -> copy.add(new AbstractMap.SimpleImmutableEntry<>(key, entry)));
+        copy.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+        return copy;
+    }
+
+    /**
+     * 마지막 사용 시각 순으로 정렬해서 maxEntries 까지 줄인다. 다른 스레드가 하고 있으면 넘어간다.
+     * 하던 스레드는 끝난 뒤 크기를 다시 보니, 그동안 넘어간 스레드가 넣은 것도 빠지지 않는다.
+     */
+    private void evict() {
+        while (entries.size() >= evictAt && evicting.compareAndSet(false, true)) {
+            try {
+                List<Map.Entry<K, Entry<V>>> oldestFirst = entries();
+                int excess = oldestFirst.size() - maxEntries;
+                for (int i = 0; i < excess; i++) {
+                    Map.Entry<K, Entry<V>> eldest = oldestFirst.get(i);
+                    entries.remove(eldest.getKey(), eldest.getValue()); // 그 사이 새로 들어온 값은 남긴다.
+                }
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    private static boolean isNewer(long[] a, long[] b) {
+        boolean newer = false;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] < b[i]) {
+                return false;
+            }
+            newer |= a[i] > b[i];
+        }
+        return newer;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(size=%d hits=%d misses=%d)", name, size(), getHits(), getMisses());
+    }
+
+    static final class Entry<V> {
+
+        final long[] stamp;
+        final V value;
+        volatile long lastAccess = System.nanoTime();
+
+        Entry(long[] stamp, V value) {
+            this.stamp = stamp;
+            this.value = value;
+        }
+    }
+}
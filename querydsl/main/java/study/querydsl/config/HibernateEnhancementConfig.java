@@ -0,0 +1,60 @@
+package study.querydsl.config;
+
+import org.hibernate.engine.spi.PersistentAttributeInterceptable;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableLoadTimeWeaving;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 하이버네이트 바이트코드 향상(enhancement) - 엔티티 클래스 로딩 시점에 적용
+ *
+ * 향상을 안 하면
+ * 1. flush 때마다 영속 엔티티 전부를 스냅샷과 필드 하나하나 비교한다. (변경 감지)
+ * 2. @ManyToOne(fetch = LAZY)는 프록시 클래스를 따로 만들어야 한다.
+ *
+ * 향상을 하면 엔티티가 스스로 바뀐 필드를 기록해서(dirty tracking) flush 때 비교할 게 없고,
+ * 필드 단위 지연 로딩, 양방향 연관관계 자동 관리가 붙는다.
+ *
+ * 켜는 법 : querydsl.enhancement.runtime=true + JVM 옵션 -javaagent:spring-instrument.jar
+ * (에이전트 없이 켜면 LoadTimeWeaver를 못 만들어서 기동에 실패한다. 그래서 기본은 꺼둔다.)
+ *
+ * 변환기는 EntityManagerFactory를 만들 때 등록된다. 그 전에 누가 엔티티 클래스를 먼저 로딩하면
+ * (예: 더 먼저 만들어지는 빈에서 QMember 초기화) 그 클래스는 향상 없이 올라가고 조용히 예전처럼 돈다.
+ * 그래서 빈이 다 만들어진 뒤 Member, Team이 실제로 향상됐는지 확인하고, 아니면 기동을 실패시킨다.
+ */
+@Configuration
+@EnableLoadTimeWeaving
+@ConditionalOnProperty(prefix = "querydsl.enhancement", name = "runtime", havingValue = "true")
+public class HibernateEnhancementConfig {
+
+    @Bean
+    HibernatePropertiesCustomizer hibernateEnhancementProperties() {
+        return properties -> {
+            properties.put("hibernate.enhancer.enableDirtyTracking", "true");
+            properties.put("hibernate.enhancer.enableLazyInitialization", "true");
+            properties.put("hibernate.enhancer.enableAssociationManagement", "true");
+        };
+    }
+
+    // emf를 받아서 엔티티 클래스 변환기가 등록된 뒤에 확인하게 한다.
+    @Bean
+    SmartInitializingSingleton hibernateEnhancementCheck(EntityManagerFactory emf) {
+        return () -> verifyEnhanced(Member.class, Team.class);
+    }
+
+    static void verifyEnhanced(Class<?>... entityTypes) {
+        for (Class<?> entityType : entityTypes) {
+            if (!PersistentAttributeInterceptable.class.isAssignableFrom(entityType)) {
+                throw new IllegalStateException(entityType.getName() + " is not enhanced."
+                        + " It was loaded before the class transformer was registered, or the -javaagent is missing.");
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package study.querydsl.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import study.querydsl.repository.support.QueryDeadline;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 요청마다 쿼리 마감 시각을 건다. (QueryDeadline)
+ *
+ * 1. 기본은 querydsl.deadline.default-ms. 클라이언트가 X-Request-Timeout-Ms 헤더로 자기 타임아웃을 보내면
+ *    그 값을 쓴다. (min-ms ~ max-ms 사이로 자른다.) 클라이언트가 포기하는 시점과 서버 마감을 맞추는 것.
+ *    하한이 없으면 1ms 같은 값으로 모든 쿼리를 바로 실패시키고 watchdog만 돌게 할 수 있다.
+ * 2. 마감이 되면 watchdog이 실행 중인 statement를 Session.cancelQuery()로 끊는다.
+ *    JDBC 타임아웃이 초 단위라 늦게 끊기거나, 드라이버가 타임아웃을 무시하는 경우를 막는다.
+ * 3. 요청이 끝나면 마감과 watchdog을 치운다.
+ * 4. 비동기로 넘어간 요청(StreamingResponseBody 등 Callable 처리)은 CallableProcessingInterceptor로도 등록한다. (WebConfig)
+ *    - 비동기 스레드에도 같은 마감을 걸어 둔다. 응답을 쓰면서 조회하는 경우도 마감을 따른다.
+ *    - 클라이언트가 끊으면 컨테이너가 비동기 요청에 error/timeout을 알려준다. 그때 deadline.cancel()로 실행 중인 쿼리를 끊는다.
+ *    - 응답 쓰기가 IOException으로 실패해도(끊긴 연결에 쓴 경우) 끊긴 것으로 보고 cancel() 한다.
+ *
+ * 블로킹 구간(컨트롤러 안, 첫 응답 바이트 전)은 서블릿 API로 연결 끊김을 알 방법이 없다.
+ * 그 구간에서 끊긴 요청은 마감 시각에 맞춰 정리된다.
+ */
+@Slf4j
+@Component
+public class QueryDeadlineInterceptor implements AsyncHandlerInterceptor, CallableProcessingInterceptor {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+    private static final String WATCHDOG = QueryDeadlineInterceptor.class.getName() + ".watchdog";
+    private static final String DEADLINE = QueryDeadlineInterceptor.class.getName() + ".deadline";
+
+    private final long defaultMillis;
+    private final long minMillis;
+    private final long maxMillis;
+    private final ScheduledThreadPoolExecutor watchdog;
+
+    public QueryDeadlineInterceptor(@Value("${querydsl.deadline.default-ms:3000}") long defaultMillis,
+                                    @Value("${querydsl.deadline.min-ms:100}") long minMillis,
+                                    @Value("${querydsl.deadline.max-ms:30000}") long maxMillis) {
+        this.defaultMillis = defaultMillis;
+        this.minMillis = minMillis;
+        this.maxMillis = maxMillis;
+        this.watchdog = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "query-deadline-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        long timeoutMillis = timeoutMillis(request);
+        QueryDeadline deadline = QueryDeadline.start(timeoutMillis);
+        request.setAttribute(DEADLINE, deadline);
+        request.setAttribute(WATCHDOG, watchdog.schedule(() -> {
+            log.warn("query deadline {}ms exceeded, cancelling {} {}", timeoutMillis, request.getMethod(), request.getRequestURI());
+            deadline.cancel();
+        }, timeoutMillis, TimeUnit.MILLISECONDS));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // 요청 스레드는 풀로 돌아간다. 나머지(응답 쓰기)는 마감 대상이 아니다.
+        finish(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        finish(request);
+    }
+
+    @Override
+    public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+        QueryDeadline deadline = deadline(request);
+        if (deadline != null) {
+            QueryDeadline.resume(deadline);
+        }
+    }
+
+    @Override
+    public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+        QueryDeadline.clear();
+        if (concurrentResult instanceof IOException) {
+            cancel(request, "response write failed");
+        }
+    }
+
+    @Override
+    public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+        cancel(request, "async request timed out");
+        return RESULT_NONE;
+    }
+
+    @Override
+    public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+        cancel(request, "async request failed");
+        return RESULT_NONE;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    private void finish(HttpServletRequest request) {
+        QueryDeadline.clear();
+        Object scheduled = request.getAttribute(WATCHDOG);
+        if (scheduled != null) {
+            ((ScheduledFuture<?>) scheduled).cancel(false);
+            request.removeAttribute(WATCHDOG);
+        }
+    }
+
+    private void cancel(NativeWebRequest request, String reason) {
+        QueryDeadline deadline = deadline(request);
+        if (deadline != null) {
+            log.debug("{}, cancelling query deadline for {}", reason, request.getDescription(false));
+            deadline.cancel();
+        }
+    }
+
+    private static QueryDeadline deadline(NativeWebRequest request) {
+        return (QueryDeadline) request.getAttribute(DEADLINE, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    private long timeoutMillis(HttpServletRequest request) {
+        String header = request.getHeader(TIMEOUT_HEADER);
+        if (header == null) {
+            return defaultMillis;
+        }
+        try {
+            return Math.max(minMillis, Math.min(Long.parseLong(header.trim()), maxMillis));
+        } catch (NumberFormatException e) {
+            return defaultMillis;
+        }
+    }
+}
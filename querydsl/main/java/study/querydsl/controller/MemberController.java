@@ -0,0 +1,58 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.cache.TableVersions;
+import study.querydsl.dto.DtoJsonSerializers;
+import study.querydsl.dto.MemberDtoJsonWriter;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UserDtoJsonWriter;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.service.MemberSearchService;
+
+/**
+ * 검색 결과 목록은 Writer로 응답 스트림에 바로 쓴다.
+ * 조회는 요청 스레드에서 끝내고(트랜잭션 안), 쓰기만 StreamingResponseBody로 넘긴다.
+ *
+ * 결과는 member, team 테이블과 검색 조건으로만 정해지니 ETag를 TableVersions로 만든다.
+ * If-None-Match가 같으면 쿼리를 안 날리고 304를 준다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class MemberController {
+
+    private final MemberSearchService memberSearchService;
+    private final TableVersions tableVersions;
+    private final ObjectMapper objectMapper;
+
+    @GetMapping("/v1/members")
+    public ResponseEntity<StreamingResponseBody> searchMembers(MemberSearchCondition condition, WebRequest request) {
+        if (request.checkNotModified(tableVersions.etag("members:" + condition, Member.class, Team.class))) {
+            return null; // 304
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(DtoJsonSerializers.stream(memberSearchService.search(condition),
+                        MemberDtoJsonWriter.INSTANCE, objectMapper.getFactory()));
+    }
+
+    @GetMapping("/v1/users")
+    public ResponseEntity<StreamingResponseBody> searchUsers(MemberSearchCondition condition, WebRequest request) {
+        if (request.checkNotModified(tableVersions.etag("users:" + condition, Member.class, Team.class))) {
+            return null; // 304
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(DtoJsonSerializers.stream(memberSearchService.searchUsers(condition),
+                        UserDtoJsonWriter.INSTANCE, objectMapper.getFactory()));
+    }
+}
@@ -0,0 +1,30 @@
+package study.querydsl.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import study.querydsl.repository.support.QueryRejectedException;
+
+/**
+ * 1. 쿼리 마감(QueryDeadline)을 넘긴 요청은 504로 돌려준다.
+ *    @Repository 를 거치면 스프링 예외로, 아니면 JPA 예외로 올라온다.
+ * 2. QueryAdmissionGuard가 거절한 쿼리는 400으로 돌려준다.
+ */
+@Slf4j
+@RestControllerAdvice
+public class QueryExceptionAdvice {
+
+    @ExceptionHandler({org.springframework.dao.QueryTimeoutException.class, javax.persistence.QueryTimeoutException.class})
+    public ResponseEntity<String> queryTimeout(RuntimeException e) {
+        log.info("query timed out: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body("query timed out");
+    }
+
+    @ExceptionHandler(QueryRejectedException.class)
+    public ResponseEntity<String> queryRejected(QueryRejectedException e) {
+        log.warn(e.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("query rejected " + e.getViolations());
+    }
+}
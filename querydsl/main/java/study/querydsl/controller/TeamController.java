@@ -0,0 +1,37 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.cache.TableVersions;
+import study.querydsl.dto.DtoJsonSerializers;
+import study.querydsl.dto.TeamDtoJsonWriter;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.TeamQueryRepository;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private final TeamQueryRepository teamQueryRepository;
+    private final TableVersions tableVersions;
+    private final ObjectMapper objectMapper;
+
+    @GetMapping("/v1/teams")
+    public ResponseEntity<StreamingResponseBody> teams(@RequestParam(required = false) String name, WebRequest request) {
+        if (request.checkNotModified(tableVersions.etag("teams:" + name, Team.class))) {
+            return null; // 304
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(DtoJsonSerializers.stream(teamQueryRepository.findTeams(name),
+                        TeamDtoJsonWriter.INSTANCE, objectMapper.getFactory()));
+    }
+}
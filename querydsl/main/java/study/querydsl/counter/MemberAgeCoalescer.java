@@ -0,0 +1,236 @@
+package study.querydsl.counter;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static study.querydsl.entity.QMember.*;
+
+/**
+ * 회원 나이 카운터 write-behind 합치기(coalescing)
+ *
+ * bulkAdd 처럼 update(member).set(member.age, member.age.add(1))을 요청마다 날리면
+ * 같은 row에 UPDATE가 몰리고 row lock을 두고 서로 기다리게 된다.
+ * 그래서 요청 스레드는 메모리의 누산기에 delta만 더하고,
+ * 타이머나 쌓인 개수 기준으로 한꺼번에 set(age, age.add(delta)) 벌크 쿼리로 내보낸다.
+ *
+ * 1. 누산기는 회원 id 별 AtomicLong 이고 CAS로만 더한다. (락 없음)
+ * 2. 같은 delta를 가진 회원들은 update ... where id in (...) 한 번으로 묶는다.
+ * 3. 종료 시점(@PreDestroy)에 남은 delta를 반드시 flush 한다.
+ * 4. currentAge()로 아직 반영 안 된 delta까지 더한 값을 읽을 수 있다.
+ * 5. update는 QuerydslQueryFactory로 만드니 BulkDmlExecutor를 지난다. 테이블 버전(ETag, 결과 캐시), member_search_view가 같이 맞춰진다.
+ * 6. flush는 항상 새 트랜잭션(REQUIRES_NEW)에서 커밋한다. 호출한 쪽 트랜잭션에 끼면 그쪽이 롤백될 때 남의 delta까지 같이 사라진다.
+ */
+@Slf4j
+@Component
+public class MemberAgeCoalescer {
+
+    // flush가 끝난 누산기를 map에서 빼기 전에 찍어두는 표시. 이걸 본 쓰기 스레드는 새 누산기를 만든다.
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private final ConcurrentHashMap<Long, AtomicLong> pending = new ConcurrentHashMap<>();
+    private volatile Map<Long, Long> inFlight = Collections.emptyMap();
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final int flushThreshold;
+    private final int batchSize;
+
+    public MemberAgeCoalescer(JPAQueryFactory queryFactory,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${querydsl.counter.flush-interval-ms:1000}") long flushIntervalMs,
+                              @Value("${querydsl.counter.flush-threshold:1000}") int flushThreshold,
+                              @Value("${querydsl.counter.batch-size:500}") int batchSize) {
+        this.queryFactory = queryFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.flushThreshold = flushThreshold;
+        this.batchSize = batchSize;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "member-age-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 나이에 delta를 더한다. DB에는 나중에 한꺼번에 반영된다.
+     */
+    public void add(Long memberId, int delta) {
+        accumulate(memberId, delta);
+    }
+
+    public void increment(Long memberId) {
+        add(memberId, 1);
+    }
+
+    private void accumulate(Long memberId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+
+        while (true) {
+            AtomicLong accumulator = pending.get(memberId);
+            if (accumulator == null) {
+                accumulator = pending.computeIfAbsent(memberId, id -> new AtomicLong());
+            }
+
+            long current = accumulator.get();
+            if (current == RETIRED) {
+                // flush가 막 치운 누산기. map에서 빠지면 다시 시도한다.
+                pending.remove(memberId, accumulator);
+                continue;
+            }
+            if (accumulator.compareAndSet(current, current + delta)) {
+                break;
+            }
+        }
+
+        if (pending.size() >= flushThreshold && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    /**
+     * 아직 DB에 반영되지 않은 delta. (flush 중인 것 포함)
+     */
+    public long pendingDelta(Long memberId) {
+        long delta = inFlight.getOrDefault(memberId, 0L);
+        AtomicLong accumulator = pending.get(memberId);
+        if (accumulator != null) {
+            long current = accumulator.get();
+            if (current != RETIRED) {
+                delta += current;
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * 엔티티에서 읽은 나이 + 밀린 delta.
+     * flush 커밋 직후 잠깐은 DB 값과 inFlight가 겹쳐 보일 수 있다.
+     */
+    public int currentAge(Member member) {
+        return Math.toIntExact(member.getAge() + pendingDelta(member.getId()));
+    }
+
+    /**
+     * 밀린 delta를 전부 DB에 반영한다. 반영된 row 수를 돌려준다.
+     */
+    public synchronized long flush() {
+        Map<Long, Long> drained = drain();
+        if (drained.isEmpty()) {
+            return 0;
+        }
+
+        inFlight = drained;
+        try {
+            Long updated = transactionTemplate.execute(status -> executeUpdates(drained));
+            return updated == null ? 0 : updated;
+        } catch (RuntimeException e) {
+            // 반영 실패하면 다음 flush 때 다시 나가도록 되돌려 놓는다.
+            // 밀린 delta는 int를 넘을 수 있으니 long 그대로 더한다. 중간에 던지면 나머지 delta를 잃는다.
+            drained.forEach(this::accumulate);
+            throw e;
+        } finally {
+            inFlight = Collections.emptyMap();
+        }
+    }
+
+    private Map<Long, Long> drain() {
+        Map<Long, Long> drained = new HashMap<>();
+        for (Map.Entry<Long, AtomicLong> entry : pending.entrySet()) {
+            AtomicLong accumulator = entry.getValue();
+            long delta = accumulator.getAndSet(0);
+            if (delta != 0) {
+                drained.put(entry.getKey(), delta);
+            } else if (accumulator.compareAndSet(0, RETIRED)) {
+                // 한 주기 동안 변화가 없던 회원은 map에서 치운다.
+                pending.remove(entry.getKey(), accumulator);
+            }
+        }
+        return drained;
+    }
+
+    private long executeUpdates(Map<Long, Long> drained) {
+        // delta가 같은 회원끼리 묶어야 set(age, age.add(delta)) 한 문장으로 처리된다.
+        Map<Long, List<Long>> idsByDelta = new HashMap<>();
+        drained.forEach((id, delta) -> idsByDelta.computeIfAbsent(delta, d -> new ArrayList<>()).add(id));
+
+        long updated = 0;
+        for (Map.Entry<Long, List<Long>> entry : idsByDelta.entrySet()) {
+            List<Long> ids = entry.getValue();
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                List<Long> chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+                updated += addInIntSteps(chunk, entry.getKey());
+            }
+        }
+
+        log.debug("flushed {} member age deltas in {} statements group(s)", drained.size(), idsByDelta.size());
+        return updated;
+    }
+
+    /**
+     * 밀린 delta는 long이라 int 범위를 넘을 수 있다. 넘으면 int 크기로 나눠서 여러 번 더한다.
+     * (한 번에 Math.toIntExact로 바꾸면 그 delta 때문에 flush가 매번 실패하고 영영 못 나간다.)
+     * 반영된 row 수는 첫 update 기준으로 센다.
+     */
+    private long addInIntSteps(List<Long> ids, long delta) {
+        long updated = 0;
+        long remaining = delta;
+        boolean first = true;
+        while (remaining != 0) {
+            int step = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, remaining));
+            long count = queryFactory
+                    .update(member)
+                    .set(member.age, member.age.add(step))
+                    .where(member.id.in(ids))
+                    .execute();
+            if (first) {
+                updated = count;
+                first = false;
+            }
+            remaining -= step;
+        }
+        return updated;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("member age flush failed, will retry", e);
+        }
+    }
+
+    // 종료 훅 : 스케줄러를 멈추고 남은 delta를 마지막으로 반영한다.
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+
+}
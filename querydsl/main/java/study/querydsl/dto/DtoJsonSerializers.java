@@ -0,0 +1,51 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.springframework.boot.jackson.JsonComponent;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+
+/**
+ * DTO Writer를 Jackson에 등록한다. (@JsonComponent)
+ * ObjectMapper로 MemberDto, UserDto, TeamDto를 쓸 때도 리플렉션 BeanSerializer 대신 Writer가 쓰인다.
+ *
+ * 목록 응답은 stream()으로 응답 OutputStream에 바로 쓴다. (전체를 String/byte[]로 만들어 두지 않는다.)
+ */
+@JsonComponent
+public class DtoJsonSerializers {
+
+    public static <T> StreamingResponseBody stream(Iterable<? extends T> dtos, DtoJsonWriter<T> writer, JsonFactory jsonFactory) {
+        return out -> {
+            try (JsonGenerator gen = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+                gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET); // 응답 스트림은 스프링이 닫는다.
+                writer.writeArray(dtos, gen);
+            }
+        };
+    }
+
+    public static class MemberDtoSerializer extends JsonSerializer<MemberDto> {
+        @Override
+        public void serialize(MemberDto value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            MemberDtoJsonWriter.INSTANCE.write(value, gen);
+        }
+    }
+
+    public static class UserDtoSerializer extends JsonSerializer<UserDto> {
+        @Override
+        public void serialize(UserDto value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            UserDtoJsonWriter.INSTANCE.write(value, gen);
+        }
+    }
+
+    public static class TeamDtoSerializer extends JsonSerializer<TeamDto> {
+        @Override
+        public void serialize(TeamDto value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            TeamDtoJsonWriter.INSTANCE.write(value, gen);
+        }
+    }
+}
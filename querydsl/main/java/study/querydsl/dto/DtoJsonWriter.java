@@ -0,0 +1,24 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * DTO -> JSON 을 리플렉션 없이 직접 쓴다.
+ * Jackson 스트리밍 API(JsonGenerator)에 바로 쓰니 중간에 트리(JsonNode)나 Map을 만들지 않는다.
+ *
+ * DTO 필드를 바꾸면 여기 Writer도 같이 바꿔야 한다. (필드 순서, 이름은 Jackson 기본 직렬화와 같게 맞춘다.)
+ */
+public interface DtoJsonWriter<T> {
+
+    void write(T dto, JsonGenerator gen) throws IOException;
+
+    default void writeArray(Iterable<? extends T> dtos, JsonGenerator gen) throws IOException {
+        gen.writeStartArray();
+        for (T dto : dtos) {
+            write(dto, gen);
+        }
+        gen.writeEndArray();
+    }
+}
@@ -0,0 +1,32 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+
+/**
+ * {"username":"member1","age":10}
+ */
+public final class MemberDtoJsonWriter implements DtoJsonWriter<MemberDto> {
+
+    public static final MemberDtoJsonWriter INSTANCE = new MemberDtoJsonWriter();
+
+    // 필드명은 미리 인코딩해 둔다.
+    private static final SerializableString USERNAME = new SerializedString("username");
+    private static final SerializableString AGE = new SerializedString("age");
+
+    private MemberDtoJsonWriter() {
+    }
+
+    @Override
+    public void write(MemberDto dto, JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(USERNAME);
+        gen.writeString(dto.getUsername()); // null이면 null로 쓴다.
+        gen.writeFieldName(AGE);
+        gen.writeNumber(dto.getAge());
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,21 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class TeamDto {
+
+    private Long teamId;
+    private String name;
+    private int memberCount;
+
+    @QueryProjection
+    public TeamDto(Long teamId, String name, int memberCount) {
+        this.teamId = teamId;
+        this.name = name;
+        this.memberCount = memberCount;
+    }
+}
@@ -0,0 +1,38 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+
+/**
+ * {"teamId":1,"name":"teamA","memberCount":2}
+ */
+public final class TeamDtoJsonWriter implements DtoJsonWriter<TeamDto> {
+
+    public static final TeamDtoJsonWriter INSTANCE = new TeamDtoJsonWriter();
+
+    private static final SerializableString TEAM_ID = new SerializedString("teamId");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString MEMBER_COUNT = new SerializedString("memberCount");
+
+    private TeamDtoJsonWriter() {
+    }
+
+    @Override
+    public void write(TeamDto dto, JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(TEAM_ID);
+        if (dto.getTeamId() == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(dto.getTeamId());
+        }
+        gen.writeFieldName(NAME);
+        gen.writeString(dto.getName());
+        gen.writeFieldName(MEMBER_COUNT);
+        gen.writeNumber(dto.getMemberCount());
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+
+/**
+ * {"name":"member1","age":10}
+ */
+public final class UserDtoJsonWriter implements DtoJsonWriter<UserDto> {
+
+    public static final UserDtoJsonWriter INSTANCE = new UserDtoJsonWriter();
+
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString AGE = new SerializedString("age");
+
+    private UserDtoJsonWriter() {
+    }
+
+    @Override
+    public void write(UserDto dto, JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(NAME);
+        gen.writeString(dto.getName());
+        gen.writeFieldName(AGE);
+        gen.writeNumber(dto.getAge());
+        gen.writeEndObject();
+    }
+}
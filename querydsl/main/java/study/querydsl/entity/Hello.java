@@ -14,7 +14,7 @@ import javax.persistence.Id;
 public class Hello {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = QuerydslIdGenerator.NAME)
     private Long id;
 
 
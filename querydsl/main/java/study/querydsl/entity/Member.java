@@ -1,8 +1,12 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.PersistentAttributeInterceptable;
 
 import javax.persistence.*;
+import java.util.HashSet;
+import java.util.Set;
 
 import static javax.persistence.FetchType.*;
 
@@ -10,34 +14,71 @@ import static javax.persistence.FetchType.*;
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"}) // 연관관계 필드는 손을 안대는게 좋다.
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"), // 접두어 검색(like 'x%')은 이 인덱스를 탄다.
+        @Index(name = "idx_member_age_bracket", columnList = "age_bracket"),
+        @Index(name = "idx_member_username_key", columnList = "username_key")
+})
 public class Member {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = QuerydslIdGenerator.NAME)
     @Column(name = "member_id")
     private Long id;
 
     private String username;
     private int age;
 
+    /**
+     * 계산 컬럼 : DB가 age, username으로 직접 만든다. (H2 generated column)
+     * 벌크 update로 age, username을 바꿔도 DB가 같이 바꿔주고, 인덱스가 걸려 있어서 필터/정렬이 인덱스를 탄다.
+     * 엔티티 쪽에서는 읽기만 한다. persist 직후에는 null 이고, DB에서 다시 읽어야 값이 채워진다.
+     */
+    @Column(name = "age_bracket", insertable = false, updatable = false,
+            columnDefinition = "int generated always as (age / 10 * 10)")
+    @Setter(AccessLevel.NONE)
+    private Integer ageBracket; // 10살 단위 구간 (0, 10, 20, ...)
+
+    @Column(name = "username_key", insertable = false, updatable = false,
+            columnDefinition = "varchar(255) generated always as (lower(trim(username)))")
+    @Setter(AccessLevel.NONE)
+    private String usernameKey; // 대소문자, 앞뒤 공백 무시한 username
+
     @ManyToOne(fetch = LAZY)
     @JoinColumn(name = "team_id")
     private Team team;
 
+    /**
+     * username 부분 검색용 trigram. username이 바뀔 때 같이 바뀐다.
+     * 벌크 update로 username을 바꾸면 UsernameGramMaintainer(BulkDmlListener)가 테이블을 다시 만든다. (네이티브 쿼리로 바꾸면 안 바뀐다.)
+     *
+     * 하이버네이트 벌크 delete는 값 컬렉션 테이블을 안 지운다. 그래서 FK에 on delete cascade를 걸어서
+     * delete from member 만으로 trigram도 같이 지워지게 한다. (@OnDelete는 값 컬렉션에 못 쓴다.)
+     */
+    @ElementCollection
+    @CollectionTable(name = "member_username_gram",
+            joinColumns = @JoinColumn(name = "member_id"),
+            foreignKey = @ForeignKey(name = "fk_member_username_gram_member",
+                    foreignKeyDefinition = "foreign key (member_id) references member on delete cascade"),
+            indexes = @Index(name = "idx_member_username_gram", columnList = "gram, member_id"))
+    @Column(name = "gram", length = UsernameGrams.GRAM_SIZE)
+    @Setter(AccessLevel.NONE)
+    private Set<String> usernameGrams = new HashSet<>();
+
 
     public Member(String username){
-        this.username = username;
+        setUsername(username);
     }
 
     public Member(String username, int age) {
-        this.username = username;
+        setUsername(username);
         this.age = age;
     }
 
 
 
     public Member(String username, int age, Team team) {
-        this.username = username;
+        setUsername(username);
         this.age = age;
         if (team != null) {
             changeTeam(team);
@@ -47,9 +88,25 @@ public class Member {
 
     private void changeTeam(Team team) {
         this.team = team;
+        // 바이트코드 향상(연관관계 관리)을 켜면 this.team = team 에서 이미 추가된다. 두 번 넣지 않는다.
+        if (this instanceof PersistentAttributeInterceptable) {
+            return;
+        }
+        // 생성자에서만 부르니 this는 아직 어느 members에도 없다. contains로 목록을 훑지 않고 바로 넣는다.
+        // 지연 로딩된 members는 초기화 전 add가 큐에만 쌓이고 select 하지 않는다.
         team.getMembers().add(this);
     }
 
+    public void setUsername(String username) {
+        this.username = username;
+        Set<String> grams = UsernameGrams.of(username);
+        // 지연 로딩된 컬렉션은 비교하려고 읽지 않는다. 통째로 바꾸면 하이버네이트가 기존 행을 지우고 새로 넣는다.
+        if (Hibernate.isInitialized(usernameGrams) && usernameGrams.equals(grams)) {
+            return;
+        }
+        this.usernameGrams = new HashSet<>(grams);
+    }
+
 
 }
 
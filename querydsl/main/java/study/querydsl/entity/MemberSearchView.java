@@ -0,0 +1,39 @@
+package study.querydsl.entity;
+
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+
+/**
+ * 회원 검색용 비정규화 테이블 (회원 + 팀 이름)
+ *
+ * 팀 이름으로 거르려면 매번 member join team 이 필요한데, 여기는 한 테이블에 다 있어서 인덱스 하나로 끝난다.
+ * MemberSearchViewMaintainer가 회원/팀이 바뀌는 같은 트랜잭션에서 SQL로 직접 맞춘다. 엔티티로는 읽기만 한다.
+ * 연관관계(FK)는 일부러 안 건다. 회원을 지울 때 이 테이블 때문에 순서가 꼬이지 않게.
+ */
+@Entity
+@Immutable
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+@Table(name = "member_search_view", indexes = {
+        @Index(name = "idx_member_search_view_username", columnList = "username"),
+        @Index(name = "idx_member_search_view_team_name_age", columnList = "team_name, age"),
+        @Index(name = "idx_member_search_view_age", columnList = "age")
+})
+public class MemberSearchView {
+
+    @Id
+    @Column(name = "member_id")
+    private Long memberId;
+
+    private String username;
+    private int age;
+
+    @Column(name = "team_id")
+    private Long teamId;
+
+    @Column(name = "team_name")
+    private String teamName;
+}
@@ -0,0 +1,73 @@
+package study.querydsl.entity;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Member, Team, Hello가 같이 쓰는 id 생성 전략
+ *
+ * 그냥 @GeneratedValue로 두면 row 하나 insert 할 때마다 시퀀스를 한 번씩 조회할 수 있고,
+ * 그러면 insert 처리량도 떨어지고 JDBC 배치도 의미가 없어진다.
+ * 전략은 spring.jpa.properties.querydsl.id.* 로 바꾼다.
+ *
+ * 1. pooled-lo (기본) : 시퀀스를 increment_size 만큼 한 번에 당겨 와서 메모리에서 나눠준다.
+ * 2. sequence : 매번 시퀀스 조회. 비교용.
+ * 3. time-ordered : DB 왕복 없이 프로세스 안에서 시간순 64비트 id를 만든다. (TimeOrderedIdGenerator)
+ */
+public class QuerydslIdGenerator extends SequenceStyleGenerator {
+
+    public static final String NAME = "querydsl_id";
+
+    public static final String STRATEGY_SETTING = "querydsl.id.strategy";
+    public static final String INCREMENT_SIZE_SETTING = "querydsl.id.increment_size";
+    public static final String NODE_ID_SETTING = "querydsl.id.node_id";
+
+    public static final String POOLED_LO = "pooled-lo";
+    public static final String SEQUENCE = "sequence";
+    public static final String TIME_ORDERED = "time-ordered";
+
+    private TimeOrderedIdGenerator timeOrdered;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        String strategy = ConfigurationHelper.getString(STRATEGY_SETTING, settings, POOLED_LO);
+
+        switch (strategy) {
+            case POOLED_LO:
+                params.setProperty(INCREMENT_PARAM, String.valueOf(ConfigurationHelper.getInt(INCREMENT_SIZE_SETTING, settings, 100)));
+                params.setProperty(OPT_PARAM, "pooled-lo");
+                break;
+            case SEQUENCE:
+                params.setProperty(INCREMENT_PARAM, "1");
+                params.setProperty(OPT_PARAM, "none");
+                break;
+            case TIME_ORDERED:
+                timeOrdered = new TimeOrderedIdGenerator(ConfigurationHelper.getInt(NODE_ID_SETTING, settings, 0));
+                break;
+            default:
+                throw new MappingException("Unknown " + STRATEGY_SETTING + " : " + strategy);
+        }
+
+        // time-ordered 여도 시퀀스 정의는 그대로 만든다. 전략을 바꿔도 스키마가 흔들리지 않게.
+        super.configure(type, params, serviceRegistry);
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        if (timeOrdered != null) {
+            return timeOrdered.nextId();
+        }
+        return super.generate(session, object);
+    }
+}
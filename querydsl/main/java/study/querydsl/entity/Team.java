@@ -14,7 +14,7 @@ import java.util.List;
 public class Team {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = QuerydslIdGenerator.NAME)
     @Column(name = "team_id")
     private Long id;
     private String name;
@@ -22,6 +22,16 @@ public class Team {
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
 
+    /**
+     * 회원 수 (비정규화)
+     * members를 초기화하거나 count 쿼리를 날리지 않고 팀 크기를 본다.
+     * DB에서 member_count = member_count + 1 식으로만 바꾼다. (TeamMemberCountMaintainer)
+     * 엔티티 변경 감지로는 덮어쓰지 않으니, 이미 읽어온 팀의 값은 옛날 값일 수 있다.
+     */
+    @Column(name = "member_count", nullable = false, updatable = false)
+    @Setter(AccessLevel.NONE)
+    private int memberCount;
+
     public Team(String name) {
         this.name = name;
     }
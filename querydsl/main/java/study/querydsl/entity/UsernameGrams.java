@@ -0,0 +1,32 @@
+package study.querydsl.entity;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * username 부분 검색용 trigram(3글자 조각) 계산
+ * "member1" -> mem, emb, mbe, ber, er1
+ * 대소문자 구분 없이 찾도록 소문자로 자른다.
+ */
+public final class UsernameGrams {
+
+    public static final int GRAM_SIZE = 3;
+
+    private UsernameGrams() {
+    }
+
+    public static Set<String> of(String value) {
+        if (value == null || value.length() < GRAM_SIZE) {
+            return Collections.emptySet();
+        }
+
+        String normalized = value.toLowerCase(Locale.ROOT);
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= normalized.length(); i++) {
+            grams.add(normalized.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+}
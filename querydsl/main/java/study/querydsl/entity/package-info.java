@@ -0,0 +1,13 @@
+/**
+ * 엔티티 id는 전부 QuerydslIdGenerator를 쓴다. 엔티티마다 자기 시퀀스(테이블명_seq)를 가진다.
+ */
+@GenericGenerator(
+        name = QuerydslIdGenerator.NAME,
+        strategy = "study.querydsl.entity.QuerydslIdGenerator",
+        parameters = @Parameter(name = SequenceStyleGenerator.CONFIG_PREFER_SEQUENCE_PER_ENTITY, value = "true")
+)
+package study.querydsl.entity;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
@@ -0,0 +1,32 @@
+package study.querydsl.event;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 스프링 빈을 하이버네이트 이벤트 리스너로 붙인다.
+ * (JPA @EntityListeners와 달리 변경 전 상태(oldState)를 볼 수 있고, 세션에 바로 접근할 수 있다.)
+ */
+public final class HibernateEventListeners {
+
+    private HibernateEventListeners() {
+    }
+
+    @SafeVarargs
+    public static void append(EntityManagerFactory emf, Object listener, EventType<?>... types) {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        for (EventType<?> type : types) {
+            appendListener(registry, type, listener);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void appendListener(EventListenerRegistry registry, EventType<T> type, Object listener) {
+        registry.appendListeners(type, (T) listener);
+    }
+}
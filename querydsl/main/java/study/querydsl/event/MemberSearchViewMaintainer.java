@@ -0,0 +1,363 @@
+package study.querydsl.event;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.BulkDmlEvent;
+import study.querydsl.repository.support.BulkDmlListener;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+import static study.querydsl.repository.support.InListSupport.*;
+
+/**
+ * member_search_view(MemberSearchView) 유지
+ *
+ * 회원 insert/update/delete, 팀 이름 변경을 세션별로 모아 두었다가 flush가 끝날 때 같은 트랜잭션, 같은 커넥션에서
+ * 종류별로 JDBC 배치 한 번씩 날린다. (insert, update, 팀 이름, delete 순) 회원 N명을 flush 하면 왕복 N번이 아니라 몇 번이다.
+ * flush 리스너(FLUSH, AUTO_FLUSH)는 하이버네이트 기본 리스너 뒤에 붙어서 엔티티 SQL이 다 나간 다음에 돈다.
+ * flush 밖에서 들어온 변경(identity insert 등)은 커밋 직전에 쓰고, 롤백되면 버린다.
+ * 팀 이름은 엔티티(프록시일 수 있다)에서 꺼내지 않고 team 테이블에서 서브쿼리로 읽는다.
+ * 엔티티 SQL이 다 나간 뒤에 쓰니 같은 flush의 팀 이름 변경도 보인다.
+ *
+ * 벌크 연산은 BulkDmlExecutor(QuerydslQueryFactory의 update/delete 포함)를 거쳐야 반영된다.
+ * 1. 회원 벌크 update/delete : 실행 전에 걸리는 회원 id를 모아 두고, 실행 후에 그 id만 지우고 (update면) 다시 넣는다.
+ *    조건이 없는 update는 전체를 다시 만든다. MemberAgeCoalescer의 나이 flush(id in (...) update)도 이 길로 들어온다.
+ * 2. 팀 벌크 update로 이름을 바꾸면 : 걸린 팀의 team_name을 다시 읽는다.
+ * 그 밖에 직접 날린 벌크 쿼리로 틀어진 내용은 MemberSearchViewRepairJob이 바로잡는다.
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberSearchViewMaintainer implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+        FlushEventListener, AutoFlushEventListener, BulkDmlListener {
+
+    private static final String IDS = MemberSearchViewMaintainer.class.getName() + ".ids";
+
+    private static final String INSERT_SQL = "insert into member_search_view (member_id, username, age, team_id, team_name)"
+            + " values (?, ?, ?, ?, (select name from team where team_id = ?))";
+    private static final String UPDATE_SQL = "update member_search_view"
+            + " set username = ?, age = ?, team_id = ?, team_name = (select name from team where team_id = ?) where member_id = ?";
+    private static final String DELETE_SQL = "delete from member_search_view where member_id = ?";
+    private static final String RENAME_TEAM_SQL = "update member_search_view set team_name = ? where team_id = ?";
+
+    private final EntityManagerFactory emf;
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final MemberSearchViewRepairJob repairJob;
+
+    // 세션마다 아직 안 쓴 view 변경. 세션 구현은 equals를 안 바꾸니 같은 세션끼리만 같다.
+    private final ConcurrentMap<EventSource, ViewBatch> pending = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void register() {
+        register(emf);
+    }
+
+    /**
+     * 같은 엔티티를 매핑한 다른 EntityManagerFactory(샤드)에도 붙인다.
+     * flush 때 쓰는 view 변경은 이벤트 세션의 커넥션으로 나가니 그 DB의 member_search_view에 쓰인다.
+     * 벌크 연산 반영(BulkDmlListener)과 MemberSearchViewRepairJob은 본 DB만 본다.
+     */
+    public void register(EntityManagerFactory target) {
+        HibernateEventListeners.append(target, this, EventType.POST_INSERT, EventType.POST_UPDATE, EventType.POST_DELETE,
+                EventType.FLUSH, EventType.AUTO_FLUSH);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            batch(event.getSession()).insert((Long) event.getId(), new MemberState(event.getPersister(), event.getState()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getOldState() == null) {
+            return;
+        }
+
+        if (event.getEntity() instanceof Member) {
+            MemberState before = new MemberState(event.getPersister(), event.getOldState());
+            MemberState after = new MemberState(event.getPersister(), event.getState());
+            if (!before.equals(after)) {
+                batch(event.getSession()).update((Long) event.getId(), after);
+            }
+        } else if (event.getEntity() instanceof Team) {
+            int index = event.getPersister().getEntityMetamodel().getPropertyIndex("name");
+            String name = (String) event.getState()[index];
+            if (!Objects.equals(event.getOldState()[index], name)) {
+                batch(event.getSession()).renames.put((Long) event.getId(), name);
+            }
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            batch(event.getSession()).delete((Long) event.getId());
+        }
+    }
+
+    @Override
+    public void onFlush(FlushEvent event) throws HibernateException {
+        write(event.getSession());
+    }
+
+    @Override
+    public void onAutoFlush(AutoFlushEvent event) throws HibernateException {
+        write(event.getSession());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    @Override
+    public void beforeBulk(BulkDmlEvent event) {
+        if (event.getWhere() == null) {
+            return;
+        }
+
+        if (event.isFor(Member.class) && (event.getType() == BulkDmlEvent.Type.DELETE
+                || event.isUpdated(member.username) || event.isUpdated(member.age) || event.isUpdated(member.team))) {
+            event.setAttribute(IDS, queryFactory.select(member.id).from(member).where(event.getWhere()).fetch());
+        } else if (event.isFor(Team.class) && event.isUpdated(team.name)) {
+            event.setAttribute(IDS, queryFactory.select(team.id).from(team).where(event.getWhere()).fetch());
+        }
+    }
+
+    @Override
+    public void afterBulk(BulkDmlEvent event) {
+        if (event.getCount() == 0) {
+            return;
+        }
+
+        if (event.isFor(Member.class)) {
+            if (event.getWhere() == null) {
+                if (event.getType() == BulkDmlEvent.Type.DELETE) {
+                    execute("delete from member_search_view", Collections.emptyList());
+                } else if (event.isUpdated(member.username) || event.isUpdated(member.age) || event.isUpdated(member.team)) {
+                    repairJob.rebuild();
+                }
+                return;
+            }
+
+            List<Long> memberIds = event.getAttribute(IDS);
+            if (memberIds == null) {
+                return;
+            }
+            for (List<Long> chunk : chunks(memberIds, DEFAULT_CHUNK_SIZE)) {
+                execute("delete from member_search_view where member_id in (" + placeholders(chunk.size()) + ")", chunk);
+                if (event.getType() == BulkDmlEvent.Type.UPDATE) {
+                    execute(MemberSearchViewRepairJob.INSERT_SELECT_SQL + " where m.member_id in (" + placeholders(chunk.size()) + ")", chunk);
+                }
+            }
+        } else if (event.isFor(Team.class) && event.isUpdated(team.name)) {
+            String refresh = "update member_search_view set team_name = (select t.name from team t where t.team_id = member_search_view.team_id)";
+            if (event.getWhere() == null) {
+                execute(refresh + " where team_id is not null", Collections.emptyList());
+                return;
+            }
+            List<Long> teamIds = event.getAttribute(IDS);
+            for (List<Long> chunk : chunks(teamIds, DEFAULT_CHUNK_SIZE)) {
+                execute(refresh + " where team_id in (" + placeholders(chunk.size()) + ")", chunk);
+            }
+        }
+    }
+
+    /**
+     * 세션의 모아둔 변경. 처음 만들 때 커밋 직전 쓰기(flush 밖 변경용)와 트랜잭션 끝 정리를 같이 건다.
+     */
+    private ViewBatch batch(EventSource session) {
+        ViewBatch batch = pending.get(session);
+        if (batch == null) {
+            batch = new ViewBatch();
+            pending.put(session, batch);
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) this::write);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, s) -> pending.remove(session));
+        }
+        return batch;
+    }
+
+    private void write(SessionImplementor session) {
+        ViewBatch batch = pending.remove(session);
+        if (batch != null && !batch.isEmpty()) {
+            session.doWork(batch::execute);
+        }
+    }
+
+    /**
+     * 벌크 연산은 트랜잭션 안에서 불리니 현재 세션 커넥션으로 날린다.
+     */
+    private void execute(String sql, List<Long> ids) {
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < ids.size(); i++) {
+                    statement.setLong(i + 1, ids.get(i));
+                }
+                statement.executeUpdate();
+            }
+        });
+    }
+
+    static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        return placeholders.toString();
+    }
+
+    /**
+     * flush 하나 동안 모은 view 변경. 같은 회원이 여러 번 바뀌면 마지막 값만 쓴다.
+     */
+    private static final class ViewBatch {
+
+        private final Map<Long, MemberState> inserts = new LinkedHashMap<>();
+        private final Map<Long, MemberState> updates = new LinkedHashMap<>();
+        private final Map<Long, String> renames = new LinkedHashMap<>();
+        private final Set<Long> deletes = new LinkedHashSet<>();
+
+        void insert(Long memberId, MemberState state) {
+            deletes.remove(memberId);
+            inserts.put(memberId, state);
+        }
+
+        void update(Long memberId, MemberState state) {
+            if (inserts.containsKey(memberId)) {
+                inserts.put(memberId, state); // 아직 안 넣었으니 넣을 값을 바꾼다.
+            } else {
+                updates.put(memberId, state);
+            }
+        }
+
+        void delete(Long memberId) {
+            inserts.remove(memberId);
+            updates.remove(memberId);
+            deletes.add(memberId);
+        }
+
+        boolean isEmpty() {
+            return inserts.isEmpty() && updates.isEmpty() && renames.isEmpty() && deletes.isEmpty();
+        }
+
+        void execute(Connection connection) throws SQLException {
+            insert(connection, inserts);
+
+            if (!updates.isEmpty()) {
+                int[] counts;
+                try (PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+                    for (Map.Entry<Long, MemberState> update : updates.entrySet()) {
+                        MemberState state = update.getValue();
+                        statement.setString(1, state.username);
+                        statement.setInt(2, state.age);
+                        statement.setObject(3, state.teamId);
+                        statement.setObject(4, state.teamId);
+                        statement.setLong(5, update.getKey());
+                        statement.addBatch();
+                    }
+                    counts = statement.executeBatch();
+                }
+                // 직접 날린 벌크 쿼리 등으로 빠져 있었으면 다시 넣는다.
+                Map<Long, MemberState> missing = new LinkedHashMap<>();
+                int i = 0;
+                for (Map.Entry<Long, MemberState> update : updates.entrySet()) {
+                    if (counts[i++] == 0) {
+                        missing.put(update.getKey(), update.getValue());
+                    }
+                }
+                insert(connection, missing);
+            }
+
+            if (!renames.isEmpty()) {
+                try (PreparedStatement statement = connection.prepareStatement(RENAME_TEAM_SQL)) {
+                    for (Map.Entry<Long, String> rename : renames.entrySet()) {
+                        statement.setString(1, rename.getValue());
+                        statement.setLong(2, rename.getKey());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            }
+
+            if (!deletes.isEmpty()) {
+                try (PreparedStatement statement = connection.prepareStatement(DELETE_SQL)) {
+                    for (Long memberId : deletes) {
+                        statement.setLong(1, memberId);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            }
+        }
+
+        private static void insert(Connection connection, Map<Long, MemberState> rows) throws SQLException {
+            if (rows.isEmpty()) {
+                return;
+            }
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+                for (Map.Entry<Long, MemberState> row : rows.entrySet()) {
+                    MemberState state = row.getValue();
+                    statement.setLong(1, row.getKey());
+                    statement.setString(2, state.username);
+                    statement.setInt(3, state.age);
+                    statement.setObject(4, state.teamId);
+                    statement.setObject(5, state.teamId);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * 이벤트 state 배열에서 view에 들어가는 값만 뽑는다.
+     */
+    private static final class MemberState {
+
+        private final String username;
+        private final int age;
+        private final Long teamId;
+
+        MemberState(EntityPersister persister, Object[] state) {
+            this.username = (String) state[persister.getEntityMetamodel().getPropertyIndex("username")];
+            this.age = (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+            Team team = (Team) state[persister.getEntityMetamodel().getPropertyIndex("team")];
+            this.teamId = team == null ? null : team.getId();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MemberState)) {
+                return false;
+            }
+            MemberState other = (MemberState) o;
+            return age == other.age && Objects.equals(username, other.username) && Objects.equals(teamId, other.teamId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(username, age, teamId);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package study.querydsl.event;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.cache.TableVersions;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.sql.Statement;
+
+/**
+ * member_search_view 전체 재생성
+ * BulkDmlExecutor를 거치지 않은 벌크 쿼리나 수동 수정으로 틀어진 내용을 member, team 에서 다시 만든다.
+ * 주기는 querydsl.member-search-view.repair-cron (기본 매일 새벽 4시 30분)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MemberSearchViewRepairJob {
+
+    static final String INSERT_SELECT_SQL = "insert into member_search_view (member_id, username, age, team_id, team_name)"
+            + " select m.member_id, m.username, m.age, m.team_id, t.name from member m left join team t on t.team_id = m.team_id";
+
+    private final EntityManager em;
+    private final TableVersions tableVersions;
+
+    @Scheduled(cron = "${querydsl.member-search-view.repair-cron:0 30 4 * * *}")
+    @Transactional
+    public long rebuild() {
+        // 네이티브 쿼리(executeUpdate)는 2차 캐시를 통째로 비우니 세션 커넥션으로 직접 날린다.
+        long rebuilt = em.unwrap(Session.class).doReturningWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("delete from member_search_view");
+                return (long) statement.executeUpdate(INSERT_SELECT_SQL);
+            }
+        });
+        // 검색 결과는 member, team 버전으로 캐시하니 고친 내용이 보이게 올린다.
+        tableVersions.bump(Member.class);
+        log.info("rebuilt member_search_view with {} members", rebuilt);
+        return rebuilt;
+    }
+}
@@ -0,0 +1,67 @@
+package study.querydsl.event;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import study.querydsl.cache.TableVersions;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.BulkDmlEvent;
+import study.querydsl.repository.support.BulkDmlListener;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 엔티티 insert/update/delete, 벌크 update/delete 때 TableVersions를 올린다.
+ *
+ * 회원이 바뀌면 팀 버전도 같이 올린다. Team.memberCount가 회원 수에 따라 바뀌기 때문이다.
+ * 벌크 연산은 BulkDmlExecutor를 거쳐야 반영된다. 주입받은 QuerydslQueryFactory의 update/delete는 알아서 거친다.
+ */
+@Component
+@RequiredArgsConstructor
+public class TableVersionListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener, BulkDmlListener {
+
+    private final EntityManagerFactory emf;
+    private final TableVersions tableVersions;
+
+    @PostConstruct
+    public void register() {
+        HibernateEventListeners.append(emf, this, EventType.POST_INSERT, EventType.POST_UPDATE, EventType.POST_DELETE);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        changed(event.getEntity().getClass());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        changed(event.getEntity().getClass());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        changed(event.getEntity().getClass());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    @Override
+    public void afterBulk(BulkDmlEvent event) {
+        if (event.getCount() > 0) {
+            changed(event.getEntity().getType());
+        }
+    }
+
+    private void changed(Class<?> entityType) {
+        tableVersions.bump(entityType);
+        if (Member.class.isAssignableFrom(entityType)) {
+            tableVersions.bump(Team.class);
+        }
+    }
+}
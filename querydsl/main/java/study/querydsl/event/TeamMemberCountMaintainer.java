@@ -0,0 +1,255 @@
+package study.querydsl.event;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.HibernateException;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.BulkDmlEvent;
+import study.querydsl.repository.support.BulkDmlListener;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+
+/**
+ * Team.memberCount 유지
+ *
+ * 회원이 팀에 들어오고(insert) 나가고(delete, 팀 변경) 할 때마다 세션별로 팀 id -> 증감을 합쳐 두고,
+ * flush가 끝날 때 같은 트랜잭션, 같은 커넥션에서 update team set member_count = member_count + ? where team_id = ?
+ * 를 팀마다 하나씩 JDBC 배치 한 번으로 날린다. (MemberSearchViewMaintainer와 같은 방식, flush 밖 변경은 커밋 직전에 쓴다.)
+ * 값을 읽어서 더하지 않고 DB에서 더하니 트랜잭션이 동시에 돌아도 row lock 순서대로 맞게 쌓인다.
+ * 팀 id 순으로 쓰니 두 트랜잭션이 같은 팀들을 서로 반대 순서로 잠그지 않는다.
+ *
+ * 준영속 회원을 다시 붙여 update 하면(session.update 등) 이벤트에 옛 state가 없다.
+ * 그때는 update SQL이 나가기 직전(PRE_UPDATE)에 DB에서 옛 team_id를 읽어 둔다.
+ *
+ * 벌크 연산은 BulkDmlExecutor(QuerydslQueryFactory의 update/delete 포함)를 거쳐야 반영된다.
+ * 1. 회원 벌크 delete : 지우기 전에 팀별로 몇 명 걸리는지 세어 두고, 지운 뒤에 그만큼 뺀다.
+ * 2. 회원 벌크 update로 team을 바꾸면 : 새 팀을 알 수 없으니 전체를 다시 센다.
+ * 그 밖에 직접 날린 벌크 쿼리로 틀어진 값은 TeamMemberCountRepairJob이 바로잡는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TeamMemberCountMaintainer implements PostInsertEventListener, PreUpdateEventListener, PostUpdateEventListener,
+        PostDeleteEventListener, FlushEventListener, AutoFlushEventListener, BulkDmlListener {
+
+    private static final String DELTAS = TeamMemberCountMaintainer.class.getName() + ".deltas";
+    private static final String ADJUST_SQL = "update team set member_count = member_count + ? where team_id = ?";
+    private static final String TEAM_ID_SQL = "select team_id from member where member_id = ?";
+
+    private final EntityManagerFactory emf;
+    private final JPAQueryFactory queryFactory;
+    private final TeamMemberCountRepairJob repairJob;
+
+    // 세션마다 아직 안 쓴 팀별 증감
+    private final ConcurrentMap<EventSource, CountBatch> pending = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void register() {
+        register(emf);
+    }
+
+    /**
+     * 같은 엔티티를 매핑한 다른 EntityManagerFactory(샤드)에도 붙인다.
+     * 엔티티 변경 반영은 이벤트 세션의 커넥션만 쓰니 그 DB의 team에 그대로 쓰인다.
+     * 벌크 연산 반영(BulkDmlListener)과 TeamMemberCountRepairJob은 본 DB만 본다.
+     */
+    public void register(EntityManagerFactory target) {
+        HibernateEventListeners.append(target, this, EventType.POST_INSERT, EventType.PRE_UPDATE, EventType.POST_UPDATE,
+                EventType.POST_DELETE, EventType.FLUSH, EventType.AUTO_FLUSH);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            batch(event.getSession()).adjust(teamId(event.getPersister(), event.getState()), 1);
+        }
+    }
+
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        if (event.getEntity() instanceof Member && event.getOldState() == null) {
+            Long memberId = (Long) event.getId();
+            Long before = event.getSession().doReturningWork(connection -> readTeamId(connection, memberId));
+            batch(event.getSession()).previousTeams.put(memberId, before);
+        }
+        return false;
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member)) {
+            return;
+        }
+
+        Long before;
+        if (event.getOldState() != null) {
+            before = teamId(event.getPersister(), event.getOldState());
+        } else {
+            CountBatch batch = batch(event.getSession());
+            if (!batch.previousTeams.containsKey(event.getId())) {
+                return; // PRE_UPDATE를 안 거친 경우는 없지만, 모르면 건드리지 않는다. (TeamMemberCountRepairJob)
+            }
+            before = batch.previousTeams.remove(event.getId());
+        }
+        Long after = teamId(event.getPersister(), event.getState());
+        if (!Objects.equals(before, after)) {
+            CountBatch batch = batch(event.getSession());
+            batch.adjust(before, -1);
+            batch.adjust(after, 1);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            batch(event.getSession()).adjust(teamId(event.getPersister(), event.getDeletedState()), -1);
+        }
+    }
+
+    @Override
+    public void onFlush(FlushEvent event) throws HibernateException {
+        write(event.getSession());
+    }
+
+    @Override
+    public void onAutoFlush(AutoFlushEvent event) throws HibernateException {
+        write(event.getSession());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    @Override
+    public void beforeBulk(BulkDmlEvent event) {
+        if (!event.isFor(Member.class) || event.getType() != BulkDmlEvent.Type.DELETE) {
+            return;
+        }
+
+        Map<Long, Long> deltas = new HashMap<>();
+        queryFactory
+                .select(member.team.id, member.count())
+                .from(member)
+                .where(event.getWhere(), member.team.isNotNull())
+                .groupBy(member.team.id)
+                .fetch()
+                .forEach(row -> deltas.put(row.get(member.team.id), -row.get(member.count())));
+        event.setAttribute(DELTAS, deltas);
+    }
+
+    @Override
+    public void afterBulk(BulkDmlEvent event) {
+        if (!event.isFor(Member.class)) {
+            return;
+        }
+
+        if (event.getType() == BulkDmlEvent.Type.UPDATE) {
+            if (event.isUpdated(member.team)) {
+                repairJob.repair();
+            }
+            return;
+        }
+
+        Map<Long, Long> deltas = event.getAttribute(DELTAS);
+        deltas.forEach((teamId, delta) -> queryFactory
+                .update(team)
+                .set(team.memberCount, team.memberCount.add(delta.intValue()))
+                .where(team.id.eq(teamId))
+                .execute());
+    }
+
+    private static Long teamId(EntityPersister persister, Object[] state) {
+        int index = persister.getEntityMetamodel().getPropertyIndex("team");
+        Team team = (Team) state[index];
+        return team == null ? null : team.getId();
+    }
+
+    /**
+     * 세션의 모아둔 증감. 처음 만들 때 커밋 직전 쓰기(flush 밖 변경용)와 트랜잭션 끝 정리를 같이 건다.
+     */
+    private CountBatch batch(EventSource session) {
+        CountBatch batch = pending.get(session);
+        if (batch == null) {
+            batch = new CountBatch();
+            pending.put(session, batch);
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) this::write);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, s) -> pending.remove(session));
+        }
+        return batch;
+    }
+
+    private void write(SessionImplementor session) {
+        CountBatch batch = pending.get(session);
+        if (batch != null && !batch.deltas.isEmpty()) {
+            // 세션 커넥션을 그대로 쓴다. (같은 트랜잭션, flush 도중이라 JPQL을 다시 태우지 않는다.)
+            session.doWork(batch::execute);
+        }
+    }
+
+    private static Long readTeamId(Connection connection, Long memberId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(TEAM_ID_SQL)) {
+            statement.setLong(1, memberId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getObject(1, Long.class) : null;
+            }
+        }
+    }
+
+    /**
+     * 세션 하나의 팀 id -> 증감. 한 팀에 여러 번 들어오고 나가도 합친 값 하나만 쓴다.
+     * previousTeams : PRE_UPDATE에서 DB로 읽은 옛 team_id. (회원 id -> 팀 id, 팀 없음은 null)
+     */
+    private static final class CountBatch {
+
+        private final Map<Long, Integer> deltas = new TreeMap<>();
+        private final Map<Long, Long> previousTeams = new HashMap<>();
+
+        void adjust(Long teamId, int delta) {
+            if (teamId != null) {
+                deltas.merge(teamId, delta, Integer::sum);
+            }
+        }
+
+        void execute(Connection connection) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement(ADJUST_SQL)) {
+                int batched = 0;
+                for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+                    if (entry.getValue() == 0) {
+                        continue; // 같은 flush 안에서 나갔다 들어온 팀
+                    }
+                    statement.setInt(1, entry.getValue());
+                    statement.setLong(2, entry.getKey());
+                    statement.addBatch();
+                    batched++;
+                }
+                if (batched > 0) {
+                    statement.executeBatch();
+                }
+            }
+            deltas.clear();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package study.querydsl.event;
+
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+
+/**
+ * Team.memberCount 재계산
+ * BulkDmlExecutor를 거치지 않은 벌크 쿼리(네이티브 쿼리, 따로 만든 JPAQueryFactory)나 수동 수정으로 틀어진 값을 실제 회원 수로 다시 맞춘다.
+ * 이 update도 BulkDmlExecutor를 지나니 테이블 버전은 TableVersionListener가 올린다.
+ * 주기는 querydsl.team.member-count-repair-cron (기본 매일 새벽 4시)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TeamMemberCountRepairJob {
+
+    private final JPAQueryFactory queryFactory;
+
+    @Scheduled(cron = "${querydsl.team.member-count-repair-cron:0 0 4 * * *}")
+    @Transactional
+    public long repair() {
+        long updated = queryFactory
+                .update(team)
+                .set(team.memberCount, JPAExpressions
+                        .select(member.count().intValue())
+                        .from(member)
+                        .where(member.team.eq(team)))
+                .execute();
+        log.info("repaired member_count of {} teams", updated);
+        return updated;
+    }
+}
@@ -0,0 +1,122 @@
+package study.querydsl.event;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.UsernameGrams;
+import study.querydsl.repository.support.BulkDmlEvent;
+import study.querydsl.repository.support.BulkDmlListener;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.repository.support.InListSupport.*;
+
+/**
+ * member_username_gram 유지 (벌크 update)
+ *
+ * 엔티티로 username을 바꾸면 Member.setUsername이 trigram 컬렉션을 같이 바꾼다.
+ * 벌크 update(BulkDmlExecutor, QuerydslQueryFactory의 update 포함)로 username을 바꾸면 엔티티를 안 거치니 여기서 다시 만든다.
+ * 1. 조건이 있으면 실행 전에 걸리는 회원 id를 모아 두고, 실행 후에 그 회원의 trigram만 지우고 새 username으로 다시 넣는다.
+ * 2. 조건이 없으면 전체를 id 순으로 끊어 읽으며 다시 만든다.
+ * 벌크 delete는 FK의 on delete cascade가 지운다.
+ */
+@Component
+@RequiredArgsConstructor
+public class UsernameGramMaintainer implements BulkDmlListener {
+
+    private static final String IDS = UsernameGramMaintainer.class.getName() + ".ids";
+    private static final String INSERT_SQL = "insert into member_username_gram (member_id, gram) values (?, ?)";
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+
+    @Override
+    public void beforeBulk(BulkDmlEvent event) {
+        if (renamesMembers(event) && event.getWhere() != null) {
+            event.setAttribute(IDS, queryFactory.select(member.id).from(member).where(event.getWhere()).fetch());
+        }
+    }
+
+    @Override
+    public void afterBulk(BulkDmlEvent event) {
+        if (!renamesMembers(event) || event.getCount() == 0) {
+            return;
+        }
+
+        if (event.getWhere() == null) {
+            rebuildAll();
+            return;
+        }
+        List<Long> memberIds = event.getAttribute(IDS);
+        for (List<Long> chunk : chunks(memberIds, DEFAULT_CHUNK_SIZE)) {
+            rewrite(chunk, queryFactory
+                    .select(member.id, member.username)
+                    .from(member)
+                    .where(member.id.in(chunk))
+                    .fetch());
+        }
+    }
+
+    private static boolean renamesMembers(BulkDmlEvent event) {
+        return event.isFor(Member.class) && event.getType() == BulkDmlEvent.Type.UPDATE && event.isUpdated(member.username);
+    }
+
+    private void rebuildAll() {
+        Session session = em.unwrap(Session.class);
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("delete from member_username_gram");
+            }
+        });
+
+        Long last = null;
+        while (true) {
+            List<Tuple> rows = queryFactory
+                    .select(member.id, member.username)
+                    .from(member)
+                    .where(last == null ? null : member.id.gt(last))
+                    .orderBy(member.id.asc())
+                    .limit(DEFAULT_CHUNK_SIZE)
+                    .fetch();
+            if (rows.isEmpty()) {
+                return;
+            }
+            rewrite(null, rows);
+            last = rows.get(rows.size() - 1).get(member.id);
+        }
+    }
+
+    /**
+     * memberIds의 trigram을 지우고(null 이면 안 지운다) rows의 username으로 다시 넣는다.
+     */
+    private void rewrite(List<Long> memberIds, List<Tuple> rows) {
+        em.unwrap(Session.class).doWork(connection -> {
+            if (memberIds != null) {
+                String delete = "delete from member_username_gram where member_id in (" + MemberSearchViewMaintainer.placeholders(memberIds.size()) + ")";
+                try (PreparedStatement statement = connection.prepareStatement(delete)) {
+                    for (int i = 0; i < memberIds.size(); i++) {
+                        statement.setLong(i + 1, memberIds.get(i));
+                    }
+                    statement.executeUpdate();
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+                for (Tuple row : rows) {
+                    for (String gram : UsernameGrams.of(row.get(member.username))) {
+                        statement.setLong(1, row.get(member.id));
+                        statement.setString(2, gram);
+                        statement.addBatch();
+                    }
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+}
@@ -0,0 +1,55 @@
+package study.querydsl.export;
+
+/**
+ * 내보내기 결과. skippedPartitions는 이전 실행에서 끝나 있어서 건너뛴 파티션 수
+ */
+public class ExportReport {
+
+    private final int partitions;
+    private final int skippedPartitions;
+    private final long rows;
+    private final long bytes;
+    private final long elapsedMillis;
+
+    ExportReport(int partitions, int skippedPartitions, long rows, long bytes, long elapsedMillis) {
+        this.partitions = partitions;
+        this.skippedPartitions = skippedPartitions;
+        this.rows = rows;
+        this.bytes = bytes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public int getSkippedPartitions() {
+        return skippedPartitions;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return rows * 1000.0 / Math.max(elapsedMillis, 1);
+    }
+
+    public double getMegabytesPerSecond() {
+        return bytes / 1024.0 / 1024.0 * 1000.0 / Math.max(elapsedMillis, 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("partitions=%d skipped=%d rows=%d bytes=%d elapsed=%dms (%.0f rows/s, %.1f MB/s)",
+                partitions, skippedPartitions, rows, bytes, elapsedMillis, getRowsPerSecond(), getMegabytesPerSecond());
+    }
+}
@@ -0,0 +1,95 @@
+package study.querydsl.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 파일 하나를 window 크기씩 메모리 매핑해서 앞에서부터 채운다.
+ * write() 시스템 콜 없이 페이지 캐시에 바로 쓰고, 닫을 때 실제 쓴 크기로 잘라낸다.
+ *
+ * 숫자는 문자열을 만들지 않고 자릿수를 직접 쓴다.
+ */
+class MappedSegmentWriter implements Closeable {
+
+    private static final byte[] LONG_MIN = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final int windowSize;
+    private final byte[] digits = new byte[20];
+    private MappedByteBuffer window;
+    private long size;
+
+    MappedSegmentWriter(Path file, int windowSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.windowSize = windowSize;
+        map(0);
+    }
+
+    long size() {
+        return size;
+    }
+
+    void put(byte b) throws IOException {
+        ensure(1);
+        window.put(b);
+        size++;
+    }
+
+    void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensure(1);
+            int length = Math.min(bytes.length - offset, window.remaining());
+            window.put(bytes, offset, length);
+            offset += length;
+            size += length;
+        }
+    }
+
+    void putLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            put(LONG_MIN);
+            return;
+        }
+        if (value < 0) {
+            put((byte) '-');
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+
+        ensure(digits.length - i);
+        window.put(digits, i, digits.length - i);
+        size += digits.length - i;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (window.remaining() < bytes) {
+            map(size);
+        }
+    }
+
+    private void map(long position) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_WRITE, position, windowSize);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            window.force();
+            window = null;
+            channel.truncate(size); // 매핑하면서 늘어난 뒷부분을 잘라낸다.
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package study.querydsl.export;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.jpa.hibernate.HibernateQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+
+/**
+ * 회원 전체 내보내기 (id,username,age,team_name CSV)
+ *
+ * 1. id 범위(min ~ max)를 querydsl.export.partitions 개로 나눈다. (계획은 export.plan 파일에 실행 id(날짜)와 같이 남긴다.)
+ * 2. 파티션마다 StatelessSession을 따로 열어서(= 커넥션 하나씩) 병렬로 읽는다.
+ *    1차 캐시, 변경 감지, 2차 캐시가 없는 읽기 경로라 몇 백만 건이어도 힙에 쌓이지 않는다.
+ *    QueryDSL HibernateQuery로 id 순 FORWARD_ONLY 스크롤.
+ * 3. 읽은 행은 파티션별 세그먼트 파일(part-00000.seg)에 메모리 매핑으로 바로 쓴다. (MappedSegmentWriter)
+ * 4. 파티션이 끝나면(세그먼트를 닫은 뒤) part-00000.done 에 행 수를 남긴다. 임시 파일에 쓰고 move 하니 반쯤 쓴 done 은 없다.
+ *    중간에 죽어도 같은 실행 id로 다시 돌리면 done 이 있는 파티션은 건너뛴다.
+ *    실행 id가 다른 계획(어제 멈춘 내보내기)은 세그먼트와 같이 버리고 처음부터 한다. 지난 데이터를 섞지 않는다.
+ * 5. 다 끝나면 세그먼트를 순서대로 이어붙여(transferTo) members.csv를 만들고 중간 파일을 지운다.
+ *
+ * 파티션은 id 범위를 같은 너비로 자른다. id가 띄엄띄엄이면(time-ordered 전략) 파티션 크기가 고르지 않을 수 있다.
+ * 스레드 수만큼 커넥션을 쓰니 커넥션 풀 크기를 같이 본다.
+ */
+@Slf4j
+@Component
+public class MemberExportJob {
+
+    public static final String OUTPUT = "members.csv";
+    static final String PLAN = "export.plan";
+    private static final byte[] HEADER = "id,username,age,team_name\n".getBytes(StandardCharsets.UTF_8);
+    private static final int FETCH_SIZE = 1_000;
+    private static final int WINDOW_SIZE = 8 * 1024 * 1024;
+
+    private final SessionFactory sessionFactory;
+    private final Path dir;
+    private final int partitions;
+    private final int threads;
+
+    public MemberExportJob(EntityManagerFactory emf,
+                           @Value("${querydsl.export.dir:export}") String dir,
+                           @Value("${querydsl.export.partitions:16}") int partitions,
+                           @Value("${querydsl.export.threads:0}") int threads) {
+        this.sessionFactory = emf.unwrap(SessionFactory.class);
+        this.dir = Paths.get(dir);
+        this.partitions = Math.max(1, partitions);
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * querydsl.export.cron 주기로 querydsl.export.dir 에 내보낸다. (기본은 꺼져 있다.)
+     */
+    @Scheduled(cron = "${querydsl.export.cron:-}")
+    public void nightly() throws IOException {
+        export(dir);
+    }
+
+    /**
+     * dir 에 오늘 날짜로 members.csv를 만든다. 오늘 멈춘 내보내기가 dir 에 있으면 이어서 한다.
+     */
+    public ExportReport export(Path dir) throws IOException {
+        return export(dir, LocalDate.now().toString());
+    }
+
+    /**
+     * runId 로 멈춘 내보내기가 dir 에 있으면 이어서 하고, 다른 runId 로 남은 것은 버린다.
+     */
+    public ExportReport export(Path dir, String runId) throws IOException {
+        long start = System.nanoTime();
+        Plan plan = writePartitions(dir, runId);
+
+        Path output = dir.resolve(OUTPUT);
+        long bytes = HEADER.length;
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.wrap(HEADER));
+            for (int partition = 0; partition < plan.partitions; partition++) {
+                try (FileChannel segment = FileChannel.open(segment(dir, partition), StandardOpenOption.READ)) {
+                    long size = segment.size();
+                    for (long position = 0; position < size; ) {
+                        position += segment.transferTo(position, size - position, out);
+                    }
+                    bytes += size;
+                }
+            }
+            out.force(true);
+        }
+        for (int partition = 0; partition < plan.partitions; partition++) {
+            Files.delete(segment(dir, partition));
+            Files.delete(done(dir, partition));
+        }
+        Files.delete(dir.resolve(PLAN));
+
+        ExportReport report = new ExportReport(plan.partitions, plan.skipped, plan.rows, bytes, (System.nanoTime() - start) / 1_000_000);
+        log.info("member export finished: {} -> {}", report, output);
+        return report;
+    }
+
+    /**
+     * 세그먼트까지만 만든다. (이어붙이기 전 단계)
+     */
+    Plan writePartitions(Path dir) throws IOException {
+        return writePartitions(dir, LocalDate.now().toString());
+    }
+
+    Plan writePartitions(Path dir, String runId) throws IOException {
+        Files.createDirectories(dir);
+        Plan plan = readOrCreatePlan(dir, runId);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, plan.partitions), r -> {
+            Thread thread = new Thread(r, "member-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Long>> running = new ArrayList<>();
+            for (int partition = 0; partition < plan.partitions; partition++) {
+                Path done = done(dir, partition);
+                if (Files.exists(done)) {
+                    plan.skipped++;
+                    plan.rows += Long.parseLong(new String(Files.readAllBytes(done), StandardCharsets.UTF_8).trim());
+                    continue;
+                }
+                int target = partition;
+                running.add(executor.submit(() -> exportPartition(dir, plan, target)));
+            }
+
+            List<Throwable> failures = new ArrayList<>();
+            for (Future<Long> future : running) {
+                try {
+                    plan.rows += future.get();
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("member export interrupted", e);
+                }
+            }
+            if (!failures.isEmpty()) {
+                IllegalStateException failed = new IllegalStateException(failures.size() + " export partitions failed. run again to resume");
+                failures.forEach(failed::addSuppressed);
+                throw failed;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return plan;
+    }
+
+    private long exportPartition(Path dir, Plan plan, int partition) throws IOException {
+        long start = System.nanoTime();
+        long from = plan.from(partition);
+        long to = plan.to(partition);
+        long rows = 0;
+        long bytes;
+
+        try (StatelessSession session = sessionFactory.openStatelessSession();
+             MappedSegmentWriter out = new MappedSegmentWriter(segment(dir, partition), WINDOW_SIZE)) {
+            // Tuple로 바꾸는 ResultTransformer를 안 타게 목록 식으로 select 한다.
+            HibernateQuery<Object[]> query = new HibernateQuery<Void>(session)
+                    .select(ExpressionUtils.list(Object[].class, new Expression<?>[]{member.id, member.username, member.age, team.name}))
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(member.id.goe(from), member.id.lt(to))
+                    .orderBy(member.id.asc());
+            query.setFetchSize(FETCH_SIZE);
+            query.setReadOnly(true);
+            query.setCacheable(false);
+
+            try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    Object[] row = results.get();
+                    writeRow(out, row);
+                    rows++;
+                }
+            }
+            bytes = out.size();
+        }
+        // 세그먼트가 닫히고(잘라내기, force) 난 뒤에야 끝난 것으로 친다.
+        Path done = done(dir, partition);
+        Path temp = dir.resolve(done.getFileName() + ".tmp");
+        Files.write(temp, Long.toString(rows).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, done, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        log.info("export partition {} [{}, {}) rows={} bytes={} {}ms ({} rows/s)",
+                partition, from, to, rows, bytes, elapsedMs, rows * 1000 / Math.max(elapsedMs, 1));
+        return rows;
+    }
+
+    private static void writeRow(MappedSegmentWriter out, Object[] row) throws IOException {
+        out.putLong((Long) row[0]);
+        out.put((byte) ',');
+        writeText(out, (String) row[1]);
+        out.put((byte) ',');
+        out.putLong((Integer) row[2]);
+        out.put((byte) ',');
+        writeText(out, (String) row[3]);
+        out.put((byte) '\n');
+    }
+
+    // 쉼표, 따옴표, 줄바꿈이 있으면 "..."로 감싸고 따옴표는 두 번 쓴다. null 은 빈 칸.
+    private static void writeText(MappedSegmentWriter out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            out.put(value.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        out.put((byte) '"');
+        out.put(value.replace("\"", "\"\"").getBytes(StandardCharsets.UTF_8));
+        out.put((byte) '"');
+    }
+
+    private Plan readOrCreatePlan(Path dir, String runId) throws IOException {
+        Path file = dir.resolve(PLAN);
+        if (Files.exists(file)) {
+            // 이어서 하려면 파티션 경계가 처음과 같아야 한다.
+            String[] values = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim().split(",");
+            if (values.length == 4 && values[0].equals(runId)) {
+                return new Plan(runId, Long.parseLong(values[1]), Long.parseLong(values[2]), Integer.parseInt(values[3]));
+            }
+            log.warn("discarding stale member export plan {} (run {})", String.join(",", values), runId);
+            discardIntermediates(dir);
+        }
+
+        Plan plan;
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            Object[] range = (Object[]) session.createQuery("select min(m.id), max(m.id) from Member m").uniqueResult();
+            long min = range[0] == null ? 0 : (Long) range[0];
+            long max = range[1] == null ? -1 : (Long) range[1];
+            plan = new Plan(runId, min, max + 1, partitions);
+        }
+        Files.write(file, (plan.runId + "," + plan.min + "," + plan.maxExclusive + "," + plan.partitions).getBytes(StandardCharsets.UTF_8));
+        return plan;
+    }
+
+    private static void discardIntermediates(Path dir) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "{part-*.seg,part-*.done,part-*.done.tmp," + PLAN + "}")) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    static Path segment(Path dir, int partition) {
+        return dir.resolve(String.format("part-%05d.seg", partition));
+    }
+
+    static Path done(Path dir, int partition) {
+        return dir.resolve(String.format("part-%05d.done", partition));
+    }
+
+    static class Plan {
+
+        final String runId;
+        final long min;
+        final long maxExclusive;
+        final int partitions;
+        int skipped;
+        long rows;
+
+        Plan(String runId, long min, long maxExclusive, int partitions) {
+            this.runId = runId;
+            this.min = min;
+            this.maxExclusive = maxExclusive;
+            this.partitions = partitions;
+        }
+
+        long from(int partition) {
+            return min + width() * partition;
+        }
+
+        long to(int partition) {
+            return partition == partitions - 1 ? maxExclusive : min + width() * (partition + 1);
+        }
+
+        private long width() {
+            return Math.max(1, (maxExclusive - min + partitions - 1) / partitions);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package study.querydsl.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 배치 적재 지표
+ * 배치 수, 적재 row 수, 배치 크기, 배치 처리 시간(큐 대기 포함)을 모은다.
+ */
+public class IngestMetrics {
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalBatchNanos = new LongAdder();
+    private final AtomicLong maxBatchNanos = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    void recordBatch(int size, long batchNanos, long oldestWaitNanos) {
+        batches.increment();
+        rows.add(size);
+        totalBatchNanos.add(batchNanos);
+        maxBatchNanos.accumulateAndGet(batchNanos, Math::max);
+        maxBatchSize.accumulateAndGet(size, Math::max);
+        maxQueueWaitNanos.accumulateAndGet(oldestWaitNanos, Math::max);
+    }
+
+    void recordFailure(int size) {
+        failedRows.add(size);
+    }
+
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getFailedRows() {
+        return failedRows.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) rows.sum() / count;
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    public double getAverageBatchMillis() {
+        long count = batches.sum();
+        return count == 0 ? 0 : totalBatchNanos.sum() / 1_000_000.0 / count;
+    }
+
+    public double getMaxBatchMillis() {
+        return maxBatchNanos.get() / 1_000_000.0;
+    }
+
+    public double getMaxQueueWaitMillis() {
+        return maxQueueWaitNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("batches=%d rows=%d failed=%d rejected=%d avgBatchSize=%.1f maxBatchSize=%d avgBatchMs=%.2f maxBatchMs=%.2f maxQueueWaitMs=%.2f",
+                getBatches(), getRows(), getFailedRows(), getRejected(), getAverageBatchSize(), getMaxBatchSize(),
+                getAverageBatchMillis(), getMaxBatchMillis(), getMaxQueueWaitMillis());
+    }
+}
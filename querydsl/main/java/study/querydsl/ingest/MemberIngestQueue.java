@@ -0,0 +1,192 @@
+package study.querydsl.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * 회원 생성 비동기 배치 적재 큐
+ *
+ * 요청마다 em.persist + 커밋을 하면 row 하나에 트랜잭션 하나, fsync 하나가 든다.
+ * 요청 스레드는 큐에 넣고 Future만 받아가고,
+ * writer 스레드가 큐를 batchSize 만큼 비워서 트랜잭션 한 번에 persist 한다.
+ * insert는 hibernate.jdbc.batch_size 설정으로 JDBC 배치로 나간다.
+ *
+ * 큐는 capacity로 묶여 있어서 가득 차면 offerTimeout 만큼 기다리고(backpressure),
+ * 그래도 자리가 안 나면 RejectedExecutionException으로 실패한 Future를 돌려준다.
+ *
+ * 배치가 실패하면(한 row 때문에 전체가 롤백) row마다 트랜잭션을 따로 열어 다시 쓴다. 실패한 row의 Future만 실패한다.
+ * 종료 시에는 큐에 남은 것을 shutdown-timeout-ms 까지 쓰고, 그래도 남았거나 종료 중에 들어온 것은 실패시킨다.
+ * (Future가 영영 완료되지 않는 일은 없다.)
+ */
+@Slf4j
+@Component
+public class MemberIngestQueue {
+
+    private final BlockingQueue<PendingMember> queue;
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final IngestMetrics metrics = new IngestMetrics();
+
+    private final int batchSize;
+    private final long offerTimeoutMs;
+    private final long shutdownTimeoutMs;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean closed; // writer를 기다린 뒤. 이후 큐에 들어간 것은 넣은 쪽이 실패시킨다.
+
+    public MemberIngestQueue(EntityManager em,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${querydsl.ingest.capacity:10000}") int capacity,
+                             @Value("${querydsl.ingest.batch-size:500}") int batchSize,
+                             @Value("${querydsl.ingest.offer-timeout-ms:100}") long offerTimeoutMs,
+                             @Value("${querydsl.ingest.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+
+        this.writer = new Thread(this::writeLoop, "member-ingest-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * 회원 생성을 큐에 넣는다. 커밋되면 생성된 id로 완료된다.
+     */
+    public CompletableFuture<Long> submit(Member member) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new RejectedExecutionException("ingest queue is shut down"));
+            return future;
+        }
+
+        try {
+            PendingMember pending = new PendingMember(member, future, System.nanoTime());
+            if (!queue.offer(pending, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                metrics.recordRejected();
+                future.completeExceptionally(new RejectedExecutionException("ingest queue is full"));
+            } else if (closed && queue.remove(pending)) {
+                // running 확인과 offer 사이에 종료됐다. writer도, 종료 훅의 정리도 이미 지나갔다.
+                rejectShutDown(pending);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public IngestMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void writeLoop() {
+        List<PendingMember> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMember first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingMember> batch) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (PendingMember pending : batch) {
+                    em.persist(pending.member);
+                }
+                // 커밋 시점에 한 번에 flush 되면서 insert가 JDBC 배치로 묶인다.
+            });
+        } catch (RuntimeException e) {
+            log.warn("member ingest batch of {} failed, retrying row by row", batch.size(), e);
+            writeOneByOne(batch, start);
+            return;
+        }
+
+        long end = System.nanoTime();
+        metrics.recordBatch(batch.size(), end - start, start - batch.get(0).enqueuedAt);
+        batch.forEach(pending -> pending.future.complete(pending.member.getId()));
+    }
+
+    /**
+     * 배치가 롤백된 뒤 row마다 다시 쓴다.
+     * 롤백돼도 엔티티에 id는 남아 있어서 persist 대신 merge 한다. (DB에 없는 id면 새 id로 insert 한다.)
+     */
+    private void writeOneByOne(List<PendingMember> batch, long start) {
+        int written = 0;
+        for (PendingMember pending : batch) {
+            try {
+                Long id = transactionTemplate.execute(status -> em.merge(pending.member).getId());
+                pending.future.complete(id);
+                written++;
+            } catch (RuntimeException e) {
+                log.warn("member ingest row {} failed", pending.member, e);
+                metrics.recordFailure(1);
+                pending.future.completeExceptionally(e);
+            }
+        }
+        if (written > 0) {
+            metrics.recordBatch(written, System.nanoTime() - start, start - batch.get(0).enqueuedAt);
+        }
+    }
+
+    // 종료 훅 : 더 받지 않고, 큐에 남은 건 shutdown-timeout-ms 까지 쓰고 끝낸다. 못 쓴 것은 실패시킨다.
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writer.join(shutdownTimeoutMs);
+        closed = true;
+        List<PendingMember> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(MemberIngestQueue::rejectShutDown);
+        if (writer.isAlive()) {
+            log.warn("member ingest writer did not finish in {}ms, {} queued members rejected", shutdownTimeoutMs, left.size());
+        }
+        log.info("member ingest queue stopped. {}", metrics);
+    }
+
+    private static void rejectShutDown(PendingMember pending) {
+        pending.future.completeExceptionally(new RejectedExecutionException("ingest queue is shut down"));
+    }
+
+    private static class PendingMember {
+        private final Member member;
+        private final CompletableFuture<Long> future;
+        private final long enqueuedAt;
+
+        PendingMember(Member member, CompletableFuture<Long> future, long enqueuedAt) {
+            this.member = member;
+            this.future = future;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package study.querydsl.replica;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.HibernateEventListeners;
+import study.querydsl.repository.columnar.ColumnarQuery;
+import study.querydsl.repository.columnar.ColumnarResult;
+import study.querydsl.repository.columnar.LongColumn;
+import study.querydsl.repository.columnar.StringColumn;
+import study.querydsl.repository.support.BulkDmlEvent;
+import study.querydsl.repository.support.BulkDmlListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+import static study.querydsl.repository.support.InListSupport.*;
+
+/**
+ * 회원, 팀 인메모리 복제본 (querydsl.replica.enabled=true 일 때만)
+ *
+ * username, 팀 이름, id 단건 조회를 DB에 안 가고 메모리에서 끝낸다.
+ *
+ * 1. 읽기는 락이 없다. volatile 스냅샷(ReplicaSnapshot, 불변)을 읽기만 한다.
+ * 2. 쓰기는 하이버네이트 post-commit 이벤트로 받는다. 커밋된 변경만 들어오고, 변경마다 새 스냅샷으로 바꿔 끼운다.
+ * 3. 회원 벌크 update/delete(BulkDmlExecutor, MemberAgeCoalescer flush 포함)는 실행 전에 걸리는 회원 id를 모아 두고,
+ *    커밋 후 reload 스레드에서 그 회원만 다시 읽어 덮어쓴다. 다시 읽는 사이 커밋 이벤트로 들어온 회원은 그 값을 둔다.
+ *    id가 COMPACT_THRESHOLD보다 많거나, 조건이 없거나, 팀 벌크 연산이면 어떤 행이 바뀌었는지 따지지 않고 전체를 다시 읽는다.
+ *    전체를 다시 읽는 동안은 스냅샷을 비워서 전부 DB로 간다. 그 사이 들어온 변경은 모아뒀다가 다 읽은 뒤에 다시 적용한다.
+ *    다시 읽기가 실패하면 모아둔 변경은 버리고 querydsl.replica.retry-ms 부터 두 배씩(최대 retry-max-ms) 늦춰 다시 읽는다.
+ * 5. 변경이 쌓여 overlay가 커지면(ReplicaSnapshot.COMPACT_THRESHOLD) reload 스레드에서 base에 합친다.
+ *    커밋 스레드는 합치기를 기다리지 않는다. 합치는 동안 들어온 변경은 합친 스냅샷에 다시 적용한다.
+ * 4. 스냅샷에 없거나(아직 로딩 전, 없는 값) 이름이 겹쳐서 하나로 못 고르면 QueryDSL로 조회한다.
+ *    그래서 이름이 겹칠 때 fetchOne의 NonUniqueResultException도 그대로 난다.
+ *
+ * 다른 서버나 네이티브 쿼리로 바뀐 값은 모른다. 다음 전체 로딩 때 맞춰진다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "querydsl.replica", name = "enabled", havingValue = "true")
+public class MemberTeamReplica implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener, BulkDmlListener {
+
+    private static final String MEMBER_IDS = MemberTeamReplica.class.getName() + ".memberIds";
+
+    private final EntityManagerFactory emf;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long retryMillis;
+    private final long retryMaxMillis;
+    private final ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "member-team-replica-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile ReplicaSnapshot snapshot; // null 이면 로딩 중
+
+    // 아래는 writeLock 으로 보호
+    private final Object writeLock = new Object();
+    private long generation;
+    private boolean reloading;
+    private final List<UnaryOperator<ReplicaSnapshot>> pending = new ArrayList<>();
+    private int failedReloads;
+    private boolean compacting;
+    private final List<UnaryOperator<ReplicaSnapshot>> sinceCompaction = new ArrayList<>();
+    private Set<Long> touchedSinceRefresh; // 회원 일부를 다시 읽는 동안만 null 이 아니다.
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public MemberTeamReplica(EntityManagerFactory emf, JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager,
+                             @Value("${querydsl.replica.retry-ms:1000}") long retryMillis,
+                             @Value("${querydsl.replica.retry-max-ms:60000}") long retryMaxMillis) {
+        this.emf = emf;
+        this.retryMillis = Math.max(1, retryMillis);
+        this.retryMaxMillis = Math.max(this.retryMillis, retryMaxMillis);
+        this.queryFactory = queryFactory;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void register() {
+        HibernateEventListeners.append(emf, this, EventType.POST_COMMIT_INSERT, EventType.POST_COMMIT_UPDATE, EventType.POST_COMMIT_DELETE);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        requestReload();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reloader.shutdownNow();
+    }
+
+    // ----- 조회
+
+    public Optional<MemberView> findMemberById(Long id) {
+        ReplicaSnapshot current = snapshot;
+        MemberView view = current == null ? null : current.member(id);
+        if (view != null) {
+            hits.increment();
+            return Optional.of(view);
+        }
+        misses.increment();
+        return Optional.ofNullable(queryFactory
+                .select(memberView())
+                .from(member)
+                .where(member.id.eq(id))
+                .fetchOne());
+    }
+
+    public Optional<MemberView> findMemberByUsername(String username) {
+        ReplicaSnapshot current = snapshot;
+        if (current != null) {
+            List<MemberView> found = current.membersByUsername(username);
+            if (found.size() == 1) {
+                hits.increment();
+                return Optional.of(found.get(0));
+            }
+        }
+        misses.increment();
+        return Optional.ofNullable(queryFactory
+                .select(memberView())
+                .from(member)
+                .where(member.username.eq(username))
+                .fetchOne());
+    }
+
+    public Optional<TeamView> findTeamByName(String name) {
+        ReplicaSnapshot current = snapshot;
+        if (current != null) {
+            List<TeamView> found = current.teamsByName(name);
+            if (found.size() == 1) {
+                hits.increment();
+                return Optional.of(found.get(0));
+            }
+        }
+        misses.increment();
+        return Optional.ofNullable(queryFactory
+                .select(Projections.constructor(TeamView.class, team.id, team.name))
+                .from(team)
+                .where(team.name.eq(name))
+                .fetchOne());
+    }
+
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    public int size() {
+        ReplicaSnapshot current = snapshot;
+        return current == null ? 0 : current.memberCount();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // ----- 커밋된 변경 반영
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        upsert(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        upsert(event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        long id = (Long) event.getId();
+        if (event.getEntity() instanceof Member) {
+            applyMember(id, null);
+        } else if (event.getEntity() instanceof Team) {
+            apply(s -> s.withTeam(id, null));
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return Member.class.isAssignableFrom(type) || Team.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void beforeBulk(BulkDmlEvent event) {
+        if (!event.isFor(Member.class) || event.getWhere() == null) {
+            return;
+        }
+        List<Long> memberIds = queryFactory
+                .select(member.id)
+                .from(member)
+                .where(event.getWhere())
+                .limit(ReplicaSnapshot.COMPACT_THRESHOLD + 1)
+                .fetch();
+        if (memberIds.size() <= ReplicaSnapshot.COMPACT_THRESHOLD) {
+            event.setAttribute(MEMBER_IDS, memberIds);
+        }
+    }
+
+    @Override
+    public void afterBulk(BulkDmlEvent event) {
+        if ((!event.isFor(Member.class) && !event.isFor(Team.class)) || event.getCount() == 0) {
+            return;
+        }
+        List<Long> memberIds = event.getAttribute(MEMBER_IDS);
+        Runnable refresh = memberIds == null ? this::requestReload : () -> submit(() -> refreshMembers(memberIds));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refresh.run();
+            }
+        });
+    }
+
+    private void upsert(Object entity) {
+        if (entity instanceof Member) {
+            Member changed = (Member) entity;
+            // team이 프록시여도 getId()는 초기화하지 않는다.
+            MemberView view = new MemberView(changed.getId(), changed.getUsername(), changed.getAge(),
+                    changed.getTeam() == null ? null : changed.getTeam().getId());
+            applyMember(view.getId(), view);
+        } else if (entity instanceof Team) {
+            Team changed = (Team) entity;
+            TeamView view = new TeamView(changed.getId(), changed.getName());
+            apply(s -> s.withTeam(view.getId(), view));
+        }
+    }
+
+    private void applyMember(long id, MemberView view) {
+        synchronized (writeLock) {
+            if (touchedSinceRefresh != null) {
+                touchedSinceRefresh.add(id);
+            }
+            apply(s -> s.withMember(id, view));
+        }
+    }
+
+    private void apply(UnaryOperator<ReplicaSnapshot> change) {
+        synchronized (writeLock) {
+            if (reloading) {
+                pending.add(change);
+            } else if (snapshot != null) {
+                snapshot = change.apply(snapshot);
+                if (compacting) {
+                    sinceCompaction.add(change);
+                } else if (snapshot.needsCompaction()) {
+                    compacting = true;
+                    ReplicaSnapshot base = snapshot;
+                    long target = generation;
+                    submit(() -> compact(base, target));
+                }
+            }
+        }
+    }
+
+    /**
+     * 커밋 스레드 밖에서 overlay를 base에 합친다.
+     */
+    private void compact(ReplicaSnapshot base, long target) {
+        ReplicaSnapshot compacted = null;
+        try {
+            compacted = base.compact();
+        } catch (RuntimeException e) {
+            log.warn("member/team replica compaction failed", e);
+        }
+        synchronized (writeLock) {
+            if (compacted != null && target == generation && !reloading && snapshot != null) {
+                for (UnaryOperator<ReplicaSnapshot> change : sinceCompaction) {
+                    compacted = change.apply(compacted);
+                }
+                snapshot = compacted;
+            }
+            sinceCompaction.clear();
+            compacting = false;
+        }
+    }
+
+    /**
+     * 벌크 연산에 걸린 회원만 DB에서 다시 읽어 덮어쓴다. (reload 스레드)
+     */
+    private void refreshMembers(List<Long> memberIds) {
+        long target;
+        Set<Long> touched = new HashSet<>();
+        synchronized (writeLock) {
+            if (reloading || snapshot == null) {
+                return; // 전체 로딩이 어차피 읽는다.
+            }
+            target = generation;
+            touchedSinceRefresh = touched;
+        }
+
+        Map<Long, MemberView> rows;
+        try {
+            rows = readOnlyTransaction.execute(status -> loadMembers(memberIds));
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                touchedSinceRefresh = null;
+            }
+            log.warn("member/team replica refresh of {} members failed, reloading", memberIds.size(), e);
+            requestReload();
+            return;
+        }
+
+        synchronized (writeLock) {
+            touchedSinceRefresh = null;
+            if (target != generation) {
+                return; // 그 사이 전체 로딩이 시작됐다.
+            }
+            for (Long id : memberIds) {
+                if (!touched.contains(id)) {
+                    MemberView view = rows.get(id); // 없으면 삭제됐다.
+                    apply(s -> s.withMember(id, view));
+                }
+            }
+        }
+    }
+
+    private Map<Long, MemberView> loadMembers(List<Long> memberIds) {
+        Map<Long, MemberView> rows = new HashMap<>();
+        for (List<Long> chunk : chunks(memberIds, DEFAULT_CHUNK_SIZE)) {
+            queryFactory
+                    .select(memberView())
+                    .from(member)
+                    .where(member.id.in(chunk))
+                    .fetch()
+                    .forEach(view -> rows.put(view.getId(), view));
+        }
+        return rows;
+    }
+
+    // ----- 전체 로딩
+
+    /**
+     * 스냅샷을 비우고 백그라운드에서 전체를 다시 읽는다.
+     */
+    public void requestReload() {
+        long target;
+        synchronized (writeLock) {
+            target = ++generation;
+            reloading = true;
+            pending.clear();
+            snapshot = null;
+        }
+        submit(() -> reload(target));
+    }
+
+    private void reload(long target) {
+        try {
+            long start = System.nanoTime();
+            ReplicaSnapshot loaded = readOnlyTransaction.execute(status -> load());
+            synchronized (writeLock) {
+                if (target != generation) {
+                    return; // 그 사이 다시 요청됐다. 마지막 요청만 반영한다.
+                }
+                for (UnaryOperator<ReplicaSnapshot> change : pending) {
+                    loaded = change.apply(loaded);
+                }
+                pending.clear();
+                reloading = false;
+                failedReloads = 0;
+                snapshot = loaded;
+            }
+            log.info("member/team replica loaded: {} members in {}ms", loaded.memberCount(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            // 스냅샷은 비워둔 채로 둔다. (전부 DB로 간다.) 모아둔 변경은 다음 전체 로딩에 들어 있으니 버린다.
+            long delayMillis;
+            synchronized (writeLock) {
+                if (target != generation) {
+                    return; // 이미 새 요청이 돌고 있다.
+                }
+                reloading = false;
+                pending.clear();
+                delayMillis = retryMillis << Math.min(failedReloads++, 20);
+                delayMillis = Math.min(delayMillis, retryMaxMillis);
+            }
+            log.warn("member/team replica reload failed, retrying in {}ms", delayMillis, e);
+            try {
+                reloader.schedule(() -> retry(target), delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException shutdown) {
+                // 종료 중
+            }
+        }
+    }
+
+    private void retry(long target) {
+        synchronized (writeLock) {
+            if (target != generation) {
+                return; // 기다리는 사이 다른 요청이 다시 읽었다.
+            }
+        }
+        requestReload();
+    }
+
+    private void submit(Runnable task) {
+        try {
+            reloader.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("member/team replica is shut down, skipping {}", task);
+        }
+    }
+
+    private ReplicaSnapshot load() {
+        ColumnarResult members = ColumnarQuery.fetch(queryFactory
+                .select(member.id, member.username, member.age, member.team.id)
+                .from(member)
+                .orderBy(member.id.asc()));
+        ColumnarResult teams = ColumnarQuery.fetch(queryFactory
+                .select(team.id, team.name)
+                .from(team)
+                .orderBy(team.id.asc()));
+
+        StringColumn usernames = members.stringColumn(member.username);
+        LongColumn memberTeamIds = members.longColumn(member.team.id);
+        String[] usernameArray = new String[members.size()];
+        long[] teamIdArray = memberTeamIds.values();
+        for (int row = 0; row < members.size(); row++) {
+            usernameArray[row] = usernames.get(row);
+            if (memberTeamIds.isNull(row)) {
+                teamIdArray[row] = ReplicaSnapshot.NO_TEAM; // 컬럼 배열을 그대로 넘겨받는다.
+            }
+        }
+
+        StringColumn teamNames = teams.stringColumn(team.name);
+        String[] teamNameArray = new String[teams.size()];
+        for (int row = 0; row < teams.size(); row++) {
+            teamNameArray[row] = teamNames.get(row);
+        }
+
+        return ReplicaSnapshot.of(members.longColumn(member.id).values(), usernameArray,
+                members.intColumn(member.age).values(), teamIdArray,
+                teams.longColumn(team.id).values(), teamNameArray);
+    }
+
+    private static Expression<MemberView> memberView() {
+        return Projections.constructor(MemberView.class, member.id, member.username, member.age, member.team.id);
+    }
+}
@@ -0,0 +1,15 @@
+package study.querydsl.replica;
+
+import lombok.Value;
+
+/**
+ * 복제본에 들고 있는 회원 값. teamId는 팀이 없으면 null
+ */
+@Value
+public class MemberView {
+
+    Long id;
+    String username;
+    int age;
+    Long teamId;
+}
@@ -0,0 +1,289 @@
+package study.querydsl.replica;
+
+import java.util.*;
+
+/**
+ * 회원, 팀 복제본의 한 시점. 불변이다.
+ *
+ * base : id 오름차순 기본형 배열. id 조회는 이진 탐색, 이름 조회는 이름 -> 행 번호 인덱스.
+ * overlay : base 이후 바뀐 행만 id -> 값으로 들고 있다. (삭제는 값이 null) 이름 조회용으로 이름 -> id 인덱스도 같이 둔다.
+ *
+ * 변경 하나마다 overlay만 복사해서 새 스냅샷을 만들고 base 배열은 그대로 같이 쓴다.
+ * overlay가 COMPACT_THRESHOLD를 넘으면 base에 합쳐서(compact) 새로 만든다.
+ * 합치기는 base 크기만큼 걸리니 커밋 스레드에서 하지 않는다. (MemberTeamReplica가 reload 스레드에서 한다.)
+ */
+final class ReplicaSnapshot {
+
+    static final int COMPACT_THRESHOLD = 1_024;
+    static final long NO_TEAM = Long.MIN_VALUE;
+    private static final int[] NO_ROWS = new int[0];
+    private static final long[] NO_IDS = new long[0];
+
+    // base - 회원
+    private final long[] memberIds;
+    private final String[] usernames;
+    private final int[] ages;
+    private final long[] memberTeamIds;
+    private final Map<String, int[]> memberRowsByUsername;
+
+    // base - 팀
+    private final long[] teamIds;
+    private final String[] teamNames;
+    private final Map<String, int[]> teamRowsByName;
+
+    private final Map<Long, MemberView> memberOverlay;
+    private final Map<Long, TeamView> teamOverlay;
+    private final Map<String, long[]> overlayIdsByUsername;
+    private final Map<String, long[]> overlayIdsByTeamName;
+
+    private ReplicaSnapshot(long[] memberIds, String[] usernames, int[] ages, long[] memberTeamIds,
+                            long[] teamIds, String[] teamNames,
+                            Map<Long, MemberView> memberOverlay, Map<Long, TeamView> teamOverlay,
+                            Map<String, long[]> overlayIdsByUsername, Map<String, long[]> overlayIdsByTeamName,
+                            Map<String, int[]> memberRowsByUsername, Map<String, int[]> teamRowsByName) {
+        this.memberIds = memberIds;
+        this.usernames = usernames;
+        this.ages = ages;
+        this.memberTeamIds = memberTeamIds;
+        this.teamIds = teamIds;
+        this.teamNames = teamNames;
+        this.memberOverlay = memberOverlay;
+        this.teamOverlay = teamOverlay;
+        this.overlayIdsByUsername = overlayIdsByUsername;
+        this.overlayIdsByTeamName = overlayIdsByTeamName;
+        this.memberRowsByUsername = memberRowsByUsername != null ? memberRowsByUsername : index(usernames);
+        this.teamRowsByName = teamRowsByName != null ? teamRowsByName : index(teamNames);
+    }
+
+    /**
+     * 배열은 id 오름차순이어야 한다. memberTeamIds의 팀 없음은 NO_TEAM.
+     */
+    static ReplicaSnapshot of(long[] memberIds, String[] usernames, int[] ages, long[] memberTeamIds,
+                              long[] teamIds, String[] teamNames) {
+        return new ReplicaSnapshot(memberIds, usernames, ages, memberTeamIds, teamIds, teamNames,
+                Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), null, null);
+    }
+
+    int overlaySize() {
+        return memberOverlay.size() + teamOverlay.size();
+    }
+
+    boolean needsCompaction() {
+        return overlaySize() > COMPACT_THRESHOLD;
+    }
+
+    int memberCount() {
+        return memberIds.length - countDeletedOrAdded(memberOverlay, memberIds);
+    }
+
+    MemberView member(long id) {
+        if (memberOverlay.containsKey(id)) {
+            return memberOverlay.get(id);
+        }
+        int row = Arrays.binarySearch(memberIds, id);
+        return row < 0 ? null : memberAt(row);
+    }
+
+    List<MemberView> membersByUsername(String username) {
+        List<MemberView> found = new ArrayList<>(1);
+        for (int row : memberRowsByUsername.getOrDefault(username, NO_ROWS)) {
+            if (!memberOverlay.containsKey(memberIds[row])) {
+                found.add(memberAt(row));
+            }
+        }
+        for (long id : overlayIdsByUsername.getOrDefault(username, NO_IDS)) {
+            found.add(memberOverlay.get(id));
+        }
+        return found;
+    }
+
+    TeamView team(long id) {
+        if (teamOverlay.containsKey(id)) {
+            return teamOverlay.get(id);
+        }
+        int row = Arrays.binarySearch(teamIds, id);
+        return row < 0 ? null : new TeamView(teamIds[row], teamNames[row]);
+    }
+
+    List<TeamView> teamsByName(String name) {
+        List<TeamView> found = new ArrayList<>(1);
+        for (int row : teamRowsByName.getOrDefault(name, NO_ROWS)) {
+            if (!teamOverlay.containsKey(teamIds[row])) {
+                found.add(new TeamView(teamIds[row], teamNames[row]));
+            }
+        }
+        for (long id : overlayIdsByTeamName.getOrDefault(name, NO_IDS)) {
+            found.add(teamOverlay.get(id));
+        }
+        return found;
+    }
+
+    /**
+     * view가 null이면 삭제
+     */
+    ReplicaSnapshot withMember(long id, MemberView view) {
+        Map<Long, MemberView> overlay = new HashMap<>(memberOverlay);
+        MemberView previous = overlay.put(id, view);
+        Map<String, long[]> byUsername = reindex(overlayIdsByUsername, id,
+                previous == null ? null : previous.getUsername(), view == null ? null : view.getUsername());
+        return new ReplicaSnapshot(memberIds, usernames, ages, memberTeamIds, teamIds, teamNames,
+                Collections.unmodifiableMap(overlay), teamOverlay, byUsername, overlayIdsByTeamName,
+                memberRowsByUsername, teamRowsByName);
+    }
+
+    ReplicaSnapshot withTeam(long id, TeamView view) {
+        Map<Long, TeamView> overlay = new HashMap<>(teamOverlay);
+        TeamView previous = overlay.put(id, view);
+        Map<String, long[]> byName = reindex(overlayIdsByTeamName, id,
+                previous == null ? null : previous.getName(), view == null ? null : view.getName());
+        return new ReplicaSnapshot(memberIds, usernames, ages, memberTeamIds, teamIds, teamNames,
+                memberOverlay, Collections.unmodifiableMap(overlay), overlayIdsByUsername, byName,
+                memberRowsByUsername, teamRowsByName);
+    }
+
+    /**
+     * overlay를 base에 합친다. 둘 다 id 순이니 overlay id만 정렬해서 배열끼리 병합한다.
+     */
+    ReplicaSnapshot compact() {
+        long[] overlayIds = sortedKeys(memberOverlay);
+        int capacity = memberIds.length + overlayIds.length;
+        long[] newMemberIds = new long[capacity];
+        String[] newUsernames = new String[capacity];
+        int[] newAges = new int[capacity];
+        long[] newTeamIds = new long[capacity];
+        int size = 0;
+        int base = 0;
+        int changed = 0;
+        while (base < memberIds.length || changed < overlayIds.length) {
+            boolean fromOverlay = base == memberIds.length
+                    || (changed < overlayIds.length && overlayIds[changed] <= memberIds[base]);
+            if (!fromOverlay) {
+                newMemberIds[size] = memberIds[base];
+                newUsernames[size] = usernames[base];
+                newAges[size] = ages[base];
+                newTeamIds[size] = memberTeamIds[base];
+                size++;
+                base++;
+                continue;
+            }
+            long id = overlayIds[changed++];
+            if (base < memberIds.length && memberIds[base] == id) {
+                base++; // overlay 값이 base 행을 덮는다.
+            }
+            MemberView view = memberOverlay.get(id);
+            if (view != null) {
+                newMemberIds[size] = id;
+                newUsernames[size] = view.getUsername();
+                newAges[size] = view.getAge();
+                newTeamIds[size] = view.getTeamId() == null ? NO_TEAM : view.getTeamId();
+                size++;
+            }
+        }
+
+        long[] overlayTeamIds = sortedKeys(teamOverlay);
+        int teamCapacity = teamIds.length + overlayTeamIds.length;
+        long[] newTeamIdArray = new long[teamCapacity];
+        String[] newTeamNames = new String[teamCapacity];
+        int teamSize = 0;
+        base = 0;
+        changed = 0;
+        while (base < teamIds.length || changed < overlayTeamIds.length) {
+            boolean fromOverlay = base == teamIds.length
+                    || (changed < overlayTeamIds.length && overlayTeamIds[changed] <= teamIds[base]);
+            if (!fromOverlay) {
+                newTeamIdArray[teamSize] = teamIds[base];
+                newTeamNames[teamSize] = teamNames[base];
+                teamSize++;
+                base++;
+                continue;
+            }
+            long id = overlayTeamIds[changed++];
+            if (base < teamIds.length && teamIds[base] == id) {
+                base++;
+            }
+            TeamView view = teamOverlay.get(id);
+            if (view != null) {
+                newTeamIdArray[teamSize] = id;
+                newTeamNames[teamSize] = view.getName();
+                teamSize++;
+            }
+        }
+
+        return of(Arrays.copyOf(newMemberIds, size), Arrays.copyOf(newUsernames, size),
+                Arrays.copyOf(newAges, size), Arrays.copyOf(newTeamIds, size),
+                Arrays.copyOf(newTeamIdArray, teamSize), Arrays.copyOf(newTeamNames, teamSize));
+    }
+
+    private MemberView memberAt(int row) {
+        long teamId = memberTeamIds[row];
+        return new MemberView(memberIds[row], usernames[row], ages[row], teamId == NO_TEAM ? null : teamId);
+    }
+
+    private static long[] sortedKeys(Map<Long, ?> overlay) {
+        long[] ids = new long[overlay.size()];
+        int i = 0;
+        for (Long id : overlay.keySet()) {
+            ids[i++] = id;
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * overlay 이름 인덱스에서 id를 옛 이름에서 빼고 새 이름에 넣은 복사본. (삭제면 새 이름이 null)
+     */
+    private static Map<String, long[]> reindex(Map<String, long[]> index, long id, String before, String after) {
+        Map<String, long[]> next = new HashMap<>(index);
+        if (before != null) {
+            long[] ids = next.get(before);
+            long[] removed = new long[ids.length - 1];
+            int i = 0;
+            for (long other : ids) {
+                if (other != id) {
+                    removed[i++] = other;
+                }
+            }
+            if (removed.length == 0) {
+                next.remove(before);
+            } else {
+                next.put(before, removed);
+            }
+        }
+        if (after != null) {
+            long[] ids = next.getOrDefault(after, NO_IDS);
+            long[] added = Arrays.copyOf(ids, ids.length + 1);
+            added[ids.length] = id;
+            next.put(after, added);
+        }
+        return Collections.unmodifiableMap(next);
+    }
+
+    private static int countDeletedOrAdded(Map<Long, MemberView> overlay, long[] baseIds) {
+        int delta = 0;
+        for (Map.Entry<Long, MemberView> entry : overlay.entrySet()) {
+            boolean inBase = Arrays.binarySearch(baseIds, entry.getKey()) >= 0;
+            if (inBase && entry.getValue() == null) {
+                delta++;
+            } else if (!inBase && entry.getValue() != null) {
+                delta--;
+            }
+        }
+        return delta;
+    }
+
+    private static Map<String, int[]> index(String[] names) {
+        Map<String, int[]> index = new HashMap<>(names.length * 4 / 3 + 1);
+        for (int row = 0; row < names.length; row++) {
+            int[] rows = index.get(names[row]);
+            if (rows == null) {
+                index.put(names[row], new int[]{row});
+            } else {
+                // 이름이 겹치는 경우. 드물어서 배열을 늘려간다.
+                int[] grown = Arrays.copyOf(rows, rows.length + 1);
+                grown[rows.length] = row;
+                index.put(names[row], grown);
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,10 @@
+package study.querydsl.replica;
+
+import lombok.Value;
+
+@Value
+public class TeamView {
+
+    Long id;
+    String name;
+}
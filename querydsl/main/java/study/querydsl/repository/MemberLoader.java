@@ -0,0 +1,71 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Repository;
+import study.querydsl.entity.Member;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import java.util.*;
+
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.repository.support.InListSupport.*;
+
+/**
+ * 여러 id로 회원 한 번에 조회
+ *
+ * 1. 영속성 컨텍스트에 이미 있는 회원은 쿼리 없이 그대로 쓴다.
+ * 2. 2차 캐시에 있는 회원은 em.find로 캐시에서 꺼낸다. (2차 캐시를 켰을 때만 의미 있음)
+ * 3. 남은 id만 IN 쿼리로 가져온다. 길면 잘라서 나간다. (InListSupport)
+ *
+ * 결과는 요청한 id 순서대로, 없는 id는 빠진다. 중복 id는 한 번만 나온다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MemberLoader {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+
+    public List<Member> findAllById(Collection<Long> ids) {
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        Map<Long, Member> found = new HashMap<>(distinctIds.size() * 2);
+        List<Long> missing = new ArrayList<>();
+
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+        Cache cache = em.getEntityManagerFactory().getCache();
+
+        for (Long id : distinctIds) {
+            Object managed = session.getPersistenceContext().getEntity(new EntityKey(id, persister));
+            if (managed != null) {
+                found.put(id, (Member) managed);
+            } else if (cache.contains(Member.class, id)) {
+                found.put(id, em.find(Member.class, id));
+            } else {
+                missing.add(id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            List<Member> fetched = fetchInChunks(missing, DEFAULT_CHUNK_SIZE, chunk -> queryFactory
+                    .selectFrom(member)
+                    .where(member.id.in(chunk))
+                    .fetch());
+            fetched.forEach(m -> found.put(m.getId(), m));
+        }
+
+        List<Member> result = new ArrayList<>(found.size());
+        for (Long id : distinctIds) {
+            Member m = found.get(id);
+            if (m != null) {
+                result.add(m);
+            }
+        }
+        return result;
+    }
+}
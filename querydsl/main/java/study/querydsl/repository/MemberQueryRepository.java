@@ -0,0 +1,76 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.dto.UserDto;
+
+import java.util.List;
+
+import static study.querydsl.entity.QMemberSearchView.*;
+
+/**
+ * 회원 검색 (DTO 조회)
+ * 조건은 where 다중 파라미터로 넘기고, 값이 없는 조건은 null이라 빠진다.
+ *
+ * member join team 대신 비정규화 테이블 member_search_view 한 곳에서 읽는다. (MemberSearchView)
+ * 팀 이름 + 나이 조건은 (team_name, age) 인덱스, username 조건은 username 인덱스를 탄다.
+ */
+@Repository
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class MemberQueryRepository {
+
+    private final JPAQueryFactory queryFactory;
+
+    public List<MemberDto> search(MemberSearchCondition condition) {
+        return queryFactory
+                .select(new QMemberDto(memberSearchView.username, memberSearchView.age))
+                .from(memberSearchView)
+                .where(searchConditions(condition))
+                .fetch();
+    }
+
+    public List<UserDto> searchUsers(MemberSearchCondition condition) {
+        return queryFactory
+                .select(Projections.fields(UserDto.class, memberSearchView.username.as("name"), memberSearchView.age))
+                .from(memberSearchView)
+                .where(searchConditions(condition))
+                .fetch();
+    }
+
+    private BooleanExpression[] searchConditions(MemberSearchCondition condition) {
+        return new BooleanExpression[]{
+                usernameEq(condition.getUsername()),
+                teamNameEq(condition.getTeamName()),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe())
+        };
+    }
+
+    private BooleanExpression usernameEq(String username) {
+        return hasText(username) ? memberSearchView.username.eq(username) : null;
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? memberSearchView.teamName.eq(teamName) : null;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? memberSearchView.age.goe(ageGoe) : null;
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? memberSearchView.age.loe(ageLoe) : null;
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isEmpty();
+    }
+}
@@ -0,0 +1,78 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.jpa.JPAExpressions;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.UsernameGrams;
+
+import java.util.Locale;
+import java.util.Set;
+
+import static study.querydsl.entity.QMember.*;
+
+/**
+ * username 검색 조건
+ * where 다중 파라미터 방식처럼 null이면 조건을 안 건다. 그래서 다른 BooleanExpression과 그대로 조립된다.
+ *
+ * 1. 접두어 : username like 'x%' -> idx_member_username 인덱스 범위 스캔
+ * 2. 부분 문자열 : like '%x%'는 풀 스캔이라서, trigram 테이블(member_username_gram)에서 후보를 먼저 찾고
+ *    후보에 대해서만 username을 다시 확인한다.
+ * 3. 계산 컬럼 : lower(trim(username)), age 10살 구간을 식으로 거르면 인덱스를 못 탄다.
+ *    -> 인덱스가 걸린 계산 컬럼(member.usernameKey, member.ageBracket)으로 거른다.
+ */
+public final class MemberSearchPredicates {
+
+    private static final QMember gramMember = new QMember("gramMember");
+    private static final StringPath gram = Expressions.stringPath("gram");
+
+    private MemberSearchPredicates() {
+    }
+
+    public static BooleanExpression usernameStartsWith(String prefix) {
+        return hasText(prefix) ? member.username.startsWith(prefix) : null;
+    }
+
+    public static BooleanExpression usernameContains(String fragment) {
+        if (!hasText(fragment)) {
+            return null;
+        }
+
+        Set<String> grams = UsernameGrams.of(fragment);
+        if (grams.isEmpty()) {
+            // 3글자보다 짧으면 trigram을 못 만든다. 어쩔 수 없이 like로 간다.
+            return member.username.containsIgnoreCase(fragment);
+        }
+
+        // 조각의 trigram을 전부 가진 회원만 후보가 된다. 순서까지는 모르니 username으로 한 번 더 거른다.
+        return member.id.in(
+                        JPAExpressions
+                                .select(gramMember.id)
+                                .from(gramMember)
+                                .join(gramMember.usernameGrams, gram)
+                                .where(gram.in(grams))
+                                .groupBy(gramMember.id)
+                                .having(gram.count().eq((long) grams.size()))
+                )
+                .and(member.username.containsIgnoreCase(fragment));
+    }
+
+    /**
+     * 대소문자, 앞뒤 공백 무시하고 username 일치 -> idx_member_username_key
+     */
+    public static BooleanExpression usernameKeyEq(String username) {
+        return hasText(username) ? member.usernameKey.eq(username.trim().toLowerCase(Locale.ROOT)) : null;
+    }
+
+    /**
+     * 나이가 age와 같은 10살 구간 -> idx_member_age_bracket
+     */
+    public static BooleanExpression ageBracketEq(Integer age) {
+        return age != null ? member.ageBracket.eq(age / 10 * 10) : null;
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isEmpty();
+    }
+}
@@ -0,0 +1,37 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.QTeamDto;
+import study.querydsl.dto.TeamDto;
+
+import java.util.List;
+
+import static study.querydsl.entity.QTeam.*;
+
+/**
+ * 팀 목록 (DTO 조회). 회원 수는 비정규화 컬럼(Team.memberCount)을 그대로 읽는다.
+ */
+@Repository
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class TeamQueryRepository {
+
+    private final JPAQueryFactory queryFactory;
+
+    public List<TeamDto> findTeams(String namePrefix) {
+        return queryFactory
+                .select(new QTeamDto(team.id, team.name, team.memberCount))
+                .from(team)
+                .where(nameStartsWith(namePrefix))
+                .orderBy(team.name.asc(), team.id.asc())
+                .fetch();
+    }
+
+    private BooleanExpression nameStartsWith(String namePrefix) {
+        return namePrefix != null && !namePrefix.isEmpty() ? team.name.startsWith(namePrefix) : null;
+    }
+}
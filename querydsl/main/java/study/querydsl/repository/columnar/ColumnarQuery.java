@@ -0,0 +1,114 @@
+package study.querydsl.repository.columnar;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import study.querydsl.repository.support.QueryAdmissionGuard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 프로젝션 결과를 컬럼 배열로 받는다.
+ *
+ * queryFactory.select(member.id, member.age, team.name)...fetch() 는 행마다 Tuple(Object[])를 만들고
+ * int age도 Integer로 박싱해서 List에 쌓아둔다. 분석용 조회(행 수 많고 집계만 하는)에서는 그게 메모리 대부분이다.
+ *
+ * ColumnarQuery.fetch(query)는
+ * 1. select 식을 Tuple로 바꾸지 않는 목록 식(a, b, c)으로 바꿔서 ResultTransformer를 안 태운다.
+ * 2. 하이버네이트 ScrollableResults(FORWARD_ONLY, 읽기 전용)로 한 행씩 읽고
+ * 3. 바로 컬럼 배열에 옮긴다. (Integer, Short -> int[], Long -> long[], String -> 사전 인코딩)
+ * 결과로 남는 건 기본형 배열과 문자열 사전뿐이다. 행을 읽을 때 생기는 Object[]는 바로 버려진다.
+ *
+ * 집계는 IntColumn.sum(), StringColumn.groupAvg(IntColumn) 처럼 배열 위에서 한다.
+ * 일부러 전체를 읽는 분석용 조회라 QueryAdmissionGuard는 거치지 않는다.
+ */
+public final class ColumnarQuery {
+
+    static final int FETCH_SIZE = 1_000;
+    private static final int INITIAL_CAPACITY = 1_024;
+
+    private ColumnarQuery() {
+    }
+
+    public static ColumnarResult fetch(JPAQuery<?> query) {
+        return QueryAdmissionGuard.unguarded(() -> fetchColumns(query));
+    }
+
+    private static ColumnarResult fetchColumns(JPAQuery<?> query) {
+        Expression<?> projection = query.getMetadata().getProjection();
+        if (projection == null) {
+            throw new IllegalArgumentException("columnar fetch needs a select projection");
+        }
+        List<Expression<?>> expressions = projection instanceof FactoryExpression
+                ? ((FactoryExpression<?>) projection).getArgs()
+                : Collections.singletonList(projection);
+
+        Object[] columns = new Object[expressions.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = newColumn(expressions.get(i));
+        }
+
+        JPAQuery<?> rowQuery = query.clone();
+        if (expressions.size() > 1) {
+            rowQuery.select(ExpressionUtils.list(Object[].class, expressions.toArray(new Expression<?>[0])));
+        }
+
+        int size = 0;
+        org.hibernate.query.Query<?> hibernateQuery = rowQuery.createQuery().unwrap(org.hibernate.query.Query.class);
+        hibernateQuery.setReadOnly(true);
+        hibernateQuery.setFetchSize(FETCH_SIZE);
+        try (ScrollableResults rows = hibernateQuery.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (rows.next()) {
+                Object[] row = rows.get();
+                for (int i = 0; i < columns.length; i++) {
+                    add(columns[i], row[i]);
+                }
+                size++;
+            }
+        }
+
+        for (Object column : columns) {
+            trim(column);
+        }
+        return new ColumnarResult(new ArrayList<>(expressions), columns, size);
+    }
+
+    private static Object newColumn(Expression<?> expression) {
+        Class<?> type = expression.getType();
+        if (type == Integer.class || type == int.class || type == Short.class || type == short.class) {
+            return new IntColumn(INITIAL_CAPACITY);
+        }
+        if (type == Long.class || type == long.class) {
+            return new LongColumn(INITIAL_CAPACITY);
+        }
+        if (type == String.class) {
+            return new StringColumn(INITIAL_CAPACITY);
+        }
+        throw new IllegalArgumentException("unsupported column type " + type.getName() + " of " + expression);
+    }
+
+    private static void add(Object column, Object value) {
+        if (column instanceof IntColumn) {
+            ((IntColumn) column).add(value);
+        } else if (column instanceof LongColumn) {
+            ((LongColumn) column).add(value);
+        } else {
+            ((StringColumn) column).add(value);
+        }
+    }
+
+    private static void trim(Object column) {
+        if (column instanceof IntColumn) {
+            ((IntColumn) column).trim();
+        } else if (column instanceof LongColumn) {
+            ((LongColumn) column).trim();
+        } else {
+            ((StringColumn) column).trim();
+        }
+    }
+}
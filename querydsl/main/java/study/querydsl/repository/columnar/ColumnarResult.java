@@ -0,0 +1,49 @@
+package study.querydsl.repository.columnar;
+
+import com.querydsl.core.types.Expression;
+
+import java.util.List;
+
+/**
+ * 컬럼 단위 조회 결과. select 식마다 컬럼 하나.
+ * Tuple.get(expr) 처럼 select 에 쓴 식으로 컬럼을 꺼낸다.
+ */
+public final class ColumnarResult {
+
+    private final List<Expression<?>> expressions;
+    private final Object[] columns;
+    private final int size;
+
+    ColumnarResult(List<Expression<?>> expressions, Object[] columns, int size) {
+        this.expressions = expressions;
+        this.columns = columns;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public IntColumn intColumn(Expression<? extends Number> expression) {
+        return column(expression, IntColumn.class);
+    }
+
+    public LongColumn longColumn(Expression<? extends Number> expression) {
+        return column(expression, LongColumn.class);
+    }
+
+    public StringColumn stringColumn(Expression<String> expression) {
+        return column(expression, StringColumn.class);
+    }
+
+    private <C> C column(Expression<?> expression, Class<C> type) {
+        int index = expressions.indexOf(expression);
+        if (index < 0) {
+            throw new IllegalArgumentException(expression + " is not in the projection " + expressions);
+        }
+        if (!type.isInstance(columns[index])) {
+            throw new IllegalArgumentException(expression + " is a " + columns[index].getClass().getSimpleName() + ", not " + type.getSimpleName());
+        }
+        return type.cast(columns[index]);
+    }
+}
@@ -0,0 +1,109 @@
+package study.querydsl.repository.columnar;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * int 컬럼. null 은 nulls 비트로 표시하고 값 자리는 0으로 둔다.
+ * 집계는 배열을 처음부터 끝까지 도는 단순 루프라 JIT가 벡터화하기 좋다. (null이 없으면 비트 검사도 안 한다.)
+ */
+public final class IntColumn {
+
+    private int[] values;
+    private final BitSet nulls = new BitSet();
+    private int size;
+
+    IntColumn(int capacity) {
+        this.values = new int[capacity];
+    }
+
+    void add(Object value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        if (value == null) {
+            nulls.set(size);
+        } else {
+            values[size] = ((Number) value).intValue();
+        }
+        size++;
+    }
+
+    void trim() {
+        values = Arrays.copyOf(values, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(int row) {
+        return values[row];
+    }
+
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    public boolean hasNulls() {
+        return !nulls.isEmpty();
+    }
+
+    /**
+     * 내부 배열. 고치면 안 된다. null 자리는 0이다.
+     */
+    public int[] values() {
+        return values;
+    }
+
+    public long count() {
+        return size - nulls.cardinality();
+    }
+
+    public long sum() {
+        long sum = 0;
+        int[] v = values;
+        for (int i = 0; i < size; i++) {
+            sum += v[i]; // null 자리는 0
+        }
+        return sum;
+    }
+
+    public int min() {
+        int min = Integer.MAX_VALUE;
+        int[] v = values;
+        if (!hasNulls()) {
+            for (int i = 0; i < size; i++) {
+                min = Math.min(min, v[i]);
+            }
+            return min;
+        }
+        for (int i = nulls.nextClearBit(0); i < size; i = nulls.nextClearBit(i + 1)) {
+            min = Math.min(min, v[i]);
+        }
+        return min;
+    }
+
+    public int max() {
+        int max = Integer.MIN_VALUE;
+        int[] v = values;
+        if (!hasNulls()) {
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, v[i]);
+            }
+            return max;
+        }
+        for (int i = nulls.nextClearBit(0); i < size; i = nulls.nextClearBit(i + 1)) {
+            max = Math.max(max, v[i]);
+        }
+        return max;
+    }
+
+    /**
+     * null 을 뺀 평균. 값이 없으면 NaN
+     */
+    public double avg() {
+        long count = count();
+        return count == 0 ? Double.NaN : (double) sum() / count;
+    }
+}
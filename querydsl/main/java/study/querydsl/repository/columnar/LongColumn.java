@@ -0,0 +1,66 @@
+package study.querydsl.repository.columnar;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * long 컬럼 (id 같은). null 은 nulls 비트로 표시하고 값 자리는 0으로 둔다.
+ */
+public final class LongColumn {
+
+    private long[] values;
+    private final BitSet nulls = new BitSet();
+    private int size;
+
+    LongColumn(int capacity) {
+        this.values = new long[capacity];
+    }
+
+    void add(Object value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        if (value == null) {
+            nulls.set(size);
+        } else {
+            values[size] = ((Number) value).longValue();
+        }
+        size++;
+    }
+
+    void trim() {
+        values = Arrays.copyOf(values, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long get(int row) {
+        return values[row];
+    }
+
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    /**
+     * 내부 배열. 고치면 안 된다. null 자리는 0이다.
+     */
+    public long[] values() {
+        return values;
+    }
+
+    public long count() {
+        return size - nulls.cardinality();
+    }
+
+    public long sum() {
+        long sum = 0;
+        long[] v = values;
+        for (int i = 0; i < size; i++) {
+            sum += v[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,142 @@
+package study.querydsl.repository.columnar;
+
+import java.util.*;
+
+/**
+ * 사전 인코딩 문자열 컬럼
+ * 서로 다른 값은 사전(dictionary)에 한 번만 두고, 행마다 사전 번호(code)만 int로 들고 있다.
+ * 팀 이름처럼 값 종류가 적은 컬럼은 행 수와 상관없이 문자열 객체가 종류 수만큼만 남는다.
+ * null 의 code 는 -1.
+ *
+ * code 가 0부터 빽빽하게 붙으니 그룹 집계를 해시 없이 배열 인덱스로 한다. (groupCount, groupSum)
+ */
+public final class StringColumn {
+
+    public static final int NULL_CODE = -1;
+
+    private int[] codes;
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> lookup = new HashMap<>();
+    private int size;
+
+    StringColumn(int capacity) {
+        this.codes = new int[capacity];
+    }
+
+    void add(Object value) {
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, codes.length * 2);
+        }
+        codes[size++] = value == null ? NULL_CODE : encode((String) value);
+    }
+
+    void trim() {
+        codes = Arrays.copyOf(codes, size);
+    }
+
+    private int encode(String value) {
+        Integer code = lookup.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            lookup.put(value, code);
+        }
+        return code;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String get(int row) {
+        int code = codes[row];
+        return code == NULL_CODE ? null : dictionary.get(code);
+    }
+
+    public int code(int row) {
+        return codes[row];
+    }
+
+    /**
+     * 값의 code. 컬럼에 없는 값이면 NULL_CODE
+     */
+    public int codeOf(String value) {
+        Integer code = lookup.get(value);
+        return code == null ? NULL_CODE : code;
+    }
+
+    public int cardinality() {
+        return dictionary.size();
+    }
+
+    public String decode(int code) {
+        return code == NULL_CODE ? null : dictionary.get(code);
+    }
+
+    /**
+     * code별 행 수. 인덱스가 code다. null 행은 빠진다.
+     */
+    public long[] groupCount() {
+        long[] counts = new long[dictionary.size()];
+        for (int i = 0; i < size; i++) {
+            int code = codes[i];
+            if (code != NULL_CODE) {
+                counts[code]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * code별 values 합계. values의 null 행은 0으로 더해지니 평균을 낼 때는 groupCount(values)로 나눈다.
+     */
+    public long[] groupSum(IntColumn values) {
+        checkSameSize(values.size());
+        long[] sums = new long[dictionary.size()];
+        int[] v = values.values();
+        for (int i = 0; i < size; i++) {
+            int code = codes[i];
+            if (code != NULL_CODE) {
+                sums[code] += v[i];
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * code별로 values가 null이 아닌 행 수
+     */
+    public long[] groupCount(IntColumn values) {
+        checkSameSize(values.size());
+        if (!values.hasNulls()) {
+            return groupCount();
+        }
+        long[] counts = new long[dictionary.size()];
+        for (int i = 0; i < size; i++) {
+            int code = codes[i];
+            if (code != NULL_CODE && !values.isNull(i)) {
+                counts[code]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * code별 평균. 값이 없는 그룹은 NaN
+     */
+    public Map<String, Double> groupAvg(IntColumn values) {
+        long[] sums = groupSum(values);
+        long[] counts = groupCount(values);
+        Map<String, Double> avg = new LinkedHashMap<>();
+        for (int code = 0; code < sums.length; code++) {
+            avg.put(dictionary.get(code), counts[code] == 0 ? Double.NaN : (double) sums[code] / counts[code]);
+        }
+        return avg;
+    }
+
+    private void checkSameSize(int otherSize) {
+        if (otherSize != size) {
+            throw new IllegalArgumentException("column size mismatch: " + size + " != " + otherSize);
+        }
+    }
+}
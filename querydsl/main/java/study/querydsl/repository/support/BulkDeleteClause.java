@@ -0,0 +1,36 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPADeleteClause;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+
+/**
+ * execute()를 BulkDmlExecutor에 넘기는 JPADeleteClause.
+ */
+class BulkDeleteClause extends JPADeleteClause {
+
+    private final BulkDmlExecutor executor;
+    private final EntityPath<?> entity;
+    private Predicate where;
+
+    BulkDeleteClause(EntityManager em, EntityPath<?> entity, BulkDmlExecutor executor) {
+        super(em, entity);
+        this.executor = executor;
+        this.entity = entity;
+    }
+
+    @Override
+    public JPADeleteClause where(Predicate... o) {
+        where = ExpressionUtils.allOf(where, ExpressionUtils.allOf(o));
+        return super.where(o);
+    }
+
+    @Override
+    public long execute() {
+        return executor.execute(BulkDmlEvent.Type.DELETE, entity, where, Collections.emptySet(), super::execute);
+    }
+}
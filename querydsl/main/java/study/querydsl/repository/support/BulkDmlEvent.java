@@ -0,0 +1,85 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * BulkDmlExecutor가 벌크 update/delete 전후로 BulkDmlListener에 넘기는 정보
+ * beforeBulk에서 attributes에 넣어둔 값은 같은 이벤트의 afterBulk에서 꺼내 쓸 수 있다.
+ */
+public class BulkDmlEvent {
+
+    public enum Type {
+        UPDATE, DELETE
+    }
+
+    private final Type type;
+    private final EntityPath<?> entity;
+    private final Predicate where;
+    private final Set<Path<?>> updatedPaths;
+    private final Map<String, Object> attributes = new HashMap<>();
+    private long count = -1;
+
+    BulkDmlEvent(Type type, EntityPath<?> entity, Predicate where, Set<Path<?>> updatedPaths) {
+        this.type = type;
+        this.entity = entity;
+        this.where = where;
+        this.updatedPaths = Collections.unmodifiableSet(updatedPaths);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public EntityPath<?> getEntity() {
+        return entity;
+    }
+
+    public boolean isFor(Class<?> entityType) {
+        return entityType.isAssignableFrom(entity.getType());
+    }
+
+    /**
+     * 조건이 없으면(전체 대상) null
+     */
+    public Predicate getWhere() {
+        return where;
+    }
+
+    /**
+     * update의 set 대상 경로. delete면 비어 있다.
+     */
+    public Set<Path<?>> getUpdatedPaths() {
+        return updatedPaths;
+    }
+
+    public boolean isUpdated(Path<?> path) {
+        return updatedPaths.contains(path);
+    }
+
+    /**
+     * 영향 받은 row 수. beforeBulk 에서는 -1
+     */
+    public long getCount() {
+        return count;
+    }
+
+    void setCount(long count) {
+        this.count = count;
+    }
+
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(String name) {
+        return (T) attributes.get(name);
+    }
+}
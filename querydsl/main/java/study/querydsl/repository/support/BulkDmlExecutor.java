@@ -0,0 +1,159 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.core.types.dsl.SimpleExpression;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.EntityType;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static study.querydsl.repository.support.InListSupport.*;
+
+/**
+ * 벌크 update/delete 후 영속성 컨텍스트를 골라서 비우기
+ *
+ * 벌크 연산은 영속성 컨텍스트를 무시하고 DB에 바로 나가서, 이미 올라와 있는 엔티티는 옛날 값을 들고 있게 된다.
+ * 그래서 보통 em.flush(); em.clear(); 로 1차 캐시를 통째로 날리는데, 상관없는 엔티티까지 다 날아간다.
+ *
+ * 여기서는
+ * 1. 영속성 컨텍스트에 올라와 있는 엔티티 중 벌크 대상 타입만 추린다. (없으면 그냥 실행)
+ * 2. 그 중 where 조건에 걸리는 id를 실행 전에 조회해 둔다. (조건이 없으면 그 타입 전부)
+ * 3. 벌크 실행 후 걸린 엔티티만 detach 하고 2차 캐시에서도 뺀다.
+ * 나머지 엔티티는 그대로 영속 상태로 남는다.
+ *
+ * 벌크 연산에 맞춰 같이 고쳐야 하는 것(집계 컬럼 등)은 BulkDmlListener 빈으로 붙인다.
+ * QuerydslQueryFactory의 update()/delete()도 여기 clause를 돌려주니, 주입받은 팩토리로 날린 벌크 쿼리는 전부 여기를 지난다.
+ * (new JPAQueryFactory(em)처럼 따로 만든 팩토리나 네이티브 쿼리는 못 막는다.)
+ *
+ * 참고
+ * - 밀린 변경은 executeUpdate 직전 auto flush로 먼저 반영된 뒤에 detach 된다.
+ * - 하이버네이트는 벌크 연산 때 해당 테이블의 2차 캐시 영역을 원래 통째로 비운다. 여기서 id별로 빼는 건 그와 별개로 확실히 하는 것.
+ * - 삭제된 엔티티가 다른 엔티티의 컬렉션(team.members 같은)에 들어있으면 그 컬렉션에는 남아 있다.
+ */
+@Slf4j
+@Component
+public class BulkDmlExecutor {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory; // 조회 전용. update/delete는 여기 clause로만 만든다.
+    private final ObjectProvider<BulkDmlListener> listeners;
+
+    public BulkDmlExecutor(EntityManager em, ObjectProvider<BulkDmlListener> listeners) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.listeners = listeners;
+    }
+
+    public long update(EntityPath<?> entity, Predicate where, Consumer<JPAUpdateClause> setter) {
+        JPAUpdateClause update = updateClause(entity);
+        setter.accept(update);
+        if (where != null) {
+            update.where(where);
+        }
+        return update.execute();
+    }
+
+    public long delete(EntityPath<?> entity, Predicate where) {
+        JPADeleteClause delete = deleteClause(entity);
+        if (where != null) {
+            delete.where(where);
+        }
+        return delete.execute();
+    }
+
+    /**
+     * execute() 하면 이 executor를 거치는 update 절
+     */
+    public JPAUpdateClause updateClause(EntityPath<?> entity) {
+        return new BulkUpdateClause(em, entity, this);
+    }
+
+    /**
+     * execute() 하면 이 executor를 거치는 delete 절
+     */
+    public JPADeleteClause deleteClause(EntityPath<?> entity) {
+        return new BulkDeleteClause(em, entity, this);
+    }
+
+    long execute(BulkDmlEvent.Type type, EntityPath<?> entity, Predicate where, Set<Path<?>> updatedPaths, LongSupplier statement) {
+        BulkDmlEvent event = new BulkDmlEvent(type, entity, where, updatedPaths);
+        List<Object> stale = findLoadedMatches(entity, where);
+        listeners.orderedStream().forEach(listener -> listener.beforeBulk(event));
+
+        event.setCount(statement.getAsLong());
+
+        evict(entity, stale);
+        listeners.orderedStream().forEach(listener -> listener.afterBulk(event));
+        return event.getCount();
+    }
+
+    /**
+     * 영속성 컨텍스트에 있는 엔티티 중 벌크 조건에 걸리는 것.
+     */
+    private List<Object> findLoadedMatches(EntityPath<?> entity, Predicate where) {
+        Map<Object, Object> loaded = loadedEntities(entity.getType());
+        if (loaded.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (where == null) {
+            return new ArrayList<>(loaded.values());
+        }
+
+        SimpleExpression<Object> id = idPath(entity);
+        List<Object> matches = new ArrayList<>();
+        for (List<Object> chunk : chunks(loaded.keySet(), DEFAULT_CHUNK_SIZE)) {
+            List<Object> matchedIds = queryFactory
+                    .select(id)
+                    .from(entity)
+                    .where(where, id.in(chunk))
+                    .fetch();
+            matchedIds.forEach(matchedId -> matches.add(loaded.get(matchedId)));
+        }
+        return matches;
+    }
+
+    private Map<Object, Object> loadedEntities(Class<?> type) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        Map<Object, Object> loaded = new LinkedHashMap<>();
+        for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+            if (type.isInstance(entry.getKey()) && entry.getValue().getId() != null) {
+                loaded.put(entry.getValue().getId(), entry.getKey());
+            }
+        }
+        return loaded;
+    }
+
+    private SimpleExpression<Object> idPath(EntityPath<?> entity) {
+        EntityType<?> entityType = em.getMetamodel().entity(entity.getType());
+        String idName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        return new PathBuilder<>(entity.getType(), entity.getMetadata()).get(idName);
+    }
+
+    private void evict(EntityPath<?> entity, List<Object> stale) {
+        if (stale.isEmpty()) {
+            return;
+        }
+
+        Cache cache = em.getEntityManagerFactory().getCache();
+        for (Object target : stale) {
+            Object id = em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(target);
+            em.detach(target);
+            cache.evict(entity.getType(), id);
+        }
+        log.debug("evicted {} stale {} after bulk DML", stale.size(), entity.getType().getSimpleName());
+    }
+}
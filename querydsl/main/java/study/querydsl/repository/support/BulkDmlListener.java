@@ -0,0 +1,14 @@
+package study.querydsl.repository.support;
+
+/**
+ * BulkDmlExecutor로 실행한 벌크 update/delete 전후에 불린다. 빈으로 등록하면 자동으로 붙는다.
+ * 벌크 쿼리와 같은 트랜잭션 안에서 불린다.
+ */
+public interface BulkDmlListener {
+
+    default void beforeBulk(BulkDmlEvent event) {
+    }
+
+    default void afterBulk(BulkDmlEvent event) {
+    }
+}
@@ -0,0 +1,66 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+
+import javax.persistence.EntityManager;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * execute()를 BulkDmlExecutor에 넘기는 JPAUpdateClause.
+ * set 으로 바꾸는 경로와 where 조건을 기록해 두었다가 BulkDmlEvent에 담는다.
+ */
+class BulkUpdateClause extends JPAUpdateClause {
+
+    private final BulkDmlExecutor executor;
+    private final EntityPath<?> entity;
+    private final Set<Path<?>> updatedPaths = new LinkedHashSet<>();
+    private Predicate where;
+
+    BulkUpdateClause(EntityManager em, EntityPath<?> entity, BulkDmlExecutor executor) {
+        super(em, entity);
+        this.executor = executor;
+        this.entity = entity;
+    }
+
+    @Override
+    public <T> JPAUpdateClause set(Path<T> path, T value) {
+        updatedPaths.add(path);
+        return super.set(path, value);
+    }
+
+    @Override
+    public <T> JPAUpdateClause set(Path<T> path, Expression<? extends T> expression) {
+        updatedPaths.add(path);
+        return super.set(path, expression);
+    }
+
+    @Override
+    public <T> JPAUpdateClause setNull(Path<T> path) {
+        updatedPaths.add(path);
+        return super.setNull(path);
+    }
+
+    @Override
+    public JPAUpdateClause set(List<? extends Path<?>> paths, List<?> values) {
+        updatedPaths.addAll(paths);
+        return super.set(paths, values);
+    }
+
+    @Override
+    public JPAUpdateClause where(Predicate... o) {
+        where = ExpressionUtils.allOf(where, ExpressionUtils.allOf(o));
+        return super.where(o);
+    }
+
+    @Override
+    public long execute() {
+        return executor.execute(BulkDmlEvent.Type.UPDATE, entity, where, updatedPaths, super::execute);
+    }
+}
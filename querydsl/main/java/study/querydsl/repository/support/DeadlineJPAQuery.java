@@ -0,0 +1,82 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.QueryResults;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * QueryDeadline을 지키는 JPAQuery (QuerydslQueryFactory.query())
+ * 1. 쿼리를 만들 때 남은 시간을 타임아웃으로 건다.
+ * 2. 실행하는 동안 세션을 QueryDeadline에 잡아둬서 밖에서 cancel() 할 수 있게 한다.
+ * 3. 타임아웃으로 실패하면 JPQL 모양별로 센다. (QueryTimeouts)
+ * 4. 쿼리를 만들기 전에 QueryAdmissionGuard 검사를 거친다.
+ */
+class DeadlineJPAQuery<T> extends JPAQuery<T> {
+
+    private final QueryTimeouts timeouts;
+    private final QueryAdmissionGuard guard;
+
+    DeadlineJPAQuery(EntityManager em, JPQLTemplates templates, QueryMetadata metadata, QueryTimeouts timeouts, QueryAdmissionGuard guard) {
+        super(em, templates, metadata);
+        this.timeouts = timeouts;
+        this.guard = guard;
+    }
+
+    @Override
+    protected Query createQuery(QueryModifiers modifiers, boolean forCount) {
+        Query query = super.createQuery(guard.admit(getMetadata(), modifiers, forCount, this::toString), forCount);
+        QueryDeadline deadline = QueryDeadline.current();
+        if (deadline != null) {
+            query.setHint(QueryHints.TIMEOUT_HIBERNATE, deadline.timeoutSeconds());
+        }
+        return query;
+    }
+
+    @Override
+    public List<T> fetch() {
+        return execute(super::fetch);
+    }
+
+    @Override
+    public T fetchOne() {
+        return execute(super::fetchOne);
+    }
+
+    @Override
+    public QueryResults<T> fetchResults() {
+        return execute(super::fetchResults);
+    }
+
+    @Override
+    public long fetchCount() {
+        return execute(super::fetchCount);
+    }
+
+    @Override
+    public DeadlineJPAQuery<T> clone(EntityManager entityManager, JPQLTemplates templates) {
+        DeadlineJPAQuery<T> q = new DeadlineJPAQuery<>(entityManager, templates, getMetadata().clone(), timeouts, guard);
+        q.clone(this);
+        return q;
+    }
+
+    private <R> R execute(Supplier<R> execution) {
+        QueryDeadline deadline = QueryDeadline.current();
+        try {
+            return deadline == null ? execution.get() : deadline.run(entityManager.unwrap(Session.class), execution);
+        } catch (RuntimeException e) {
+            if (QueryTimeouts.isTimeout(e)) {
+                timeouts.record(toString());
+            }
+            throw e;
+        }
+    }
+}
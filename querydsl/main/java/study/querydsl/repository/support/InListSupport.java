@@ -0,0 +1,49 @@
+package study.querydsl.repository.support;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 길이 제한 없는 IN 절 처리
+ *
+ * member.id.in(ids) 처럼 IN 목록을 그대로 넘기면
+ * 1. 목록 길이마다 다른 SQL이 나와서 실행 계획을 재사용 못 한다.
+ *    -> hibernate.query.in_clause_parameter_padding 으로 파라미터 개수를 2의 거듭제곱으로 맞춘다. (1,2,4,8,...)
+ * 2. 너무 길면 DB 파라미터 개수 제한에 걸린다.
+ *    -> 여기서 chunkSize 단위로 잘라서 여러 번 실행한다.
+ *
+ * chunkSize도 2의 거듭제곱으로 두면 마지막 조각 빼고는 전부 같은 SQL이 된다.
+ */
+public final class InListSupport {
+
+    public static final int DEFAULT_CHUNK_SIZE = 512;
+
+    private InListSupport() {
+    }
+
+    public static <T> List<List<T>> chunks(Collection<T> values, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive : " + chunkSize);
+        }
+
+        List<T> list = values instanceof List ? (List<T>) values : new ArrayList<>(values);
+        List<List<T>> chunks = new ArrayList<>((list.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < list.size(); from += chunkSize) {
+            chunks.add(list.subList(from, Math.min(from + chunkSize, list.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * 조각마다 query를 실행하고 결과를 순서대로 합친다.
+     */
+    public static <T, R> List<R> fetchInChunks(Collection<T> values, int chunkSize, Function<List<T>, List<R>> query) {
+        List<R> result = new ArrayList<>();
+        for (List<T> chunk : chunks(values, chunkSize)) {
+            result.addAll(query.apply(chunk));
+        }
+        return result;
+    }
+}
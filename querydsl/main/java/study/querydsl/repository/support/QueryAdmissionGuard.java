@@ -0,0 +1,182 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.jpa.JPAQueryMixin;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 쿼리 실행 전 QueryMetadata를 보고 위험한 쿼리를 거른다. (DeadlineJPAQuery.createQuery 에서 불린다)
+ *
+ * 1. TOO_MANY_JOINS : join이 querydsl.guard.max-joins 개를 넘는다.
+ * 2. CARTESIAN_PRODUCT : from 에 엔티티가 둘 이상이다. (from(member, team) 같은 세타 조인)
+ * 3. FETCH_JOIN_PAGING : 컬렉션 fetch join + offset/limit. 하이버네이트가 전부 읽어서 메모리에서 페이징한다.
+ * 4. UNBOUNDED : limit도 where도 없는데 대상 테이블이 querydsl.guard.large-table-rows 보다 크다. (TableStats 추정치)
+ *    카티션 곱이면 from 엔티티들 row 수를 곱해서 본다.
+ *
+ * 걸리면 querydsl.guard.mode 에 따라
+ * - off : 검사 안 함
+ * - log : 경고 로그만 (기본)
+ * - cap : UNBOUNDED, CARTESIAN_PRODUCT 는 limit을 querydsl.guard.cap 으로 줄여서 실행. 나머지는 로그.
+ * - reject : QueryRejectedException
+ *
+ * 일부러 전체를 읽는 곳(ColumnarQuery 같은)은 unguarded() 안에서 실행한다.
+ * count 쿼리는 limit 검사를 안 한다.
+ */
+@Slf4j
+@Component
+public class QueryAdmissionGuard {
+
+    public enum Mode {
+        OFF, LOG, CAP, REJECT
+    }
+
+    public enum Violation {
+        TOO_MANY_JOINS, CARTESIAN_PRODUCT, FETCH_JOIN_PAGING, UNBOUNDED
+    }
+
+    private static final ThreadLocal<Boolean> UNGUARDED = new ThreadLocal<>();
+
+    private final Mode mode;
+    private final int maxJoins;
+    private final long cap;
+    private final long largeTableRows;
+    private final TableStats tableStats;
+
+    public QueryAdmissionGuard(@Value("${querydsl.guard.mode:log}") String mode,
+                               @Value("${querydsl.guard.max-joins:4}") int maxJoins,
+                               @Value("${querydsl.guard.cap:1000}") long cap,
+                               @Value("${querydsl.guard.large-table-rows:10000}") long largeTableRows,
+                               TableStats tableStats) {
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.maxJoins = maxJoins;
+        this.cap = cap;
+        this.largeTableRows = largeTableRows;
+        this.tableStats = tableStats;
+    }
+
+    /**
+     * 아무것도 안 하는 가드 (QuerydslQueryFactory(em) 기본값)
+     */
+    public static QueryAdmissionGuard disabled() {
+        return new QueryAdmissionGuard("off", 0, 0, 0, null);
+    }
+
+    public static <T> T unguarded(Supplier<T> work) {
+        Boolean previous = UNGUARDED.get();
+        UNGUARDED.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                UNGUARDED.remove();
+            }
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 실행해도 되는지 본다. 실행할 modifiers를 돌려준다. (cap 모드면 limit이 줄어 있을 수 있다.)
+     */
+    QueryModifiers admit(QueryMetadata metadata, QueryModifiers modifiers, boolean forCount, Supplier<String> jpql) {
+        if (mode == Mode.OFF || UNGUARDED.get() != null) {
+            return modifiers;
+        }
+
+        Set<Violation> violations = inspect(metadata, modifiers, forCount);
+        if (violations.isEmpty()) {
+            return modifiers;
+        }
+
+        switch (mode) {
+            case REJECT:
+                throw new QueryRejectedException(violations, jpql.get());
+            case CAP:
+                if (violations.contains(Violation.UNBOUNDED) || violations.contains(Violation.CARTESIAN_PRODUCT)) {
+                    Long limit = modifiers == null ? null : modifiers.getLimit();
+                    if (!forCount && (limit == null || limit > cap)) {
+                        log.warn("query capped to {} rows {}: {}", cap, violations, jpql.get());
+                        return new QueryModifiers(cap, modifiers == null ? null : modifiers.getOffset());
+                    }
+                }
+                log.warn("query admitted with {}: {}", violations, jpql.get());
+                return modifiers;
+            default:
+                log.warn("query admitted with {}: {}", violations, jpql.get());
+                return modifiers;
+        }
+    }
+
+    Set<Violation> inspect(QueryMetadata metadata, QueryModifiers modifiers, boolean forCount) {
+        Set<Violation> violations = EnumSet.noneOf(Violation.class);
+        boolean paged = modifiers != null && (modifiers.getLimit() != null || modifiers.getOffset() != null);
+
+        int joins = 0;
+        int roots = 0;
+        long rootRows = 1;
+        for (JoinExpression join : metadata.getJoins()) {
+            if (join.getType() == JoinType.DEFAULT) {
+                roots++;
+                rootRows = multiply(rootRows, estimatedRows(join.getTarget()));
+                continue;
+            }
+            joins++;
+            if (paged && !forCount && join.hasFlag(JPAQueryMixin.FETCH) && isCollection(join.getTarget())) {
+                violations.add(Violation.FETCH_JOIN_PAGING);
+            }
+        }
+
+        if (joins > maxJoins) {
+            violations.add(Violation.TOO_MANY_JOINS);
+        }
+        if (roots > 1) {
+            violations.add(Violation.CARTESIAN_PRODUCT);
+        }
+        if (!forCount && !paged && metadata.getWhere() == null && metadata.getGroupBy().isEmpty()
+                && rootRows > largeTableRows) {
+            violations.add(Violation.UNBOUNDED);
+        }
+        return violations;
+    }
+
+    private long estimatedRows(Expression<?> target) {
+        if (tableStats == null) {
+            return -1;
+        }
+        long rows = tableStats.estimatedRows(unwrapAlias(target).getType());
+        return rows < 0 ? 0 : rows; // 모르면 작은 테이블로 본다.
+    }
+
+    private static boolean isCollection(Expression<?> target) {
+        return unwrapAlias(target) instanceof CollectionExpression;
+    }
+
+    // join(member.team, team) 의 target 은 alias 연산(member.team as team)이다.
+    private static Expression<?> unwrapAlias(Expression<?> target) {
+        if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+            return ((Operation<?>) target).getArg(0);
+        }
+        return target;
+    }
+
+    private static long multiply(long a, long b) {
+        long product = a * b;
+        return (a != 0 && product / a != b) || product < 0 ? Long.MAX_VALUE : product;
+    }
+}
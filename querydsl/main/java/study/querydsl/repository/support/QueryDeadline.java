@@ -0,0 +1,93 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.Session;
+
+import javax.persistence.QueryTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 요청 단위 쿼리 마감 시각
+ *
+ * 컨트롤러 앞(QueryDeadlineInterceptor)에서 start() 하면 그 스레드에서 QuerydslQueryFactory로 만든 쿼리는
+ * 남은 시간을 JDBC 쿼리 타임아웃(org.hibernate.timeout, 초 단위 올림)으로 달고 나간다.
+ * 이미 마감이 지났으면 DB에 가지 않고 바로 QueryTimeoutException.
+ *
+ * cancel() 은 다른 스레드에서 불러도 된다. 실행 중인 statement를 Session.cancelQuery()로 끊고,
+ * 이후 쿼리도 바로 실패시킨다.
+ */
+public final class QueryDeadline {
+
+    private static final ThreadLocal<QueryDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+    private final AtomicReference<Session> running = new AtomicReference<>();
+    private volatile boolean cancelled;
+
+    private QueryDeadline(long timeoutMillis) {
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    public static QueryDeadline start(long timeoutMillis) {
+        QueryDeadline deadline = new QueryDeadline(timeoutMillis);
+        CURRENT.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * 다른 스레드에서 시작한 마감을 이 스레드에 건다. (비동기 요청 처리 스레드)
+     */
+    public static void resume(QueryDeadline deadline) {
+        CURRENT.set(deadline);
+    }
+
+    /**
+     * 마감이 없으면 null
+     */
+    public static QueryDeadline current() {
+        return CURRENT.get();
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return cancelled || deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        Session session = running.get();
+        if (session != null) {
+            session.cancelQuery(); // 세션 메서드 중 유일하게 다른 스레드에서 불러도 되는 것
+        }
+    }
+
+    /**
+     * 쿼리에 걸 타임아웃(초). 마감이 지났으면 예외.
+     */
+    int timeoutSeconds() {
+        if (isExpired()) {
+            throw new QueryTimeoutException(cancelled ? "query cancelled" : "query deadline exceeded");
+        }
+        return (int) Math.max(1, (remainingMillis() + 999) / 1000);
+    }
+
+    /**
+     * statement 실행 동안 세션을 잡아둔다. (cancel() 대상)
+     */
+    <T> T run(Session session, Supplier<T> execution) {
+        running.set(session);
+        try {
+            return execution.get();
+        } finally {
+            running.compareAndSet(session, null);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package study.querydsl.repository.support;
+
+import java.util.Set;
+
+/**
+ * QueryAdmissionGuard가 reject 모드에서 막은 쿼리
+ */
+public class QueryRejectedException extends RuntimeException {
+
+    private final Set<QueryAdmissionGuard.Violation> violations;
+
+    QueryRejectedException(Set<QueryAdmissionGuard.Violation> violations, String jpql) {
+        super("query rejected " + violations + ": " + jpql);
+        this.violations = violations;
+    }
+
+    public Set<QueryAdmissionGuard.Violation> getViolations() {
+        return violations;
+    }
+}
@@ -0,0 +1,46 @@
+package study.querydsl.repository.support;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 쿼리 모양(JPQL)별 타임아웃 횟수
+ * 파라미터 값은 JPQL에 ?1 처럼 들어가니 값이 달라도 같은 모양으로 센다.
+ */
+public class QueryTimeouts {
+
+    private final ConcurrentMap<String, LongAdder> timeouts = new ConcurrentHashMap<>();
+
+    void record(String jpql) {
+        timeouts.computeIfAbsent(jpql, key -> new LongAdder()).increment();
+    }
+
+    public long getTimeouts(String jpql) {
+        LongAdder count = timeouts.get(jpql);
+        return count == null ? 0 : count.sum();
+    }
+
+    public long getTotal() {
+        return timeouts.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        timeouts.forEach((jpql, count) -> snapshot.put(jpql, count.sum()));
+        return snapshot;
+    }
+
+    static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof javax.persistence.QueryTimeoutException
+                    || cause instanceof org.hibernate.QueryTimeoutException
+                    || cause instanceof java.sql.SQLTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
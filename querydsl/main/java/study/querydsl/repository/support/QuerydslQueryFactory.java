@@ -0,0 +1,114 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+
+import javax.persistence.EntityManager;
+import java.util.function.Supplier;
+
+/**
+ * JPAQueryFactory + 읽기 전용 모드
+ *
+ * selectFrom(member)로 읽은 엔티티는 전부 영속 상태가 되고, 하이버네이트는 엔티티마다 스냅샷을 들고 있다가
+ * flush 때마다 변경 감지를 한다. 조회만 하는 흐름(join, sort 같은)에서는 낭비다.
+ *
+ * 1. readOnly() : 이 팩토리로 만든 쿼리에 read-only, FlushMode.MANUAL 힌트를 건다.
+ *    -> 결과 엔티티는 스냅샷이 없고 변경 감지 대상에서 빠진다. 쿼리 전에 auto flush도 안 한다.
+ * 2. readOnlySession() : 블록 안에서 세션 자체를 읽기 전용 + MANUAL로 바꿨다가 원래대로 돌려놓는다.
+ *    -> em.find, 지연 로딩으로 올라오는 엔티티까지 읽기 전용이 된다.
+ *
+ * 읽기 전용 엔티티는 값을 바꿔도 DB에 반영되지 않는다.
+ *
+ * 쿼리는 DeadlineJPAQuery로 만든다. 요청에 QueryDeadline이 걸려 있으면 남은 시간을 타임아웃으로 달고,
+ * 타임아웃 횟수는 getTimeouts()에 JPQL 모양별로 쌓인다. (update/delete 절은 해당 없음)
+ * 실행 전에 QueryAdmissionGuard가 QueryMetadata를 보고 위험한 쿼리를 로그/limit 축소/거절한다.
+ *
+ * update()/delete()는 BulkDmlExecutor의 clause를 돌려준다. 그래서 벌크 쿼리를 어디서 날리든
+ * 테이블 버전, Team.memberCount, member_search_view, 복제본 같은 BulkDmlListener가 빠짐없이 불린다.
+ */
+public class QuerydslQueryFactory extends JPAQueryFactory {
+
+    private final EntityManager em;
+    private final boolean readOnly;
+    private final QuerydslQueryFactory readOnlyFactory;
+    private final QueryTimeouts timeouts;
+    private final QueryAdmissionGuard guard;
+    private final BulkDmlExecutor bulkDml; // null 이면 JPAQueryFactory 기본 clause
+
+    public QuerydslQueryFactory(EntityManager em) {
+        this(em, QueryAdmissionGuard.disabled());
+    }
+
+    public QuerydslQueryFactory(EntityManager em, QueryAdmissionGuard guard) {
+        this(em, guard, null);
+    }
+
+    public QuerydslQueryFactory(EntityManager em, QueryAdmissionGuard guard, BulkDmlExecutor bulkDml) {
+        this(em, false, new QueryTimeouts(), guard, bulkDml);
+    }
+
+    private QuerydslQueryFactory(EntityManager em, boolean readOnly, QueryTimeouts timeouts, QueryAdmissionGuard guard, BulkDmlExecutor bulkDml) {
+        super(em);
+        this.em = em;
+        this.readOnly = readOnly;
+        this.timeouts = timeouts;
+        this.guard = guard;
+        this.bulkDml = bulkDml;
+        this.readOnlyFactory = readOnly ? this : new QuerydslQueryFactory(em, true, timeouts, guard, bulkDml);
+    }
+
+    public QuerydslQueryFactory readOnly() {
+        return readOnlyFactory;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public QueryTimeouts getTimeouts() {
+        return timeouts;
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        JPAQuery<?> query = new DeadlineJPAQuery<Void>(em, JPAProvider.getTemplates(em), new DefaultQueryMetadata(), timeouts, guard);
+        if (readOnly) {
+            query.setHint(QueryHints.READ_ONLY, true);
+            query.setHint(QueryHints.FLUSH_MODE, FlushMode.MANUAL);
+        }
+        return query;
+    }
+
+    @Override
+    public JPAUpdateClause update(EntityPath<?> path) {
+        return bulkDml == null ? super.update(path) : bulkDml.updateClause(path);
+    }
+
+    @Override
+    public JPADeleteClause delete(EntityPath<?> path) {
+        return bulkDml == null ? super.delete(path) : bulkDml.deleteClause(path);
+    }
+
+    public <T> T readOnlySession(Supplier<T> work) {
+        Session session = em.unwrap(Session.class);
+        boolean defaultReadOnly = session.isDefaultReadOnly();
+        FlushMode flushMode = session.getHibernateFlushMode();
+
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        try {
+            return work.get();
+        } finally {
+            session.setDefaultReadOnly(defaultReadOnly);
+            session.setHibernateFlushMode(flushMode);
+        }
+    }
+}
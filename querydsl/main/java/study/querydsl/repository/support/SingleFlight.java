@@ -0,0 +1,124 @@
+package study.querydsl.repository.support;
+
+import javax.persistence.QueryTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 같은 키로 동시에 들어온 호출을 한 번의 실행으로 합친다. (single flight)
+ *
+ * 먼저 온 호출(leader)만 loader를 실행하고, 실행 중에 같은 키로 들어온 호출은 그 결과를 같이 받는다.
+ * 실행이 끝나면 키를 지우니 캐시가 아니다. 다음 호출은 다시 실행한다.
+ *
+ * 1. 결과는 여러 호출이 같이 들고 가니 불변이어야 한다. (Collections.unmodifiableList 같은)
+ * 2. 예외도 같이 받는다. leader가 실패하면 기다리던 호출도 같은 예외로 실패한다.
+ *    단 타임아웃/취소는 leader 요청의 마감 때문이지 쿼리 탓이 아니다. 기다리던 호출은 자기 마감이 남았으면 다시 시도한다.
+ *    (그중 하나가 새 leader가 된다.)
+ * 3. 기다리는 호출은 자기 QueryDeadline까지만 기다린다. 마감이 지나면 QueryTimeoutException.
+ * 4. leader 실행 중에 커밋된 변경은 합쳐진 호출의 결과에 안 보일 수 있다. 방금 쓴 값을 바로 읽어야 하는 곳에는 쓰지 않는다.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running;
+        while ((running = inFlight.putIfAbsent(key, mine)) != null) {
+            coalesced.increment();
+            try {
+                return await(running);
+            } catch (LeaderTimedOut retry) {
+                // leader 마감으로 끝났다. leader가 치우기 전이면 대신 치우고 내 마감 안에서 다시 줄을 선다.
+                inFlight.remove(key, running);
+            }
+        }
+
+        executed.increment();
+        try {
+            V result = loader.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * 실제로 loader를 실행한 횟수
+     */
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * 다른 호출의 실행에 얹혀서 결과만 받은 횟수
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> running) {
+        QueryDeadline deadline = QueryDeadline.current();
+        try {
+            if (deadline == null) {
+                return running.get();
+            }
+            if (deadline.isExpired()) {
+                throw new QueryTimeoutException("query deadline exceeded");
+            }
+            return running.get(Math.max(1, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("query deadline exceeded while waiting for a coalesced call");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("interrupted while waiting for a coalesced call");
+        } catch (CancellationException e) {
+            throw LeaderTimedOut.INSTANCE;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (QueryTimeouts.isTimeout(cause)) {
+                throw LeaderTimedOut.INSTANCE;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * leader가 타임아웃/취소로 끝났다는 신호. 밖으로 나가지 않는다.
+     */
+    private static final class LeaderTimedOut extends RuntimeException {
+        static final LeaderTimedOut INSTANCE = new LeaderTimedOut();
+
+        private LeaderTimedOut() {
+            super(null, null, false, false);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("executed=%d coalesced=%d inFlight=%d", getExecuted(), getCoalesced(), getInFlight());
+    }
+}
@@ -0,0 +1,42 @@
+package study.querydsl.repository.support;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.EntityType;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 엔티티별 대략적인 row 수 (QueryAdmissionGuard가 쓴다)
+ *
+ * DB마다 통계 카탈로그가 달라서 select count(e) 를 주기적으로 돌려 캐시한다.
+ * 주기는 querydsl.guard.stats-refresh-ms (기본 5분). 큰 테이블이면 count 자체도 무거우니 너무 짧게 잡지 않는다.
+ * 아직 안 센 엔티티는 -1
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TableStats {
+
+    private final EntityManager em;
+    private final Map<Class<?>, Long> estimatedRows = new ConcurrentHashMap<>();
+
+    public long estimatedRows(Class<?> entityType) {
+        return estimatedRows.getOrDefault(entityType, -1L);
+    }
+
+    @Scheduled(fixedDelayString = "${querydsl.guard.stats-refresh-ms:300000}")
+    @Transactional(readOnly = true)
+    public void refresh() {
+        for (EntityType<?> entity : em.getMetamodel().getEntities()) {
+            Long rows = em.createQuery("select count(e) from " + entity.getName() + " e", Long.class).getSingleResult();
+            estimatedRows.put(entity.getJavaType(), rows);
+        }
+        log.debug("table stats refreshed: {}", estimatedRows);
+    }
+}
@@ -0,0 +1,139 @@
+package study.querydsl.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import study.querydsl.cache.ResultCacheSnapshot;
+import study.querydsl.cache.ResultCodec;
+import study.querydsl.cache.TableVersions;
+import study.querydsl.cache.VersionedResultCache;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UserDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberQueryRepository;
+import study.querydsl.repository.support.SingleFlight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static study.querydsl.cache.ResultCodec.*;
+
+/**
+ * 회원 검색 + 결과 캐시 + 동시 요청 합치기
+ *
+ * 1. 결과는 member, team 테이블 버전 도장과 같이 캐시에 둔다. 버전이 그대로면 DB에 안 간다. (VersionedResultCache)
+ *    캐시는 ResultCacheSnapshot에 등록해서 재시작해도 버전이 맞는 결과는 그대로 쓴다.
+ * 2. 캐시에 없는 같은 조건의 검색이 동시에 몰리면 한 번만 DB에 가고 나머지는 그 결과를 같이 쓴다. (SingleFlight)
+ * 트랜잭션(커넥션)은 MemberQueryRepository에서 잡으니, 여기서 합쳐진 호출은 커넥션을 안 잡는다.
+ * 그래서 이 클래스에는 @Transactional을 걸지 않는다.
+ *
+ * 캐시에 든 목록과 합쳐진 호출이 받은 목록은 여러 요청이 같이 본다. 그런데 MemberDto, UserDto는 @Data라 setter가 열려 있다.
+ * 그래서 원본은 밖에 내주지 않고, 부를 때마다 DTO를 새로 만든 수정할 수 없는 목록을 돌려준다.
+ * (받은 쪽이 DTO를 고쳐도 캐시와 다른 요청에는 안 번진다.)
+ */
+@Service
+public class MemberSearchService {
+
+    private static final ResultCodec<List<Object>> CONDITION_KEY = ResultCodec.of((key, out) -> {
+        writeString(out, (String) key.get(0));
+        writeString(out, (String) key.get(1));
+        writeNullableInt(out, (Integer) key.get(2));
+        writeNullableInt(out, (Integer) key.get(3));
+    }, in -> Arrays.asList(readString(in), readString(in), readNullableInt(in), readNullableInt(in)));
+
+    private static final ResultCodec<List<MemberDto>> MEMBER_DTOS = list(ResultCodec.of((dto, out) -> {
+        writeString(out, dto.getUsername());
+        out.writeInt(dto.getAge());
+    }, in -> new MemberDto(readString(in), in.getInt())));
+
+    private static final ResultCodec<List<UserDto>> USER_DTOS = list(ResultCodec.of((dto, out) -> {
+        writeString(out, dto.getName());
+        out.writeInt(dto.getAge());
+    }, in -> {
+        UserDto dto = new UserDto();
+        dto.setName(readString(in));
+        dto.setAge(in.getInt());
+        return dto;
+    }));
+
+    private final MemberQueryRepository memberQueryRepository;
+
+    private final SingleFlight<List<Object>, List<MemberDto>> memberSearches = new SingleFlight<>();
+    private final SingleFlight<List<Object>, List<UserDto>> userSearches = new SingleFlight<>();
+    private final VersionedResultCache<List<Object>, List<MemberDto>> memberResults;
+    private final VersionedResultCache<List<Object>, List<UserDto>> userResults;
+
+    public MemberSearchService(MemberQueryRepository memberQueryRepository,
+                               TableVersions tableVersions,
+                               ResultCacheSnapshot resultCacheSnapshot,
+                               @Value("${querydsl.result-cache.max-entries:10000}") int maxEntries) {
+        this.memberQueryRepository = memberQueryRepository;
+        this.memberResults = new VersionedResultCache<>("memberSearch.v1", maxEntries, tableVersions,
+                CONDITION_KEY, MEMBER_DTOS, Member.class, Team.class);
+        this.userResults = new VersionedResultCache<>("userSearch.v1", maxEntries, tableVersions,
+                CONDITION_KEY, USER_DTOS, Member.class, Team.class);
+        resultCacheSnapshot.register(memberResults);
+        resultCacheSnapshot.register(userResults);
+    }
+
+    public List<MemberDto> search(MemberSearchCondition condition) {
+        List<Object> key = key(condition);
+        List<MemberDto> shared = memberResults.get(key, () -> memberSearches.execute(key,
+                () -> Collections.unmodifiableList(memberQueryRepository.search(condition))));
+
+        List<MemberDto> copies = new ArrayList<>(shared.size());
+        for (MemberDto dto : shared) {
+            copies.add(new MemberDto(dto.getUsername(), dto.getAge()));
+        }
+        return Collections.unmodifiableList(copies);
+    }
+
+    public List<UserDto> searchUsers(MemberSearchCondition condition) {
+        List<Object> key = key(condition);
+        List<UserDto> shared = userResults.get(key, () -> userSearches.execute(key,
+                () -> Collections.unmodifiableList(memberQueryRepository.searchUsers(condition))));
+
+        List<UserDto> copies = new ArrayList<>(shared.size());
+        for (UserDto dto : shared) {
+            UserDto copy = new UserDto();
+            copy.setName(dto.getName());
+            copy.setAge(dto.getAge());
+            copies.add(copy);
+        }
+        return Collections.unmodifiableList(copies);
+    }
+
+    public SingleFlight<?, ?> getMemberSearches() {
+        return memberSearches;
+    }
+
+    public SingleFlight<?, ?> getUserSearches() {
+        return userSearches;
+    }
+
+    public VersionedResultCache<?, ?> getMemberResults() {
+        return memberResults;
+    }
+
+    public VersionedResultCache<?, ?> getUserResults() {
+        return userResults;
+    }
+
+    /**
+     * 조건 객체는 바뀔 수 있으니 값만 뽑아서 키로 쓴다. 빈 문자열은 조건이 없는 것(null)과 같다.
+     */
+    private static List<Object> key(MemberSearchCondition condition) {
+        return Arrays.asList(
+                emptyToNull(condition.getUsername()),
+                emptyToNull(condition.getTeamName()),
+                condition.getAgeGoe(),
+                condition.getAgeLoe());
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
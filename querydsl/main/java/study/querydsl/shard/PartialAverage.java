@@ -0,0 +1,40 @@
+package study.querydsl.shard;
+
+/**
+ * 샤드별 부분 평균. avg는 그대로 합치면 틀리니 합계와 개수로 들고 있다가 마지막에 나눈다.
+ */
+public final class PartialAverage {
+
+    private final double sum;
+    private final long count;
+
+    public PartialAverage(double sum, long count) {
+        this.sum = sum;
+        this.count = count;
+    }
+
+    public static PartialAverage of(Number sum, Number count) {
+        return new PartialAverage(sum == null ? 0 : sum.doubleValue(), count == null ? 0 : count.longValue());
+    }
+
+    public PartialAverage combine(PartialAverage other) {
+        return new PartialAverage(sum + other.sum, count + other.count);
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Double average() {
+        return count == 0 ? null : sum / count;
+    }
+
+    @Override
+    public String toString() {
+        return "PartialAverage(sum=" + sum + ", count=" + count + ", avg=" + average() + ")";
+    }
+}
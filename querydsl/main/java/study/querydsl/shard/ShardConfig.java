@@ -0,0 +1,43 @@
+package study.querydsl.shard;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.event.MemberSearchViewMaintainer;
+import study.querydsl.event.TeamMemberCountMaintainer;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * querydsl.shard.urls 를 주면 샤드 조회기를 빈으로 등록한다. (안 주면 샤딩 안 함)
+ *
+ * querydsl.shard.urls=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1
+ * querydsl.shard.pool-size=10 (샤드 하나의 커넥션 풀 크기)
+ *
+ * 샤드에도 본 DB와 같은 엔티티 이벤트 리스너를 붙여서 Team.memberCount, member_search_view가 샤드 안에서 맞춰진다.
+ * 본 DB에만 있는 것
+ * - TableVersionListener : 테이블 버전(ETag, 결과 캐시)은 본 DB 조회용이다. 샤드 조회는 캐시하지 않는다.
+ * - 벌크 연산 반영(BulkDmlExecutor) : 샤드 쿼리 팩토리는 BulkDmlExecutor를 안 거친다. 샤드에서 벌크 update/delete를 하면
+ *   그 샤드의 카운트와 view는 따로 다시 맞춰야 한다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "querydsl.shard", name = "urls")
+public class ShardConfig {
+
+    @Bean
+    ShardedQueryExecutor shardedQueryExecutor(@Value("${querydsl.shard.urls}") String[] urls,
+                                              @Value("${querydsl.shard.username:sa}") String username,
+                                              @Value("${querydsl.shard.password:}") String password,
+                                              @Value("${querydsl.shard.pool-size:10}") int poolSize,
+                                              @Value("${querydsl.shard.ddl-auto:create}") String ddlAuto,
+                                              TeamMemberCountMaintainer teamMemberCountMaintainer,
+                                              MemberSearchViewMaintainer memberSearchViewMaintainer) {
+        return new ShardedQueryExecutor(ShardEntityManagerFactories.create(Arrays.asList(urls), username, password, poolSize,
+                Collections.singletonMap("hibernate.hbm2ddl.auto", ddlAuto), emf -> {
+                    teamMemberCountMaintainer.register(emf);
+                    memberSearchViewMaintainer.register(emf);
+                }));
+    }
+}
@@ -0,0 +1,98 @@
+package study.querydsl.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import study.querydsl.entity.QuerydslIdGenerator;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 샤드마다 EntityManagerFactory를 하나씩 만든다.
+ *
+ * 샤드끼리 id가 겹치면 안 되니 id 전략은 time-ordered로 고정하고 node id = 샤드 번호로 준다.
+ * 그러면 id만 보고도 어느 샤드에서 만들어진 row인지 알 수 있다. (TimeOrderedIdGenerator.nodeIdOf)
+ *
+ * 커넥션은 샤드마다 Hikari 풀(shard-0, shard-1, ...)로 잡는다. scatter 조회는 샤드마다 동시에 커넥션을 여니
+ * 매번 새 물리 커넥션을 맺으면 그 비용이 조회마다 붙는다. 풀은 close(emf)로 같이 닫는다.
+ *
+ * customizer는 만든 EntityManagerFactory마다 불린다. 본 DB와 같은 하이버네이트 이벤트 리스너를 붙일 때 쓴다. (ShardConfig)
+ */
+public final class ShardEntityManagerFactories {
+
+    private ShardEntityManagerFactories() {
+    }
+
+    public static List<EntityManagerFactory> create(List<String> jdbcUrls, String username, String password, int poolSize,
+                                                    Map<String, Object> extraProperties) {
+        return create(jdbcUrls, username, password, poolSize, extraProperties, emf -> {
+        });
+    }
+
+    public static List<EntityManagerFactory> create(List<String> jdbcUrls, String username, String password, int poolSize,
+                                                    Map<String, Object> extraProperties, Consumer<EntityManagerFactory> customizer) {
+        List<EntityManagerFactory> factories = new ArrayList<>(jdbcUrls.size());
+        for (int shard = 0; shard < jdbcUrls.size(); shard++) {
+            EntityManagerFactory emf = create(shard, jdbcUrls.get(shard), username, password, poolSize, extraProperties);
+            factories.add(emf);
+            customizer.accept(emf);
+        }
+        return factories;
+    }
+
+    /**
+     * EntityManagerFactory를 닫고 샤드 커넥션 풀도 닫는다. (하이버네이트는 넘겨받은 DataSource를 안 닫는다.)
+     */
+    public static void close(EntityManagerFactory emf) {
+        DataSource dataSource = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(ConnectionProvider.class)
+                .unwrap(DataSource.class);
+        emf.close();
+        if (dataSource instanceof HikariDataSource) {
+            ((HikariDataSource) dataSource).close();
+        }
+    }
+
+    private static EntityManagerFactory create(int shard, String jdbcUrl, String username, String password, int poolSize,
+                                               Map<String, Object> extraProperties) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("shard-" + shard);
+        dataSource.setJdbcUrl(jdbcUrl);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(poolSize);
+
+        Map<String, Object> properties = new HashMap<>();
+        // 스프링 부트 기본 설정과 같은 테이블/컬럼 이름을 쓴다.
+        properties.put("hibernate.physical_naming_strategy", "org.springframework.boot.orm.jpa.hibernate.SpringPhysicalNamingStrategy");
+        properties.put("hibernate.implicit_naming_strategy", "org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy");
+        properties.put("hibernate.jdbc.batch_size", 500);
+        properties.put("hibernate.order_inserts", true);
+        properties.putAll(extraProperties);
+        properties.put(QuerydslIdGenerator.STRATEGY_SETTING, QuerydslIdGenerator.TIME_ORDERED);
+        properties.put(QuerydslIdGenerator.NODE_ID_SETTING, shard);
+
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setPersistenceUnitName("shard" + shard);
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan("study.querydsl.entity");
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(properties);
+        try {
+            factory.afterPropertiesSet();
+        } catch (RuntimeException e) {
+            dataSource.close();
+            throw e;
+        }
+        return factory.getObject();
+    }
+}
@@ -0,0 +1,170 @@
+package study.querydsl.shard;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.entity.TimeOrderedIdGenerator;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * 팀 기준 샤딩 + scatter-gather 조회
+ *
+ * 회원은 자기 팀이 있는 샤드에 같이 들어간다. (team_id 기준 파티셔닝)
+ * 팀 id는 샤드 번호를 node id로 품고 있어서 id만 보고 샤드를 고른다.
+ *
+ * 1. 팀 하나 조회 : 그 팀 샤드에서만 실행한다.
+ * 2. 전체 정렬 + limit : 샤드마다 같은 정렬 + limit 으로 가져와서 k-way 병합 후 다시 limit.
+ *    (offset은 샤드마다 offset + limit 만큼 가져와서 병합 후 버려야 한다.)
+ * 3. groupBy : 샤드마다 부분 집계를 하고 키별로 합친다. avg는 PartialAverage(합계, 개수)로 합친다.
+ *
+ * 샤드 조회는 샤드마다 EntityManager를 새로 열고 닫는다. 결과 엔티티는 준영속 상태로 나온다.
+ */
+@Slf4j
+public class ShardedQueryExecutor implements AutoCloseable {
+
+    private final List<EntityManagerFactory> shards;
+    private final ExecutorService executor;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    public ShardedQueryExecutor(List<EntityManagerFactory> shards) {
+        if (shards.isEmpty() || shards.size() > TimeOrderedIdGenerator.MAX_NODE_ID + 1) {
+            throw new IllegalArgumentException("shard count must be between 1 and " + (TimeOrderedIdGenerator.MAX_NODE_ID + 1));
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(shards.size(), r -> {
+            Thread thread = new Thread(r, "shard-query-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public int shardOf(Long teamId) {
+        int shard = TimeOrderedIdGenerator.nodeIdOf(teamId);
+        if (shard >= shards.size()) {
+            throw new IllegalArgumentException("team id " + teamId + " belongs to unknown shard " + shard);
+        }
+        return shard;
+    }
+
+    /**
+     * 새 팀을 넣을 샤드. 돌아가면서 고른다.
+     */
+    public int shardForNewTeam() {
+        return Math.floorMod(nextShard.getAndIncrement(), shards.size());
+    }
+
+    /**
+     * 샤드 하나에서 트랜잭션을 열고 작업한다. (쓰기 포함)
+     */
+    public <R> R inShard(int shard, Function<EntityManager, R> work) {
+        EntityManager em = shards.get(shard).createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        try {
+            tx.begin();
+            R result = work.apply(em);
+            tx.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * 팀 하나에 대한 조회. 그 팀 샤드로만 간다.
+     */
+    public <R> R forTeam(Long teamId, Function<JPAQueryFactory, R> query) {
+        return inShard(shardOf(teamId), em -> query.apply(new JPAQueryFactory(em)));
+    }
+
+    /**
+     * 모든 샤드에 동시에 던지고 샤드 순서대로 결과를 모은다.
+     */
+    public <R> List<R> scatter(Function<JPAQueryFactory, R> query) {
+        List<CompletableFuture<R>> futures = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            int target = shard;
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> inShard(target, em -> query.apply(new JPAQueryFactory(em))), executor));
+        }
+
+        List<R> results = new ArrayList<>(shards.size());
+        for (CompletableFuture<R> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * 샤드마다 order 순으로 정렬된 결과(최대 limit 건)를 받아 k-way 병합한다.
+     * query는 order와 같은 orderBy, 그리고 limit(limit)을 걸어야 한다.
+     */
+    public <T> List<T> scatterOrdered(Function<JPAQueryFactory, List<T>> query, Comparator<? super T> order, int limit) {
+        List<List<T>> partials = scatter(query);
+
+        // (샤드 번호, 위치)를 힙에 넣고 가장 앞선 것부터 꺼낸다.
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Math.max(1, partials.size()),
+                (a, b) -> order.compare(partials.get(a[0]).get(a[1]), partials.get(b[0]).get(b[1])));
+        for (int shard = 0; shard < partials.size(); shard++) {
+            if (!partials.get(shard).isEmpty()) {
+                heap.add(new int[]{shard, 0});
+            }
+        }
+
+        List<T> merged = new ArrayList<>(limit);
+        while (!heap.isEmpty() && merged.size() < limit) {
+            int[] head = heap.poll();
+            List<T> partial = partials.get(head[0]);
+            merged.add(partial.get(head[1]));
+            if (head[1] + 1 < partial.size()) {
+                heap.add(new int[]{head[0], head[1] + 1});
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 샤드별 groupBy 결과(Tuple)를 키별로 합친다.
+     *
+     * @param key     Tuple에서 그룹 키 꺼내기
+     * @param partial Tuple에서 부분 집계 값 만들기
+     * @param combine 부분 집계 합치기
+     */
+    public <K, A> Map<K, A> scatterAggregate(Function<JPAQueryFactory, List<Tuple>> query,
+                                             Function<Tuple, K> key,
+                                             Function<Tuple, A> partial,
+                                             BinaryOperator<A> combine) {
+        Map<K, A> combined = new LinkedHashMap<>();
+        for (List<Tuple> rows : scatter(query)) {
+            for (Tuple row : rows) {
+                combined.merge(key.apply(row), partial.apply(row), combine);
+            }
+        }
+        return combined;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        shards.forEach(ShardEntityManagerFactories::close);
+    }
+}
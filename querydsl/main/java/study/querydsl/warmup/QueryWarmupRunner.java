@@ -0,0 +1,124 @@
+package study.querydsl.warmup;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * 기동 워밍업
+ *
+ * 기동 직후 첫 요청들은 JPQL 파싱, 쿼리 계획 캐시 미스, Q타입 클래스 로딩, JIT 안 된 코드 비용을 다 낸다.
+ * 등록된 WarmupQuery를 실제 스키마에 querydsl.warmup.iterations 번씩 돌려서 그 비용을 기동 때 치른다.
+ *
+ * ApplicationRunner는 ApplicationReadyEvent 전에 돈다. 스프링 부트는 ApplicationReadyEvent 때
+ * ReadinessState.ACCEPTING_TRAFFIC을 내니, 워밍업이 끝나야 readiness가 올라간다.
+ *
+ * 결과 캐시 스냅샷(ResultCacheSnapshot)을 먼저 올리고 돈다. (HIGHEST_PRECEDENCE + 1)
+ *
+ * 워밍업 쿼리는 읽기 전용 트랜잭션에서 돌리고 롤백한다.
+ * 끝나면 쿼리별 첫 실행(cold)과 뒤쪽 절반의 중앙값(warm) 지연을 로그로 남긴다.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class QueryWarmupRunner implements ApplicationRunner {
+
+    private final ObjectProvider<WarmupQuery> queries;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int iterations;
+    private final Map<String, Result> report = new LinkedHashMap<>();
+
+    public QueryWarmupRunner(ObjectProvider<WarmupQuery> queries,
+                             JPAQueryFactory queryFactory,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${querydsl.warmup.enabled:true}") boolean enabled,
+                             @Value("${querydsl.warmup.iterations:200}") int iterations) {
+        this.queries = queries;
+        this.queryFactory = queryFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.iterations = Math.max(1, iterations);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        queries.orderedStream().forEach(query -> report.put(query.getName(), warmUp(query)));
+
+        StringBuilder lines = new StringBuilder();
+        report.forEach((name, result) -> lines.append(String.format("%n  %-12s %s", name, result)));
+        log.info("query warm-up finished in {}ms ({} iterations){}", (System.nanoTime() - start) / 1_000_000, iterations, lines);
+    }
+
+    /**
+     * 쿼리 이름별 결과. 워밍업 전이면 비어 있다.
+     */
+    public Map<String, Result> getReport() {
+        return Collections.unmodifiableMap(report);
+    }
+
+    private Result warmUp(WarmupQuery query) {
+        long[] nanos = new long[iterations];
+        try {
+            for (int i = 0; i < iterations; i++) {
+                int iteration = i;
+                long start = System.nanoTime();
+                transactionTemplate.executeWithoutResult(status -> {
+                    query.run(queryFactory, iteration);
+                    status.setRollbackOnly();
+                });
+                nanos[i] = System.nanoTime() - start;
+            }
+        } catch (RuntimeException e) {
+            // 워밍업이 실패했다고 기동을 막지는 않는다.
+            log.warn("warm-up query {} failed", query.getName(), e);
+            return new Result(nanos[0], nanos[0]);
+        }
+
+        long[] warm = Arrays.copyOfRange(nanos, iterations / 2, iterations);
+        Arrays.sort(warm);
+        return new Result(nanos[0], warm[warm.length / 2]);
+    }
+
+    public static class Result {
+
+        private final long coldNanos;
+        private final long warmNanos;
+
+        Result(long coldNanos, long warmNanos) {
+            this.coldNanos = coldNanos;
+            this.warmNanos = warmNanos;
+        }
+
+        public long getColdMicros() {
+            return coldNanos / 1_000;
+        }
+
+        public long getWarmMicros() {
+            return warmNanos / 1_000;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("cold=%dus warm(p50)=%dus (x%.1f)", getColdMicros(), getWarmMicros(),
+                    coldNanos / (double) Math.max(warmNanos, 1));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package study.querydsl.warmup;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberLoader;
+import study.querydsl.repository.MemberQueryRepository;
+import study.querydsl.repository.TeamQueryRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+import static study.querydsl.repository.MemberSearchPredicates.*;
+
+/**
+ * 실제 요청이 타는 쿼리 (/v1/members, /v1/users, /v1/teams) + id 목록 조회(MemberLoader), 페이징/조인 목록 조회
+ *
+ * 컨트롤러가 부르는 리포지토리 메서드를 그대로 부른다. 쿼리를 따로 적어두면 실제 쿼리가 바뀔 때 모양이 어긋난다.
+ * 검색은 값이 없는 조건이 빠지면서 조건 조합마다 JPQL이 달라지니, 자주 오는 조합을 돌아가며 돌린다.
+ * 모양(JPQL)이 실제 요청과 같아야 쿼리 계획 캐시가 채워진다. 파라미터 값은 상관없다.
+ */
+@Configuration
+public class WarmupQueries {
+
+    @Bean
+    WarmupQuery memberSearchWarmup(MemberQueryRepository memberQueryRepository) {
+        return WarmupQuery.of("memberSearch", (queryFactory, i) -> memberQueryRepository.search(condition(i)));
+    }
+
+    @Bean
+    WarmupQuery userSearchWarmup(MemberQueryRepository memberQueryRepository) {
+        return WarmupQuery.of("userSearch", (queryFactory, i) -> memberQueryRepository.searchUsers(condition(i)));
+    }
+
+    @Bean
+    WarmupQuery teamsWarmup(TeamQueryRepository teamQueryRepository) {
+        // 이름 접두어가 있을 때와 없을 때(전체 목록)
+        return WarmupQuery.of("teams", (queryFactory, i) -> teamQueryRepository.findTeams(i % 2 == 0 ? "team" + i : null));
+    }
+
+    @Bean
+    WarmupQuery memberLoaderWarmup(MemberLoader memberLoader) {
+        // IN 목록은 in_clause_parameter_padding으로 1, 2, 4, ... 512(잘라 보내는 크기)개마다 SQL이 다르다. 크기를 돌아가며 채운다.
+        return WarmupQuery.of("memberLoader", (queryFactory, i) -> memberLoader.findAllById(ids(1 << (i % 10))));
+    }
+
+    @Bean
+    WarmupQuery memberPageWarmup() {
+        // MemberSearchPredicates로 조립하는 목록 조회 : username 부분 문자열(trigram 조인) + 팀 조인 + 프로젝션 + 페이징
+        return WarmupQuery.of("memberPage", (queryFactory, i) -> queryFactory
+                .select(member.username, member.age, team.name)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(usernameContains("member" + i), ageBracketEq(i % 2 == 0 ? i % 60 : null))
+                .orderBy(member.id.asc())
+                .offset(i % 5 * 20L)
+                .limit(20)
+                .fetch());
+    }
+
+    /**
+     * 검색 화면에서 자주 오는 조합 : 팀 + 나이 범위, username, 팀, 나이 범위
+     */
+    static MemberSearchCondition condition(int i) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        switch (i % 4) {
+            case 0:
+                condition.setTeamName("team" + i);
+                condition.setAgeGoe(i % 50);
+                condition.setAgeLoe(i % 50 + 10);
+                break;
+            case 1:
+                condition.setUsername("member" + i);
+                break;
+            case 2:
+                condition.setTeamName("team" + i);
+                break;
+            default:
+                condition.setAgeGoe(i % 50);
+                condition.setAgeLoe(i % 50 + 10);
+                break;
+        }
+        return condition;
+    }
+
+    /**
+     * 없는 id. 모양만 맞으면 되니 값은 상관없다.
+     */
+    private static List<Long> ids(int size) {
+        List<Long> ids = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            ids.add(-id);
+        }
+        return ids;
+    }
+}
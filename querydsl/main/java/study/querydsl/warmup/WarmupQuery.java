@@ -0,0 +1,32 @@
+package study.querydsl.warmup;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import java.util.function.BiConsumer;
+
+/**
+ * 기동 때 미리 돌려볼 대표 쿼리. 빈으로 등록하면 QueryWarmupRunner가 돌린다.
+ * 두 번째 인자는 반복 번호다. 파라미터 값을 바꿔가며 돌릴 때 쓴다.
+ */
+public class WarmupQuery {
+
+    private final String name;
+    private final BiConsumer<JPAQueryFactory, Integer> query;
+
+    private WarmupQuery(String name, BiConsumer<JPAQueryFactory, Integer> query) {
+        this.name = name;
+        this.query = query;
+    }
+
+    public static WarmupQuery of(String name, BiConsumer<JPAQueryFactory, Integer> query) {
+        return new WarmupQuery(name, query);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void run(JPAQueryFactory queryFactory, int iteration) {
+        query.accept(queryFactory, iteration);
+    }
+}
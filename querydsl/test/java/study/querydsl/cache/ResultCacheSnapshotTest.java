@@ -0,0 +1,160 @@
+package study.querydsl.cache;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.service.MemberSearchService;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.cache.QTableVersion.*;
+
+/**
+ * 결과 캐시 스냅샷
+ * 버전은 커밋 후에 올라가니 테스트 트랜잭션(롤백) 없이 TransactionTemplate으로 커밋한다.
+ * 재시작은 캐시를 비우고 파일에서 다시 읽는 것으로 흉내 낸다.
+ */
+@SpringBootTest
+class ResultCacheSnapshotTest {
+
+    @Autowired
+    MemberSearchService memberSearchService;
+
+    @Autowired
+    ResultCacheSnapshot resultCacheSnapshot;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @TempDir
+    Path dir;
+
+    final List<Object> created = new ArrayList<>();
+
+    @AfterEach
+    void afterEach() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = created.size() - 1; i >= 0; i--) {
+                Object entity = created.get(i);
+                em.remove(em.find(entity.getClass(), em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity)));
+            }
+        });
+    }
+
+    @Test
+    void restoresOnlyEntriesWithMatchingVersions() throws IOException {
+        Team snapshotTeam = persist(new Team("snapshotTeam"));
+        persist(new Member("snapshotMember1", 10, snapshotTeam));
+        MemberSearchCondition condition = teamCondition("snapshotTeam");
+        List<MemberDto> before = memberSearchService.search(condition);
+        memberSearchService.searchUsers(condition);
+
+        Path file = dir.resolve("result-cache.snap");
+        assertThat(resultCacheSnapshot.write(file)).isGreaterThanOrEqualTo(2);
+
+        clearCaches();
+        assertThat(resultCacheSnapshot.load(file)).isGreaterThanOrEqualTo(2);
+
+        // 파일에서 올린 결과를 쓴다. (DB에 안 간다.)
+        long misses = memberSearchService.getMemberResults().getMisses();
+        assertThat(memberSearchService.search(condition)).isEqualTo(before);
+        assertThat(memberSearchService.getMemberResults().getMisses()).isEqualTo(misses);
+
+        // 스냅샷 뒤에 회원이 바뀌면 도장이 안 맞아서 하나도 안 올린다.
+        persist(new Member("snapshotMember2", 20, snapshotTeam));
+        clearCaches();
+        assertThat(resultCacheSnapshot.load(file)).isZero();
+        assertThat(memberSearchService.search(condition))
+                .extracting("username")
+                .containsExactlyInAnyOrder("snapshotMember1", "snapshotMember2");
+    }
+
+    @Test
+    void ignoresCorruptedSnapshot() throws IOException {
+        Team snapshotTeam = persist(new Team("snapshotTeam"));
+        persist(new Member("snapshotMember1", 10, snapshotTeam));
+        memberSearchService.search(teamCondition("snapshotTeam"));
+
+        Path file = dir.resolve("result-cache.snap");
+        resultCacheSnapshot.write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x7f;
+        Files.write(file, bytes);
+
+        clearCaches();
+        assertThat(resultCacheSnapshot.load(file)).isZero();
+    }
+
+    @Test
+    void versionsAreSavedAfterCommit() {
+        tableVersions.save();
+        long stored = storedVersion("Member");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("snapshotRolledBack", 10));
+            em.flush();
+            status.setRollbackOnly();
+        });
+        tableVersions.save();
+        assertThat(storedVersion("Member")).isEqualTo(stored);
+
+        // 한 트랜잭션에서 여러 건이어도 한 번만 올린다.
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 3; i++) {
+                Member member = new Member("snapshotMember" + i, 10);
+                em.persist(member);
+                created.add(member);
+            }
+        });
+        tableVersions.save();
+        assertThat(storedVersion("Member")).isEqualTo(stored + 1);
+    }
+
+    private long storedVersion(String table) {
+        return queryFactory
+                .select(tableVersion.version)
+                .from(tableVersion)
+                .where(tableVersion.tableName.eq(table))
+                .fetchOne();
+    }
+
+    private void clearCaches() {
+        memberSearchService.getMemberResults().clear();
+        memberSearchService.getUserResults().clear();
+    }
+
+    private static MemberSearchCondition teamCondition(String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        return condition;
+    }
+
+    private <T> T persist(T entity) {
+        transactionTemplate.executeWithoutResult(status -> em.persist(entity));
+        created.add(entity);
+        return entity;
+    }
+}
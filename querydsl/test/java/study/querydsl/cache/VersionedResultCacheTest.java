@@ -0,0 +1,79 @@
+package study.querydsl.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 도장을 직접 넘기는 get/put으로 본다. (TableVersions 없이)
+ */
+class VersionedResultCacheTest {
+
+    static final long[] STAMP = {1L};
+
+    VersionedResultCache<Integer, String> cache(int maxEntries) {
+        return new VersionedResultCache<>("test", maxEntries, null,
+                ResultCodec.of((key, out) -> out.writeInt(key), in -> in.getInt()),
+                ResultCodec.of((value, out) -> ResultCodec.writeString(out, value), ResultCodec::readString));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws InterruptedException {
+        VersionedResultCache<Integer, String> cache = cache(16);
+        for (int key = 0; key < 16; key++) {
+            cache.put(key, STAMP, "v" + key);
+            Thread.sleep(1);
+        }
+        assertThat(cache.get(0, STAMP)).isEqualTo("v0"); // 0은 방금 썼다.
+        Thread.sleep(1);
+
+        cache.put(16, STAMP, "v16"); // 1/16 넘치면 maxEntries까지 줄인다.
+
+        assertThat(cache.size()).isEqualTo(16);
+        assertThat(cache.get(1, STAMP)).isNull();
+        assertThat(cache.get(0, STAMP)).isEqualTo("v0");
+        assertThat(cache.get(16, STAMP)).isEqualTo("v16");
+    }
+
+    @Test
+    void olderStampDoesNotOverwriteNewer() {
+        VersionedResultCache<Integer, String> cache = cache(16);
+        cache.put(1, new long[]{2L}, "new");
+        cache.put(1, new long[]{1L}, "old");
+
+        assertThat(cache.get(1, new long[]{2L})).isEqualTo("new");
+        assertThat(cache.get(1, new long[]{1L})).isNull();
+    }
+
+    @Test
+    void staysBoundedUnderConcurrentPuts() throws Exception {
+        VersionedResultCache<Integer, String> cache = cache(1_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int offset = thread * 10_000;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        cache.put(offset + i, STAMP, "v");
+                        cache.get(offset + i / 2, STAMP);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // 1/16 까지는 넘쳐도 버리지 않는다.
+        assertThat(cache.size()).isLessThan(1_000 + 1_000 / 16);
+    }
+}
@@ -0,0 +1,43 @@
+package study.querydsl.config;
+
+import org.hibernate.engine.spi.PersistentAttributeInterceptable;
+import org.hibernate.engine.spi.PersistentAttributeInterceptor;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 향상 여부 확인 자체만 본다. (에이전트 없이 도는 테스트라 실제 엔티티 대신 흉내 낸 클래스를 쓴다.)
+ */
+class HibernateEnhancementConfigTest {
+
+    static class PlainEntity {
+    }
+
+    static class EnhancedEntity implements PersistentAttributeInterceptable {
+
+        private PersistentAttributeInterceptor interceptor;
+
+        @Override
+        public PersistentAttributeInterceptor $$_hibernate_getInterceptor() {
+            return interceptor;
+        }
+
+        @Override
+        public void $$_hibernate_setInterceptor(PersistentAttributeInterceptor interceptor) {
+            this.interceptor = interceptor;
+        }
+    }
+
+    @Test
+    void failsWhenEntityIsNotEnhanced() {
+        assertThatThrownBy(() -> HibernateEnhancementConfig.verifyEnhanced(EnhancedEntity.class, PlainEntity.class))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(PlainEntity.class.getName());
+    }
+
+    @Test
+    void passesWhenEnhanced() {
+        assertThatCode(() -> HibernateEnhancementConfig.verifyEnhanced(EnhancedEntity.class)).doesNotThrowAnyException();
+    }
+}
@@ -0,0 +1,77 @@
+package study.querydsl.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import study.querydsl.repository.support.QueryDeadline;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.*;
+
+class QueryDeadlineInterceptorTest {
+
+    QueryDeadlineInterceptor interceptor;
+    MockHttpServletRequest request;
+    MockHttpServletResponse response;
+    ServletWebRequest webRequest;
+    Callable<Object> task = () -> null;
+
+    @BeforeEach
+    void beforeEach() {
+        interceptor = new QueryDeadlineInterceptor(60_000, 100, 60_000);
+        request = new MockHttpServletRequest("GET", "/v1/members");
+        response = new MockHttpServletResponse();
+        webRequest = new ServletWebRequest(request, response);
+    }
+
+    @AfterEach
+    void afterEach() {
+        QueryDeadline.clear();
+        interceptor.shutdown();
+    }
+
+    @Test
+    void deadlineFollowsAsyncThread() {
+        QueryDeadline deadline = startAsync();
+
+        interceptor.preProcess(webRequest, task);
+        assertThat(QueryDeadline.current()).isSameAs(deadline);
+
+        interceptor.postProcess(webRequest, task, "ok");
+        assertThat(QueryDeadline.current()).isNull();
+        assertThat(deadline.isExpired()).isFalse();
+    }
+
+    @Test
+    void asyncErrorCancelsDeadline() {
+        // 비동기 처리 중 클라이언트가 끊으면 컨테이너가 error를 알린다.
+        QueryDeadline deadline = startAsync();
+
+        interceptor.handleError(webRequest, task, new IOException("Broken pipe"));
+
+        assertThat(deadline.isExpired()).isTrue();
+    }
+
+    @Test
+    void failedWriteCancelsDeadline() {
+        QueryDeadline deadline = startAsync();
+
+        interceptor.preProcess(webRequest, task);
+        interceptor.postProcess(webRequest, task, new IOException("Connection reset by peer"));
+
+        assertThat(deadline.isExpired()).isTrue();
+    }
+
+    private QueryDeadline startAsync() {
+        interceptor.preHandle(request, response, null);
+        QueryDeadline deadline = QueryDeadline.current();
+        interceptor.afterConcurrentHandlingStarted(request, response, null);
+        assertThat(QueryDeadline.current()).isNull(); // 요청 스레드에서는 치운다.
+        return deadline;
+    }
+}
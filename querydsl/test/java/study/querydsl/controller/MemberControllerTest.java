@@ -0,0 +1,111 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.cache.TableVersions;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * 조건부 GET (ETag / 304)
+ * 버전은 커밋 후에 올라가니 테스트 트랜잭션(롤백) 없이 TransactionTemplate으로 커밋한다.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class MemberControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    final List<Object> created = new ArrayList<>();
+
+    @AfterEach
+    void afterEach() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = created.size() - 1; i >= 0; i--) {
+                Object entity = created.get(i);
+                em.remove(em.find(entity.getClass(), em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity)));
+            }
+        });
+    }
+
+    @Test
+    void notModifiedUntilMemberChanges() throws Exception {
+        Team team = persist(new Team("etagTeam"));
+        persist(new Member("etagMember1", 10, team));
+
+        String etag = mockMvc.perform(get("/v1/members").param("teamName", "etagTeam"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+
+        // 바뀐 게 없으면 304
+        mockMvc.perform(get("/v1/members").param("teamName", "etagTeam").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // 조건이 다르면 ETag도 다르다.
+        mockMvc.perform(get("/v1/members").param("teamName", "other").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+
+        // 회원이 바뀌면 다시 200
+        persist(new Member("etagMember2", 20, team));
+        mockMvc.perform(get("/v1/members").param("teamName", "etagTeam").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+    }
+
+    @Test
+    void bumpAfterCommitOnly() {
+        long memberVersion = tableVersions.version(Member.class);
+        long teamVersion = tableVersions.version(Team.class);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("rolledBack", 10));
+            em.flush();
+            assertThat(tableVersions.version(Member.class)).isEqualTo(memberVersion); // 아직 커밋 전
+            status.setRollbackOnly();
+        });
+        assertThat(tableVersions.version(Member.class)).isEqualTo(memberVersion);
+
+        // 한 트랜잭션에서 여러 건이어도 한 번만 올린다. 회원이 바뀌면 팀 버전도 오른다.
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 3; i++) {
+                Member member = new Member("committed" + i, 10);
+                em.persist(member);
+                created.add(member);
+            }
+        });
+        assertThat(tableVersions.version(Member.class)).isEqualTo(memberVersion + 1);
+        assertThat(tableVersions.version(Team.class)).isEqualTo(teamVersion + 1);
+    }
+
+    private <T> T persist(T entity) {
+        transactionTemplate.executeWithoutResult(status -> em.persist(entity));
+        created.add(entity);
+        return entity;
+    }
+}
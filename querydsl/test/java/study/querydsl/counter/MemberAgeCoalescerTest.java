@@ -0,0 +1,104 @@
+package study.querydsl.counter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * flush는 자기 트랜잭션(REQUIRES_NEW)에서 커밋하니 테스트 트랜잭션(롤백) 없이 TransactionTemplate으로 커밋한다.
+ */
+@SpringBootTest
+class MemberAgeCoalescerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberAgeCoalescer coalescer;
+
+    Member member1;
+    Member member2;
+
+    @BeforeEach
+    void beforeEach() {
+        transactionTemplate.executeWithoutResult(status -> {
+            member1 = new Member("coalesceMember1", 10);
+            member2 = new Member("coalesceMember2", 20);
+            em.persist(member1);
+            em.persist(member2);
+        });
+    }
+
+    @AfterEach
+    void afterEach() {
+        coalescer.flush();
+        transactionTemplate.executeWithoutResult(status -> {
+            em.remove(em.find(Member.class, member1.getId()));
+            em.remove(em.find(Member.class, member2.getId()));
+        });
+    }
+
+    @Test
+    void coalesceAndFlush() {
+        coalescer.increment(member1.getId());
+        coalescer.increment(member1.getId());
+        coalescer.add(member1.getId(), 3);
+        coalescer.increment(member2.getId());
+
+        // 아직 DB에는 안 나갔지만 읽을 때는 delta가 더해져 보인다.
+        assertThat(coalescer.pendingDelta(member1.getId())).isEqualTo(5);
+        assertThat(coalescer.currentAge(member1)).isEqualTo(15);
+
+        // member1, member2는 delta가 달라서 update 문이 2번 나간다.
+        long updated = coalescer.flush();
+        assertThat(updated).isEqualTo(2);
+        assertThat(coalescer.pendingDelta(member1.getId())).isEqualTo(0);
+
+        assertThat(age(member1)).isEqualTo(15);
+        assertThat(age(member2)).isEqualTo(21);
+    }
+
+    @Test
+    void flushSurvivesCallerRollback() {
+        // 다른 트랜잭션 안에서 flush가 불려도 delta는 따로 커밋된다.
+        transactionTemplate.executeWithoutResult(status -> {
+            coalescer.add(member1.getId(), 7);
+            coalescer.flush();
+            status.setRollbackOnly();
+        });
+
+        assertThat(coalescer.pendingDelta(member1.getId())).isEqualTo(0);
+        assertThat(age(member1)).isEqualTo(17);
+    }
+
+    @Test
+    void deltaBeyondIntRangeIsSplit() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.find(Member.class, member1.getId()).setAge(Integer.MIN_VALUE));
+
+        // 밀린 delta가 int를 넘는다. (2 * Integer.MAX_VALUE)
+        coalescer.add(member1.getId(), Integer.MAX_VALUE);
+        coalescer.add(member1.getId(), Integer.MAX_VALUE);
+        assertThat(coalescer.pendingDelta(member1.getId())).isEqualTo(2L * Integer.MAX_VALUE);
+
+        assertThat(coalescer.flush()).isEqualTo(1);
+        assertThat(coalescer.pendingDelta(member1.getId())).isEqualTo(0);
+        assertThat(age(member1)).isEqualTo(Integer.MAX_VALUE - 1);
+    }
+
+    private int age(Member target) {
+        return transactionTemplate.execute(status -> em.find(Member.class, target.getId()).getAge());
+    }
+
+}
@@ -0,0 +1,184 @@
+package study.querydsl.dataset;
+
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 회원/팀 테스트 데이터 생성기
+ *
+ * seed가 같으면 항상 같은 데이터가 나온다.
+ * 1. 팀 크기 : Zipf 분포. 앞쪽 팀에 회원이 몰린다. (큰 팀 몇 개 + 작은 팀 다수)
+ * 2. 나이 : 20~30대가 많은 히스토그램
+ * 3. 이름 : 흔한 이름이 여러 명에게 겹친다. (username 중복)
+ *
+ * QueryDslBasicTest의 시나리오가 그대로 돌아가도록 teamA, teamB / member1~member4는 항상 먼저 넣는다.
+ */
+public class MemberDatasetGenerator {
+
+    public static final int SMALL = 10_000;
+    public static final int LARGE = 1_000_000;
+    public static final int HUGE = 10_000_000;
+
+    private static final int MEMBERS_PER_TEAM = 100;
+    private static final double TEAM_SKEW = 1.1;
+    private static final double NAME_COLLISION_RATE = 0.2;
+    private static final int FLUSH_SIZE = 1000;
+
+    // 나이 구간(시작, 끝)별 비율(%)
+    private static final int[][] AGE_HISTOGRAM = {
+            {10, 19, 10},
+            {20, 29, 30},
+            {30, 39, 30},
+            {40, 49, 20},
+            {50, 69, 10},
+    };
+
+    private static final String[] SYLLABLES = {
+            "min", "jun", "seo", "ji", "hyun", "woo", "young", "su", "ha", "eun",
+            "do", "yun", "jae", "hoon", "na", "ra", "bin", "sung", "kyu", "tae"
+    };
+
+    private final long seed;
+
+    public MemberDatasetGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * 회원 members명과 팀을 만든다. flush/clear 하면서 넣으니 끝나면 영속성 컨텍스트는 비어 있다.
+     */
+    public Dataset generate(EntityManager em, int members) {
+        Random random = new Random(seed);
+        int teamCount = Math.max(2, members / MEMBERS_PER_TEAM);
+        double[] teamCdf = zipfCdf(teamCount, TEAM_SKEW);
+
+        List<Long> teamIds = new ArrayList<>(teamCount);
+        long[] teamSizes = new long[teamCount];
+
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        teamIds.add(teamA.getId());
+        teamIds.add(teamB.getId());
+        for (int i = 2; i < teamCount; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            teamIds.add(team.getId());
+        }
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        teamSizes[0] += 2;
+        teamSizes[1] += 2;
+        em.flush();
+        em.clear();
+
+        for (int i = 4; i < members; i++) {
+            int teamIndex = sample(teamCdf, random.nextDouble());
+            Team team = em.getReference(Team.class, teamIds.get(teamIndex));
+            teamSizes[teamIndex]++;
+
+            // changeTeam이 team.members를 초기화하지 않게 팀은 연관관계만 건다.
+            Member member = new Member(name(random, i), age(random));
+            member.setTeam(team);
+            em.persist(member);
+
+            if ((i + 1) % FLUSH_SIZE == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+
+        return new Dataset(seed, members, teamIds, teamSizes);
+    }
+
+    private static String name(Random random, int index) {
+        String base = SYLLABLES[random.nextInt(SYLLABLES.length)] + SYLLABLES[random.nextInt(SYLLABLES.length)];
+        // 일부는 이름만 쓴다 -> 같은 username이 여러 명 생긴다.
+        return random.nextDouble() < NAME_COLLISION_RATE ? base : base + index;
+    }
+
+    private static int age(Random random) {
+        int pick = random.nextInt(100);
+        for (int[] bucket : AGE_HISTOGRAM) {
+            if (pick < bucket[2]) {
+                return bucket[0] + random.nextInt(bucket[1] - bucket[0] + 1);
+            }
+            pick -= bucket[2];
+        }
+        throw new IllegalStateException("age histogram must add up to 100");
+    }
+
+    private static double[] zipfCdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, double value) {
+        int low = 0;
+        int high = cdf.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cdf[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public static class Dataset {
+        private final long seed;
+        private final int members;
+        private final List<Long> teamIds;
+        private final long[] teamSizes;
+
+        Dataset(long seed, int members, List<Long> teamIds, long[] teamSizes) {
+            this.seed = seed;
+            this.members = members;
+            this.teamIds = teamIds;
+            this.teamSizes = teamSizes;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public int getMembers() {
+            return members;
+        }
+
+        public List<Long> getTeamIds() {
+            return teamIds;
+        }
+
+        public long teamSize(int teamIndex) {
+            return teamSizes[teamIndex];
+        }
+
+        @Override
+        public String toString() {
+            return "Dataset(seed=" + seed + ", members=" + members + ", teams=" + teamIds.size()
+                    + ", largestTeam=" + teamSizes[0] + ")";
+        }
+    }
+}
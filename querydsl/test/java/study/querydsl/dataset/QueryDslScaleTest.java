@@ -0,0 +1,216 @@
+package study.querydsl.dataset;
+
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.QMember;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+
+/**
+ * QueryDslBasicTest 시나리오를 큰 데이터로 다시 돌려서 시간 예산을 넘는지 본다.
+ *
+ * 크기 : -Dscale.size=small|large|huge (10k / 1M / 10M), 기본 small
+ * seed : -Dscale.seed=42
+ * 반복 : -Dscale.runs=5 (시나리오마다 워밍업 WARMUP_RUNS 번 뒤에 runs 번 재서 중앙값을 예산과 비교)
+ *
+ * 데이터를 한 번만 넣으려고 시나리오를 테스트 하나 안에서 차례로 돌린다. (끝나면 롤백)
+ * 벌크 update/delete는 데이터를 바꾸니 조건에 맞는 행이 없는 값으로 워밍업하고 한 번만 잰다.
+ * 예산을 넘긴 시나리오는 모아서 한 번에 실패로 보여준다.
+ *
+ * 데이터를 넣는 데만 몇 분이 걸릴 수 있으니 -Dbenchmark=true 일 때만 돈다.
+ */
+@SpringBootTest
+@Transactional
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class QueryDslScaleTest {
+
+    enum Scale {
+        SMALL(MemberDatasetGenerator.SMALL, 1),
+        LARGE(MemberDatasetGenerator.LARGE, 20),
+        HUGE(MemberDatasetGenerator.HUGE, 200);
+
+        final int members;
+        final int budgetFactor;
+
+        Scale(int members, int budgetFactor) {
+            this.members = members;
+            this.budgetFactor = budgetFactor;
+        }
+    }
+
+    // small 기준 시나리오별 예산(ms). large, huge는 budgetFactor 배.
+    static final Map<String, Long> BASE_BUDGET_MS = new LinkedHashMap<>();
+
+    static {
+        BASE_BUDGET_MS.put("search", 50L);
+        BASE_BUDGET_MS.put("sort", 200L);
+        BASE_BUDGET_MS.put("paging", 200L);
+        BASE_BUDGET_MS.put("count", 100L);
+        BASE_BUDGET_MS.put("aggregation", 100L);
+        BASE_BUDGET_MS.put("groupBy", 200L);
+        BASE_BUDGET_MS.put("join", 300L);
+        BASE_BUDGET_MS.put("fetchJoin", 50L);
+        BASE_BUDGET_MS.put("subQuery", 200L);
+        BASE_BUDGET_MS.put("subQueryIn", 500L);
+        BASE_BUDGET_MS.put("dynamicQuery", 50L);
+        BASE_BUDGET_MS.put("bulkUpdate", 500L);
+        BASE_BUDGET_MS.put("bulkDelete", 500L);
+    }
+
+    static final Scale SCALE = Scale.valueOf(System.getProperty("scale.size", "small").toUpperCase());
+    static final long SEED = Long.getLong("scale.seed", 42L);
+    static final int RUNS = Math.max(1, Integer.getInteger("scale.runs", 5));
+    static final int WARMUP_RUNS = 3;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Test
+    public void scenariosWithinBudget() {
+        long start = System.nanoTime();
+        MemberDatasetGenerator.Dataset dataset = new MemberDatasetGenerator(SEED).generate(em, SCALE.members);
+        System.out.println(dataset + " generated in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+
+        QMember memberSub = new QMember("memberSub");
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        scenarios.put("search", Scenario.read(() -> queryFactory
+                .selectFrom(member)
+                .where(member.username.eq("member1"), member.age.eq(10))
+                .fetchOne()));
+        scenarios.put("sort", Scenario.read(() -> queryFactory
+                .selectFrom(member)
+                .where(member.age.eq(25))
+                .orderBy(member.age.desc(), member.username.asc().nullsLast())
+                .fetch()));
+        scenarios.put("paging", Scenario.read(() -> queryFactory
+                .selectFrom(member)
+                .orderBy(member.username.desc())
+                .offset(SCALE.members / 2)
+                .limit(20)
+                .fetch()));
+        scenarios.put("count", Scenario.read(() -> queryFactory
+                .select(member.count())
+                .from(member)
+                .fetchOne()));
+        scenarios.put("aggregation", Scenario.read(() -> queryFactory
+                .select(member.count(), member.age.sum(), member.age.avg(), member.age.max(), member.age.min())
+                .from(member)
+                .fetch()));
+        scenarios.put("groupBy", Scenario.read(() -> queryFactory
+                .select(team.name, member.age.avg())
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name)
+                .fetch()));
+        scenarios.put("join", Scenario.read(() -> queryFactory
+                .select(member.id)
+                .from(member)
+                .join(member.team, team)
+                .where(team.name.eq("teamB"))
+                .fetch()));
+        scenarios.put("fetchJoin", Scenario.read(() -> queryFactory
+                .selectFrom(member)
+                .join(member.team, team).fetchJoin()
+                .where(member.username.eq("member1"))
+                .fetchOne()));
+        scenarios.put("subQuery", Scenario.read(() -> queryFactory
+                .select(member.id)
+                .from(member)
+                .where(member.age.eq(JPAExpressions.select(memberSub.age.max()).from(memberSub)))
+                .fetch()));
+        scenarios.put("subQueryIn", Scenario.read(() -> queryFactory
+                .select(member.id)
+                .from(member)
+                .where(member.age.in(JPAExpressions.select(memberSub.age).from(memberSub).where(memberSub.age.gt(60))))
+                .fetch()));
+        scenarios.put("dynamicQuery", Scenario.read(() -> queryFactory
+                .selectFrom(member)
+                .where(member.username.eq("member1"), member.age.eq(10))
+                .fetch()));
+        scenarios.put("bulkUpdate", Scenario.mutation(age -> queryFactory
+                .update(member)
+                .set(member.age, member.age.add(1))
+                .where(member.age.lt(age))
+                .execute(), 0, 15));
+        scenarios.put("bulkDelete", Scenario.mutation(age -> queryFactory
+                .delete(member)
+                .where(member.age.gt(age))
+                .execute(), 1000, 65));
+
+        SoftAssertions softly = new SoftAssertions();
+        scenarios.forEach((name, scenario) -> {
+            long budgetMs = BASE_BUDGET_MS.get(name) * SCALE.budgetFactor;
+            long elapsedMs = run(scenario);
+            System.out.println(String.format("[%s] %-12s %6dms (budget %dms)", SCALE, name, elapsedMs, budgetMs));
+            softly.assertThat(elapsedMs).as("%s at %s", name, SCALE).isLessThanOrEqualTo(budgetMs);
+        });
+        softly.assertAll();
+    }
+
+    /**
+     * 워밍업 뒤 중앙값(ms)
+     */
+    private long run(Scenario scenario) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            measure(scenario.warmup);
+        }
+        int runs = scenario.repeatable ? RUNS : 1;
+        long[] elapsedMs = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            elapsedMs[i] = measure(scenario.measured);
+        }
+        Arrays.sort(elapsedMs);
+        return elapsedMs[runs / 2];
+    }
+
+    private long measure(Runnable scenario) {
+        em.clear();
+        long start = System.nanoTime();
+        scenario.run();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        em.clear();
+        return elapsedMs;
+    }
+
+    static class Scenario {
+
+        final Runnable warmup;
+        final Runnable measured;
+        final boolean repeatable;
+
+        private Scenario(Runnable warmup, Runnable measured, boolean repeatable) {
+            this.warmup = warmup;
+            this.measured = measured;
+            this.repeatable = repeatable;
+        }
+
+        static Scenario read(Runnable query) {
+            return new Scenario(query, query, true);
+        }
+
+        /**
+         * 데이터를 바꾸는 시나리오. 워밍업은 맞는 행이 없는 값(noMatch)으로 같은 모양의 쿼리를 돌리고, 재는 건 한 번.
+         */
+        static Scenario mutation(IntConsumer query, int noMatch, int value) {
+            return new Scenario(() -> query.accept(noMatch), () -> query.accept(value), false);
+        }
+    }
+}
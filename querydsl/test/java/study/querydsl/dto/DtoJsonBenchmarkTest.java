@@ -0,0 +1,92 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO 목록 직렬화 비교 : Jackson 기본(리플렉션 BeanSerializer) vs DtoJsonWriter 스트리밍
+ * 결과는 버리는 OutputStream에 쓰고 bytes/s, DTO 하나당 할당 바이트를 찍는다.
+ * 건수는 -Dbench.members=1000000 처럼 바꿀 수 있다.
+ *
+ * 반복 측정이라 -Dbenchmark=true 일 때만 돈다. 출력이 같은지는 DtoJsonWriterTest가 기본으로 확인한다.
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class DtoJsonBenchmarkTest {
+
+    static final int MEMBERS = Integer.getInteger("bench.members", 100_000);
+    static final int ROUNDS = 5;
+
+    // 기본 ObjectMapper. @JsonComponent가 없으니 리플렉션으로 쓴다.
+    final ObjectMapper reflective = new ObjectMapper();
+
+    @Test
+    void compareSerializers() throws IOException {
+        List<MemberDto> members = new ArrayList<>(MEMBERS);
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(new MemberDto("member" + i, i % 100));
+        }
+
+        for (int i = 0; i < ROUNDS; i++) { // 워밍업
+            reflective.writeValue(new CountingOutputStream(), members);
+            writeStreaming(members, new CountingOutputStream());
+        }
+
+        report("jackson-reflection", members, out -> reflective.writeValue(out, members));
+        report("streaming-writer", members, out -> writeStreaming(members, out));
+    }
+
+    private void report(String name, List<MemberDto> members, Serialization serialization) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long bytes = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            CountingOutputStream out = new CountingOutputStream();
+            serialization.write(out);
+            bytes += out.count;
+        }
+        long elapsedNs = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.println(String.format("%-20s members = %d bytes = %d %.1f MB/s alloc/dto = %.1f bytes",
+                name, members.size(), bytes / ROUNDS,
+                bytes / 1024.0 / 1024.0 / (elapsedNs / 1_000_000_000.0),
+                allocated / (double) (members.size() * ROUNDS)));
+    }
+
+    private void writeStreaming(List<MemberDto> members, OutputStream out) throws IOException {
+        try (JsonGenerator gen = reflective.getFactory().createGenerator(out)) {
+            MemberDtoJsonWriter.INSTANCE.writeArray(members, gen);
+        }
+    }
+
+    interface Serialization {
+        void write(OutputStream out) throws IOException;
+    }
+
+    static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 손으로 쓴 writer가 Jackson 리플렉션 직렬화와 같은 JSON을 내는지. 속도 비교는 DtoJsonBenchmarkTest
+ */
+public class DtoJsonWriterTest {
+
+    // 기본 ObjectMapper. @JsonComponent가 없으니 리플렉션으로 쓴다.
+    final ObjectMapper reflective = new ObjectMapper();
+
+    @Test
+    void writerMatchesJacksonOutput() throws IOException {
+        List<MemberDto> members = new ArrayList<>();
+        members.add(new MemberDto("member1", 10));
+        members.add(new MemberDto("\"quoted\" 회원", 20));
+        members.add(new MemberDto(null, 0));
+
+        UserDto user = new UserDto();
+        user.setName("member1");
+        user.setAge(10);
+
+        assertThat(streamed(members, MemberDtoJsonWriter.INSTANCE)).isEqualTo(reflective.writeValueAsString(members));
+        assertThat(streamed(Collections.singletonList(user), UserDtoJsonWriter.INSTANCE)).isEqualTo(reflective.writeValueAsString(Collections.singletonList(user)));
+    }
+
+    @Test
+    void emptyList() throws IOException {
+        assertThat(streamed(Collections.<MemberDto>emptyList(), MemberDtoJsonWriter.INSTANCE)).isEqualTo("[]");
+    }
+
+    private <T> String streamed(List<T> dtos, DtoJsonWriter<T> writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DtoJsonSerializers.stream(dtos, writer, reflective.getFactory()).writeTo(out);
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,96 @@
+package study.querydsl.entity;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.engine.spi.ManagedEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+
+/**
+ * 바이트코드 향상 전/후 비교용
+ * 향상 없이 한 번, 아래 옵션으로 한 번 돌려서 출력값을 비교한다.
+ *   -Dquerydsl.enhancement.runtime=true -javaagent:spring-instrument.jar
+ *
+ * 영속 엔티티 N명(-Dbench.members, 기본 50,000)을 올려둔 상태에서
+ * 1. 엔티티당 힙
+ * 2. 아무것도 안 바꾼 flush 시간 (향상 없으면 전부 스냅샷 비교)
+ * 3. 1%만 바꾼 flush 시간
+ *
+ * -Dbenchmark=true 로 켠다.
+ */
+@SpringBootTest
+@Transactional
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class EnhancementBenchmarkTest {
+
+    static final int MEMBERS = Integer.getInteger("bench.members", 50_000);
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void beforeEach() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < MEMBERS; i++) {
+            Member newMember = new Member("member" + i, i % 100);
+            newMember.setTeam(teamA);
+            em.persist(newMember);
+            if ((i + 1) % 1000 == 0) {
+                em.flush();
+                em.clear();
+                teamA = em.getReference(Team.class, teamA.getId());
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void flushAndHeap() {
+        long before = usedHeap();
+        List<Member> members = queryFactory.selectFrom(member).fetch();
+        long heapPerEntity = (usedHeap() - before) / members.size();
+
+        long cleanFlushMicros = timeFlush();
+
+        for (int i = 0; i < members.size(); i += 100) {
+            members.get(i).setAge(members.get(i).getAge() + 1);
+        }
+        long dirtyFlushMicros = timeFlush();
+
+        boolean enhanced = members.get(0) instanceof ManagedEntity;
+        System.out.println(String.format("enhanced = %s, members = %d, heap/entity = %d bytes, clean flush = %dus, 1%% dirty flush = %dus",
+                enhanced, members.size(), heapPerEntity, cleanFlushMicros, dirtyFlushMicros));
+
+        assertThat(members).hasSize(MEMBERS);
+    }
+
+    private long timeFlush() {
+        long start = System.nanoTime();
+        em.flush();
+        return (System.nanoTime() - start) / 1000;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,87 @@
+package study.querydsl.entity;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * id 생성 전략별 insert 비교
+ * 전략마다 메모리 H2를 따로 띄워서 회원 N명을 배치 insert 한다.
+ * 건수는 -Dbench.rows=100000 처럼 바꿀 수 있다.
+ *
+ * 전략마다 H2를 띄우느라 오래 걸려서 -Dbenchmark=true 일 때만 돈다.
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class IdGenerationBenchmarkTest {
+
+    static final int ROWS = Integer.getInteger("bench.rows", 20_000);
+    static final int BATCH = 500;
+
+    @Test
+    void compareStrategies() {
+        for (String strategy : new String[]{QuerydslIdGenerator.SEQUENCE, QuerydslIdGenerator.POOLED_LO, QuerydslIdGenerator.TIME_ORDERED}) {
+            EntityManagerFactory emf = createEntityManagerFactory(strategy);
+            try {
+                insertMembers(emf, BATCH); // 워밍업
+                long start = System.nanoTime();
+                insertMembers(emf, ROWS);
+                long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+                System.out.println(String.format("strategy = %-12s rows = %d elapsed = %dms (%.0f rows/s)",
+                        strategy, ROWS, elapsedMs, ROWS * 1000.0 / Math.max(elapsedMs, 1)));
+
+                EntityManager em = emf.createEntityManager();
+                Long count = em.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+                em.close();
+                assertThat(count).isEqualTo(ROWS + BATCH);
+            } finally {
+                emf.close();
+            }
+        }
+    }
+
+    private void insertMembers(EntityManagerFactory emf, int rows) {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        for (int i = 0; i < rows; i++) {
+            em.persist(new Member("member" + i, i % 100));
+            if ((i + 1) % BATCH == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    private EntityManagerFactory createEntityManagerFactory(String strategy) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:id_" + strategy.replace('-', '_') + ";DB_CLOSE_DELAY=-1", "sa", "");
+        dataSource.setDriverClassName("org.h2.Driver");
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.hbm2ddl.auto", "create");
+        properties.put("hibernate.jdbc.batch_size", BATCH);
+        properties.put("hibernate.order_inserts", true);
+        properties.put(QuerydslIdGenerator.STRATEGY_SETTING, strategy);
+        properties.put(QuerydslIdGenerator.INCREMENT_SIZE_SETTING, 100);
+
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan("study.querydsl.entity");
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(properties);
+        factory.afterPropertiesSet();
+        return factory.getObject();
+    }
+}
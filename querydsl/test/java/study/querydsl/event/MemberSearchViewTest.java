@@ -0,0 +1,184 @@
+package study.querydsl.event;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberSearchView;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberQueryRepository;
+import study.querydsl.repository.support.BulkDmlExecutor;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QMemberSearchView.*;
+import static study.querydsl.entity.QTeam.*;
+
+@SpringBootTest
+@Transactional
+class MemberSearchViewTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    BulkDmlExecutor bulkDmlExecutor;
+
+    @Autowired
+    MemberSearchViewRepairJob repairJob;
+
+    @Autowired
+    MemberQueryRepository memberQueryRepository;
+
+    Team teamA;
+    Team teamB;
+    Member member1;
+
+    @BeforeEach
+    void beforeEach() {
+        teamA = new Team("viewTeamA");
+        teamB = new Team("viewTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        member1 = new Member("viewMember1", 10, teamA);
+        em.persist(member1);
+        em.persist(new Member("viewMember2", 20, teamA));
+        em.persist(new Member("viewMember3", 30, teamB));
+        em.persist(new Member("viewMember4", 40, teamB));
+        em.persist(new Member("viewMember5", 50));
+        em.flush();
+    }
+
+    @Test
+    void followsEntityChanges() {
+        assertThat(view(member1).getTeamName()).isEqualTo("viewTeamA");
+        assertThat(view(member1).getAge()).isEqualTo(10);
+
+        // 팀 이동 + 나이 변경
+        member1.setTeam(teamB);
+        member1.setAge(11);
+        em.flush();
+        assertThat(view(member1).getTeamId()).isEqualTo(teamB.getId());
+        assertThat(view(member1).getTeamName()).isEqualTo("viewTeamB");
+        assertThat(view(member1).getAge()).isEqualTo(11);
+
+        // 팀 이름 변경
+        teamB.setName("viewTeamC");
+        em.flush();
+        assertThat(view(member1).getTeamName()).isEqualTo("viewTeamC");
+
+        // 탈퇴
+        em.remove(member1);
+        em.flush();
+        assertThat(view(member1)).isNull();
+    }
+
+    @Test
+    void changesInOneFlushAreWrittenTogether() {
+        // 한 flush 안에 insert, update, 팀 이름 변경, delete가 섞여 있어도 flush가 끝나면 join과 같다.
+        for (int i = 0; i < 30; i++) {
+            em.persist(new Member("viewBatch" + i, i, i % 2 == 0 ? teamA : teamB));
+        }
+        member1.setAge(12);
+        teamA.setName("viewTeamE");
+        em.remove(em.find(Member.class, member1.getId()));
+        em.flush();
+
+        assertThat(view(member1)).isNull();
+        assertThat(viewRows()).isEqualTo(joinRows());
+        assertThat(viewRows()).hasSize(34);
+    }
+
+    @Test
+    void bulkUpdateAndDelete() {
+        // 조건에 쓴 컬럼을 바꾸는 update : 실행 전에 모은 id로 다시 맞춘다.
+        bulkDmlExecutor.update(member, member.username.startsWith("view").and(member.age.lt(25)),
+                update -> update.set(member.age, member.age.add(100)));
+        assertThat(viewRows()).isEqualTo(joinRows());
+
+        bulkDmlExecutor.update(team, team.name.eq("viewTeamB"), update -> update.set(team.name, "viewTeamD"));
+        assertThat(viewRows()).isEqualTo(joinRows());
+
+        bulkDmlExecutor.delete(member, member.username.startsWith("view").and(member.age.gt(100)));
+        assertThat(viewRows()).isEqualTo(joinRows());
+        assertThat(viewRows()).hasSize(3);
+    }
+
+    @Test
+    void factoryBulkUpdateReachesView() {
+        // MemberAgeCoalescer가 내보내는 것과 같은 모양. 주입받은 팩토리로 날려도 view가 따라온다.
+        queryFactory
+                .update(member)
+                .set(member.age, member.age.add(3))
+                .where(member.id.in(member1.getId()))
+                .execute();
+
+        assertThat(view(member1).getAge()).isEqualTo(13);
+        assertThat(viewRows()).isEqualTo(joinRows());
+    }
+
+    @Test
+    void repair() {
+        // BulkDmlExecutor를 안 거친 벌크 update(따로 만든 JPAQueryFactory)는 view가 틀어진다.
+        new JPAQueryFactory(em).update(member).set(member.age, 99).where(member.username.startsWith("view")).execute();
+        assertThat(viewRows()).isNotEqualTo(joinRows());
+
+        repairJob.rebuild();
+        assertThat(viewRows()).isEqualTo(joinRows());
+    }
+
+    @Test
+    void searchReadsView() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("viewTeamB");
+        condition.setAgeGoe(35);
+
+        List<MemberDto> result = memberQueryRepository.search(condition);
+
+        assertThat(result).extracting("username").containsExactly("viewMember4");
+    }
+
+    private MemberSearchView view(Member target) {
+        MemberSearchView view = queryFactory
+                .selectFrom(memberSearchView)
+                .where(memberSearchView.memberId.eq(target.getId()))
+                .fetchOne();
+        // 영속성 컨텍스트에 남으면 다음 조회 때 옛날 값이 그대로 나온다.
+        if (view != null) {
+            em.detach(view);
+        }
+        return view;
+    }
+
+    private List<Tuple> viewRows() {
+        return queryFactory
+                .select(memberSearchView.memberId, memberSearchView.username, memberSearchView.age, memberSearchView.teamName)
+                .from(memberSearchView)
+                .where(memberSearchView.username.startsWith("view"))
+                .orderBy(memberSearchView.memberId.asc())
+                .fetch();
+    }
+
+    private List<Tuple> joinRows() {
+        return queryFactory
+                .select(member.id, member.username, member.age, team.name)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.username.startsWith("view"))
+                .orderBy(member.id.asc())
+                .fetch();
+    }
+}
@@ -0,0 +1,126 @@
+package study.querydsl.event;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.BulkDmlExecutor;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+
+@SpringBootTest
+@Transactional
+class TeamMemberCountTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    BulkDmlExecutor bulkDmlExecutor;
+
+    @Autowired
+    TeamMemberCountRepairJob repairJob;
+
+    Team teamA;
+    Team teamB;
+    Member member1;
+
+    @BeforeEach
+    void beforeEach() {
+        teamA = new Team("teamA");
+        teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        member1 = new Member("member1", 10, teamA);
+        em.persist(member1);
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+    }
+
+    @Test
+    void joinAndLeave() {
+        assertThat(memberCount(teamA)).isEqualTo(2);
+        assertThat(memberCount(teamB)).isEqualTo(2);
+
+        // 팀 이동
+        member1.setTeam(teamB);
+        em.flush();
+        assertThat(memberCount(teamA)).isEqualTo(1);
+        assertThat(memberCount(teamB)).isEqualTo(3);
+
+        // 탈퇴
+        em.remove(member1);
+        em.flush();
+        assertThat(memberCount(teamB)).isEqualTo(2);
+    }
+
+    @Test
+    void manyChangesInOneFlush() {
+        // 팀별 증감을 합쳐서 flush 끝에 한 번에 쓴다. 들어왔다 나간 팀은 그대로다.
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("batchMember" + i, i, i % 2 == 0 ? teamA : teamB));
+        }
+        member1.setTeam(teamB);
+        member1.setTeam(teamA);
+        em.remove(member1);
+        em.flush();
+
+        assertThat(memberCount(teamA)).isEqualTo(1 + 5);
+        assertThat(memberCount(teamB)).isEqualTo(2 + 5);
+    }
+
+    @Test
+    void reattachedMemberChangesTeam() {
+        // 준영속 회원을 다시 붙이면 옛 state가 없다. 옛 팀은 DB에서 읽는다.
+        em.detach(member1);
+        member1.setTeam(teamB);
+        em.unwrap(Session.class).update(member1);
+        em.flush();
+
+        assertThat(memberCount(teamA)).isEqualTo(1);
+        assertThat(memberCount(teamB)).isEqualTo(3);
+    }
+
+    @Test
+    void bulkDelete() {
+        bulkDmlExecutor.delete(member, member.age.gt(10));
+
+        assertThat(memberCount(teamA)).isEqualTo(1);
+        assertThat(memberCount(teamB)).isEqualTo(0);
+    }
+
+    @Test
+    void repair() {
+        // BulkDmlExecutor를 안 거친 벌크 삭제(따로 만든 JPAQueryFactory)는 카운트가 틀어진다.
+        new JPAQueryFactory(em).delete(member).where(member.team.eq(teamB)).execute();
+        assertThat(memberCount(teamB)).isEqualTo(2);
+
+        repairJob.repair();
+        assertThat(memberCount(teamA)).isEqualTo(2);
+        assertThat(memberCount(teamB)).isEqualTo(0);
+    }
+
+    private int memberCount(Team target) {
+        // 엔티티 값은 옛날 값일 수 있으니 DB에서 바로 읽는다.
+        return queryFactory
+                .select(team.memberCount)
+                .from(team)
+                .where(team.id.eq(target.getId()))
+                .fetchOne();
+    }
+}
@@ -0,0 +1,139 @@
+package study.querydsl.export;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 회원 내보내기
+ * StatelessSession이 커넥션을 따로 잡으니 데이터는 테스트 트랜잭션 없이 커밋해서 넣고, 끝나면 지운다.
+ * 회원 수는 -Dbench.members=1000000 처럼 바꿀 수 있다.
+ */
+@SpringBootTest
+public class MemberExportJobTest {
+
+    static final int MEMBERS = Integer.getInteger("bench.members", 20_000);
+    static final int PARTITIONS = 8;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    public void beforeEach() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = new Team("export,team");
+            em.persist(team);
+            for (int i = 0; i < MEMBERS; i++) {
+                Member member = new Member("exportMember" + i, i % 100);
+                member.setTeam(i % 2 == 0 ? team : null);
+                em.persist(member);
+                if ((i + 1) % 1000 == 0) {
+                    em.flush();
+                    em.clear();
+                    team = em.merge(team);
+                }
+            }
+            em.persist(new Member("export \"quoted\"", 1));
+        });
+    }
+
+    @AfterEach
+    public void afterEach() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createNativeQuery("delete from member_username_gram where member_id in (select member_id from member where username like 'export%')").executeUpdate();
+            em.createNativeQuery("delete from member_search_view where username like 'export%'").executeUpdate();
+            em.createNativeQuery("delete from member where username like 'export%'").executeUpdate();
+            em.createNativeQuery("delete from team where name = 'export,team'").executeUpdate();
+        });
+    }
+
+    @Test
+    public void exportInParallel() throws IOException {
+        ExportReport report = new MemberExportJob(emf, dir.toString(), PARTITIONS, 4).export(dir);
+        System.out.println(report);
+
+        List<String> lines = Files.readAllLines(dir.resolve(MemberExportJob.OUTPUT), StandardCharsets.UTF_8);
+        assertThat(lines.get(0)).isEqualTo("id,username,age,team_name");
+        assertThat(lines).hasSize((int) report.getRows() + 1);
+        assertThat(report.getRows()).isEqualTo(memberCount());
+        assertThat(lines).anyMatch(line -> line.endsWith(",exportMember0,0,\"export,team\""));
+        assertThat(lines).anyMatch(line -> line.endsWith(",exportMember1,1,"));
+        assertThat(lines).anyMatch(line -> line.endsWith(",\"export \"\"quoted\"\"\",1,"));
+
+        // id 순서
+        long previous = Long.MIN_VALUE;
+        for (String line : lines.subList(1, lines.size())) {
+            long id = Long.parseLong(line.substring(0, line.indexOf(',')));
+            assertThat(id).isGreaterThan(previous);
+            previous = id;
+        }
+
+        // 중간 파일은 지워진다.
+        assertThat(Files.list(dir)).containsExactly(dir.resolve(MemberExportJob.OUTPUT));
+    }
+
+    @Test
+    public void resumeSkipsFinishedPartitions() throws IOException {
+        MemberExportJob job = new MemberExportJob(emf, dir.toString(), PARTITIONS, 4);
+        byte[] expected = exportOnce(job);
+
+        // 파티션 0만 끝나지 않은 채로 멈춘 상황
+        job.writePartitions(dir);
+        Files.delete(MemberExportJob.done(dir, 0));
+        Files.write(MemberExportJob.segment(dir, 0), "garbage".getBytes(StandardCharsets.UTF_8));
+
+        ExportReport resumed = job.export(dir);
+        assertThat(resumed.getSkippedPartitions()).isEqualTo(PARTITIONS - 1);
+        assertThat(Files.readAllBytes(dir.resolve(MemberExportJob.OUTPUT))).isEqualTo(expected);
+    }
+
+    @Test
+    public void stalePlanFromAnotherRunIsDiscarded() throws IOException {
+        MemberExportJob job = new MemberExportJob(emf, dir.toString(), PARTITIONS, 4);
+        byte[] expected = exportOnce(job);
+
+        // 어제 멈춘 내보내기: done 까지 있는 세그먼트라도 섞으면 안 된다.
+        job.writePartitions(dir, "2000-01-01");
+        Files.write(MemberExportJob.segment(dir, 0), "yesterday\n".getBytes(StandardCharsets.UTF_8));
+
+        ExportReport report = job.export(dir, "2000-01-02");
+        assertThat(report.getSkippedPartitions()).isZero();
+        assertThat(Files.readAllBytes(dir.resolve(MemberExportJob.OUTPUT))).isEqualTo(expected);
+    }
+
+    private byte[] exportOnce(MemberExportJob job) throws IOException {
+        job.export(dir);
+        byte[] bytes = Files.readAllBytes(dir.resolve(MemberExportJob.OUTPUT));
+        Files.delete(dir.resolve(MemberExportJob.OUTPUT));
+        return bytes;
+    }
+
+    private long memberCount() {
+        return em.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+    }
+}
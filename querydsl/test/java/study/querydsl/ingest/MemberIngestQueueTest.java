@@ -0,0 +1,210 @@
+package study.querydsl.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * writer가 커밋해야 Future가 끝나니 테스트 트랜잭션(롤백) 없이 돌리고 끝나면 지운다.
+ * writer를 세워두려고 트랜잭션 시작을 latch로 막는 트랜잭션 매니저를 끼운다.
+ */
+@SpringBootTest
+class MemberIngestQueueTest {
+
+    static final String PREFIX = "ingestMember";
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    final CountDownLatch release = new CountDownLatch(1);
+    MemberIngestQueue queue;
+
+    @AfterEach
+    void afterEach() throws InterruptedException {
+        release.countDown();
+        if (queue != null) {
+            queue.shutdown();
+        }
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("select m from Member m where m.username like :prefix", Member.class)
+                        .setParameter("prefix", PREFIX + "%")
+                        .getResultList()
+                        .forEach(em::remove));
+    }
+
+    @Test
+    void queuedMembersAreWrittenInBatches() throws Exception {
+        queue = new MemberIngestQueue(em, blocking(), 100, 20, 100, 10_000);
+
+        List<CompletableFuture<Long>> futures = submit(50);
+        release.countDown();
+
+        assertThat(ids(futures)).doesNotContainNull().doesNotHaveDuplicates();
+        IngestMetrics metrics = queue.getMetrics();
+        assertThat(metrics.getRows()).isEqualTo(50);
+        assertThat(metrics.getMaxBatchSize()).isLessThanOrEqualTo(20);
+        // writer가 서 있던 첫 배치 하나 + 밀린 49개를 20개씩
+        assertThat(metrics.getBatches()).isBetween(3L, 4L);
+        assertThat(count()).isEqualTo(50);
+    }
+
+    @Test
+    void fullQueueWaitsThenRejects() throws Exception {
+        queue = new MemberIngestQueue(em, blocking(), 2, 10, 50, 10_000);
+
+        List<CompletableFuture<Long>> accepted = new ArrayList<>(submit(1));
+        awaitTaken();
+        accepted.addAll(submit(2)); // 큐가 꽉 찬다.
+
+        long start = System.nanoTime();
+        CompletableFuture<Long> rejected = queue.submit(new Member(PREFIX + "Rejected", 0));
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThatThrownBy(rejected::join).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(queue.getMetrics().getRejected()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(ids(accepted)).hasSize(3).doesNotContainNull();
+    }
+
+    @Test
+    void failedBatchIsRetriedRowByRow() throws Exception {
+        queue = new MemberIngestQueue(em, blocking(), 100, 10, 100, 10_000);
+
+        List<CompletableFuture<Long>> futures = new ArrayList<>(submit(1));
+        awaitTaken();
+        futures.addAll(submit(2));
+        // varchar(255)를 넘어서 insert가 실패한다. 같은 배치의 나머지는 살아야 한다.
+        CompletableFuture<Long> tooLong = queue.submit(new Member(PREFIX + String.join("", Collections.nCopies(300, "x")), 0));
+        futures.addAll(submit(2));
+        release.countDown();
+
+        assertThatThrownBy(() -> tooLong.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        assertThat(ids(futures)).hasSize(5).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(queue.getMetrics().getFailedRows()).isEqualTo(1);
+        assertThat(count()).isEqualTo(5);
+    }
+
+    @Test
+    void shutdownDrainsQueueThenRejects() throws Exception {
+        queue = new MemberIngestQueue(em, blocking(), 100, 10, 100, 10_000);
+
+        List<CompletableFuture<Long>> futures = new ArrayList<>(submit(1));
+        awaitTaken();
+        futures.addAll(submit(3));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> shutdown = executor.submit(() -> {
+                queue.shutdown();
+                return null;
+            });
+            Thread.sleep(50);
+            assertThat(queue.submit(new Member(PREFIX + "Late", 0)))
+                    .failsWithin(1, TimeUnit.SECONDS)
+                    .withThrowableOfType(ExecutionException.class)
+                    .withCauseInstanceOf(RejectedExecutionException.class);
+
+            release.countDown();
+            shutdown.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        // 종료 전에 받은 것은 다 쓴다.
+        assertThat(ids(futures)).hasSize(4).doesNotContainNull();
+    }
+
+    @Test
+    void shutdownTimeoutFailsWhatIsLeft() throws Exception {
+        queue = new MemberIngestQueue(em, blocking(), 100, 10, 100, 100);
+
+        CompletableFuture<Long> inFlight = submit(1).get(0);
+        awaitTaken();
+        List<CompletableFuture<Long>> queued = submit(3);
+
+        queue.shutdown(); // writer는 아직 서 있다.
+        for (CompletableFuture<Long> future : queued) {
+            assertThat(future).isCompletedExceptionally();
+            assertThatThrownBy(future::join).hasCauseInstanceOf(RejectedExecutionException.class);
+        }
+
+        release.countDown();
+        // writer가 들고 있던 배치는 마저 쓴다.
+        assertThat(inFlight.get(5, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    private List<CompletableFuture<Long>> submit(int count) {
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(queue.submit(new Member(PREFIX + i, i)));
+        }
+        return futures;
+    }
+
+    private void awaitTaken() throws InterruptedException {
+        while (queue.getQueueSize() > 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static List<Long> ids(List<CompletableFuture<Long>> futures) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (CompletableFuture<Long> future : futures) {
+            ids.add(future.get(5, TimeUnit.SECONDS));
+        }
+        return ids;
+    }
+
+    private long count() {
+        return em.createQuery("select count(m) from Member m where m.username like :prefix", Long.class)
+                .setParameter("prefix", PREFIX + "%")
+                .getSingleResult();
+    }
+
+    /**
+     * release 전까지 트랜잭션 시작을 막는다.
+     */
+    private PlatformTransactionManager blocking() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+                return transactionManager.getTransaction(definition);
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                transactionManager.commit(status);
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                transactionManager.rollback(status);
+            }
+        };
+    }
+}
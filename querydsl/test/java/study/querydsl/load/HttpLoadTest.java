@@ -0,0 +1,140 @@
+package study.querydsl.load;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dataset.MemberDatasetGenerator;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 동시 부하에서의 HTTP 지연 (열린 모델, coordinated omission 보정)
+ *
+ * 인메모리 H2에 MemberDatasetGenerator 데이터를 넣고 실제 포트로 띄운 뒤
+ * /hello 와 회원/팀 조회 엔드포인트를 섞어서 정해진 도착률로 보낸다.
+ * 워밍업 구간은 버리고, 본 구간의 p50/p99/p99.9와 처리량을 기준선(클래스패스의 load-baseline.properties)과 비교한다.
+ * 기준선은 장비마다 다르니 저장소에 넣어두지 않는다. 파일이 없으면 비교는 건너뛰고 결과만 로그로 남긴다.
+ * 기준선을 쓰려면 그 장비에서 -Dload.baseline-out 으로 뽑아서 test/resources/load-baseline.properties 로 둔다.
+ *
+ *   -Dload.rate=200           초당 요청 수
+ *   -Dload.seconds=10         측정 시간 (워밍업은 -Dload.warmup-seconds=3)
+ *   -Dload.threads=32         동시에 요청을 보내는 워커 수(= 최대 커넥션 수)
+ *   -Dload.members=10000      회원 수 (MemberDatasetGenerator)
+ *   -Dload.tolerance=0.5      기준선보다 50%까지 나빠지는 건 봐준다.
+ *   -Dload.baseline-out=build/load-baseline.properties  이번 결과를 기준선 형식으로 저장. 장비를 바꾸면 이걸로 다시 뽑는다.
+ *
+ * SQL 로그(p6spy, 바인딩 trace)를 켜두면 로그 쓰는 비용을 재게 되니 여기서는 끈다.
+ *
+ * 몇십 초 동안 부하를 거니 -Dbenchmark=true 를 줘야 돈다.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+        "decorator.datasource.p6spy.enable-logging=false",
+        "logging.level.org.hibernate.type=info",
+        "logging.level.study.querydsl.controller.HellController=warn"
+})
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class HttpLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpLoadTest.class);
+
+    static final double RATE = Double.parseDouble(System.getProperty("load.rate", "200"));
+    static final long SECONDS = Long.getLong("load.seconds", 10L);
+    static final long WARMUP_SECONDS = Long.getLong("load.warmup-seconds", 3L);
+    static final int THREADS = Integer.getInteger("load.threads", 32);
+    static final int MEMBERS = Integer.getInteger("load.members", MemberDatasetGenerator.SMALL);
+    static final long SEED = Long.getLong("load.seed", 42L);
+    static final double TOLERANCE = Double.parseDouble(System.getProperty("load.tolerance", "0.5"));
+    static final String BASELINE_OUT = System.getProperty("load.baseline-out");
+
+    static {
+        // HttpURLConnection keep-alive 풀은 기본으로 목적지당 5개만 남긴다. 워커 수만큼 재사용하게 늘린다.
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(THREADS));
+        }
+    }
+
+    static final List<LoadTarget> TARGETS = Arrays.asList(
+            LoadTarget.of("hello", "/hello", 40),
+            LoadTarget.of("membersByTeam", "/v1/members?teamName=teamB", 20),
+            LoadTarget.of("membersByName", "/v1/members?username=member1", 20),
+            LoadTarget.of("usersByAge", "/v1/users?teamName=teamA&ageGoe=20&ageLoe=29", 10),
+            LoadTarget.of("teamsByName", "/v1/teams?name=team1", 10)
+    );
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    public void latencyWithinBaseline() throws Exception {
+        transactionTemplate.executeWithoutResult(status ->
+                log.info("dataset {}", new MemberDatasetGenerator(SEED).generate(em, MEMBERS)));
+
+        OpenModelLoadGenerator generator = new OpenModelLoadGenerator("http://localhost:" + port, TARGETS, THREADS, SEED);
+        log.info("[warmup]\n{}", generator.run(RATE, WARMUP_SECONDS, TimeUnit.SECONDS));
+
+        LoadReport report = generator.run(RATE, SECONDS, TimeUnit.SECONDS);
+        log.info("[measure]\n{}", report);
+        if (BASELINE_OUT != null) {
+            writeBaseline(report, Paths.get(BASELINE_OUT));
+        }
+
+        assertThat(report.getErrors()).isZero();
+
+        Properties baseline = loadBaseline();
+        if (baseline == null) {
+            log.warn("no load-baseline.properties on the test classpath, skipping the baseline comparison");
+            return;
+        }
+        assertThat(report.regressions(baseline, TOLERANCE)).isEmpty();
+    }
+
+    /**
+     * 기준선 파일이 없으면 null
+     */
+    private static Properties loadBaseline() throws IOException {
+        try (InputStream in = HttpLoadTest.class.getResourceAsStream("/load-baseline.properties")) {
+            if (in == null) {
+                return null;
+            }
+            Properties baseline = new Properties();
+            baseline.load(in);
+            return baseline;
+        }
+    }
+
+    private static void writeBaseline(LoadReport report, Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(path)) {
+            report.toBaseline().store(out, "HttpLoadTest baseline (latency ms, throughput req/s)");
+        }
+        log.info("baseline written to {}", path.toAbsolutePath());
+    }
+}
@@ -0,0 +1,192 @@
+package study.querydsl.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 부하 결과. 엔드포인트별 + 전체(total) 지연 분포와 처리량
+ *
+ * 기준선(baseline)은 Properties 한 장이다.
+ *   rate=200.0
+ *   hello.p50=1.2   (ms)
+ *   hello.p99=8.5
+ *   hello.p999=30.0
+ *   total.throughput=199.3 (req/s)
+ * 지연은 기준선 * (1 + tolerance) 를 넘으면, 처리량은 같은 rate로 돌렸을 때 기준선 * (1 - tolerance) 아래면 회귀로 본다.
+ * 기준선에 없는 키는 비교하지 않는다.
+ */
+public class LoadReport {
+
+    public static final String TOTAL = "total";
+
+    // 이보다 긴 지연은 이 값으로 기록한다.
+    static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final String[] PERCENTILE_KEYS = {"p50", "p99", "p999"};
+    private static final double[] PERCENTILES = {50.0, 99.0, 99.9};
+
+    private final double rate;
+    private final long elapsedNanos;
+    private final List<TargetStats> targets;
+    private final Histogram total = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+    private final Histogram totalUncorrected = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+    private final long errors;
+
+    LoadReport(double rate, long elapsedNanos, List<TargetStats> targets) {
+        this.rate = rate;
+        this.elapsedNanos = elapsedNanos;
+        this.targets = Collections.unmodifiableList(new ArrayList<>(targets));
+        long errors = 0;
+        for (TargetStats target : targets) {
+            total.add(target.corrected);
+            totalUncorrected.add(target.uncorrected);
+            errors += target.errors.get();
+        }
+        this.errors = errors;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public long getRequests() {
+        return total.getTotalCount();
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getThroughput() {
+        return total.getTotalCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * 예정 시각부터 잰 지연(ms). name이 TOTAL이면 전체
+     */
+    public double latencyMillis(String name, double percentile) {
+        return toMillis(histogram(name).getValueAtPercentile(percentile));
+    }
+
+    public Properties toBaseline() {
+        Properties baseline = new Properties();
+        baseline.setProperty("rate", String.valueOf(rate));
+        baseline.setProperty(TOTAL + ".throughput", format(getThroughput()));
+        for (String name : names()) {
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                baseline.setProperty(name + "." + PERCENTILE_KEYS[i], format(latencyMillis(name, PERCENTILES[i])));
+            }
+        }
+        return baseline;
+    }
+
+    /**
+     * 기준선보다 나빠진 항목. 비어 있으면 통과
+     */
+    public List<String> regressions(Properties baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (String name : names()) {
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                String key = name + "." + PERCENTILE_KEYS[i];
+                String expected = baseline.getProperty(key);
+                double actual = latencyMillis(name, PERCENTILES[i]);
+                if (expected != null && actual > Double.parseDouble(expected) * (1 + tolerance)) {
+                    regressions.add(String.format("%s: %.2fms > baseline %sms", key, actual, expected));
+                }
+            }
+        }
+
+        // 처리량은 같은 도착률로 돌렸을 때만 비교할 수 있다.
+        String baselineRate = baseline.getProperty("rate");
+        String expectedThroughput = baseline.getProperty(TOTAL + ".throughput");
+        if (baselineRate != null && expectedThroughput != null && Double.parseDouble(baselineRate) == rate
+                && getThroughput() < Double.parseDouble(expectedThroughput) * (1 - tolerance)) {
+            regressions.add(String.format("%s.throughput: %.1f/s < baseline %s/s", TOTAL, getThroughput(), expectedThroughput));
+        }
+        return regressions;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("rate=%.1f/s elapsed=%dms requests=%d errors=%d throughput=%.1f/s%n",
+                rate, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getRequests(), errors, getThroughput()));
+        out.append(String.format("%-16s %8s %8s %8s %8s %8s | %14s%n",
+                "endpoint", "count", "p50", "p99", "p99.9", "max", "p99 uncorrected"));
+        for (TargetStats target : targets) {
+            append(out, target.getTarget().getName(), target.corrected, target.uncorrected);
+        }
+        append(out, TOTAL, total, totalUncorrected);
+        return out.toString();
+    }
+
+    private static void append(StringBuilder out, String name, Histogram corrected, Histogram uncorrected) {
+        out.append(String.format("%-16s %8d %8.2f %8.2f %8.2f %8.2f | %14.2f%n", name, corrected.getTotalCount(),
+                toMillis(corrected.getValueAtPercentile(50.0)),
+                toMillis(corrected.getValueAtPercentile(99.0)),
+                toMillis(corrected.getValueAtPercentile(99.9)),
+                toMillis(corrected.getMaxValue()),
+                toMillis(uncorrected.getValueAtPercentile(99.0))));
+    }
+
+    private List<String> names() {
+        List<String> names = new ArrayList<>();
+        targets.forEach(target -> names.add(target.getTarget().getName()));
+        names.add(TOTAL);
+        return names;
+    }
+
+    private Histogram histogram(String name) {
+        if (TOTAL.equals(name)) {
+            return total;
+        }
+        for (TargetStats target : targets) {
+            if (target.getTarget().getName().equals(name)) {
+                return target.corrected;
+            }
+        }
+        throw new IllegalArgumentException("unknown target: " + name);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static String format(double value) {
+        return String.format("%.2f", value);
+    }
+
+    /**
+     * 엔드포인트 하나의 기록. 워커 스레드들이 동시에 쓴다.
+     */
+    static class TargetStats {
+
+        private final LoadTarget target;
+        private final Histogram corrected = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        private final Histogram uncorrected = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        private final AtomicLong errors = new AtomicLong();
+
+        TargetStats(LoadTarget target) {
+            this.target = target;
+        }
+
+        LoadTarget getTarget() {
+            return target;
+        }
+
+        void record(long correctedNanos, long uncorrectedNanos, boolean ok) {
+            corrected.recordValue(Math.min(correctedNanos, HIGHEST_TRACKABLE_NANOS));
+            uncorrected.recordValue(Math.min(uncorrectedNanos, HIGHEST_TRACKABLE_NANOS));
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+}
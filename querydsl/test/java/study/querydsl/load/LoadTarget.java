@@ -0,0 +1,41 @@
+package study.querydsl.load;
+
+/**
+ * 부하를 줄 엔드포인트 하나. weight 비율로 섞어서 보낸다.
+ */
+public class LoadTarget {
+
+    private final String name;
+    private final String path;
+    private final int weight;
+
+    private LoadTarget(String name, String path, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive: " + weight);
+        }
+        this.name = name;
+        this.path = path;
+        this.weight = weight;
+    }
+
+    public static LoadTarget of(String name, String path, int weight) {
+        return new LoadTarget(name, path, weight);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + path + ")";
+    }
+}
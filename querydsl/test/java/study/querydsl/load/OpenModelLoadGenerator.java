@@ -0,0 +1,146 @@
+package study.querydsl.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 열린 모델(open model) HTTP 부하 생성기
+ *
+ * 닫힌 모델(스레드 N개가 요청 -> 응답 -> 다음 요청)은 서버가 느려지면 요청도 덜 보내서,
+ * 느린 구간이 측정에서 빠진다. (coordinated omission)
+ *
+ * 여기서는 응답과 상관없이 정해진 도착률로 요청 시각을 먼저 정하고, 지연은 그 예정 시각부터 잰다.
+ * 워커가 모자라서 늦게 출발한 시간도 지연에 들어간다. (corrected)
+ * 실제로 보낸 시각부터 잰 값(uncorrected)도 같이 남겨서 둘의 차이를 볼 수 있다.
+ *
+ * 도착 간격은 지수 분포(포아송 도착)이고, 엔드포인트는 weight 비율로 고른다. seed가 같으면 같은 순서로 보낸다.
+ */
+public class OpenModelLoadGenerator {
+
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    private final String baseUrl;
+    private final List<LoadTarget> targets;
+    private final int threads;
+    private final long seed;
+
+    public OpenModelLoadGenerator(String baseUrl, List<LoadTarget> targets, int threads, long seed) {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("no load targets");
+        }
+        this.baseUrl = baseUrl;
+        this.targets = new ArrayList<>(targets);
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    /**
+     * 초당 ratePerSecond 건의 도착률로 duration 동안 보내고, 보낸 요청이 다 끝날 때까지 기다린다.
+     */
+    public LoadReport run(double ratePerSecond, long duration, TimeUnit unit) throws InterruptedException {
+        List<LoadReport.TargetStats> stats = new ArrayList<>(targets.size());
+        targets.forEach(target -> stats.add(new LoadReport.TargetStats(target)));
+        int[] cumulativeWeights = cumulativeWeights();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "load-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Random random = new Random(seed);
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long start = System.nanoTime();
+        long end = start + unit.toNanos(duration);
+        double offset = 0;
+        try {
+            while (true) {
+                offset += -Math.log(1 - random.nextDouble()) * meanIntervalNanos;
+                long intendedStart = start + (long) offset;
+                if (intendedStart >= end) {
+                    break;
+                }
+                long wait = intendedStart - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+
+                LoadReport.TargetStats target = stats.get(pick(cumulativeWeights, random));
+                // 밀려 있으면 큐에서 기다린다. 그 시간도 예정 시각부터 재는 지연에 들어간다.
+                workers.execute(() -> send(target, intendedStart));
+            }
+        } finally {
+            workers.shutdown();
+        }
+        if (!workers.awaitTermination(READ_TIMEOUT_MS * 2L, TimeUnit.MILLISECONDS)) {
+            workers.shutdownNow();
+            throw new IllegalStateException("load workers did not finish");
+        }
+        return new LoadReport(ratePerSecond, System.nanoTime() - start, stats);
+    }
+
+    private void send(LoadReport.TargetStats target, long intendedStart) {
+        long actualStart = System.nanoTime();
+        boolean ok;
+        try {
+            ok = get(baseUrl + target.getTarget().getPath());
+        } catch (IOException e) {
+            ok = false;
+        }
+        long finished = System.nanoTime();
+        target.record(finished - intendedStart, finished - actualStart, ok);
+    }
+
+    /**
+     * 응답 본문까지 다 읽고 닫아야 커넥션이 keep-alive로 재사용된다.
+     */
+    private static boolean get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        int status = connection.getResponseCode();
+        InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (body != null) {
+            try (InputStream in = body) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) >= 0) {
+                    // 버린다.
+                }
+            }
+        }
+        return status < 400;
+    }
+
+    private int[] cumulativeWeights() {
+        int[] cumulative = new int[targets.size()];
+        int sum = 0;
+        for (int i = 0; i < targets.size(); i++) {
+            sum += targets.get(i).getWeight();
+            cumulative[i] = sum;
+        }
+        return cumulative;
+    }
+
+    private static int pick(int[] cumulativeWeights, Random random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return i;
+            }
+        }
+        throw new IllegalStateException();
+    }
+}
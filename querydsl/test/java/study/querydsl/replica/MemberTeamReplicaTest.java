@@ -0,0 +1,127 @@
+package study.querydsl.replica;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.BulkDmlExecutor;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+
+/**
+ * 복제본은 커밋된 변경만 받으니 테스트 트랜잭션(롤백) 없이 TransactionTemplate으로 커밋한다.
+ */
+@SpringBootTest(properties = "querydsl.replica.enabled=true")
+class MemberTeamReplicaTest {
+
+    @Autowired
+    MemberTeamReplica replica;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    BulkDmlExecutor bulkDmlExecutor;
+
+    Team replicaTeam;
+    Member replicaMember;
+
+    @BeforeEach
+    void beforeEach() throws InterruptedException {
+        awaitLoaded();
+        transactionTemplate.executeWithoutResult(status -> {
+            replicaTeam = new Team("replicaTeam");
+            em.persist(replicaTeam);
+            replicaMember = new Member("replicaMember", 10, replicaTeam);
+            em.persist(replicaMember);
+        });
+    }
+
+    @AfterEach
+    void afterEach() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Member found = em.find(Member.class, replicaMember.getId());
+            if (found != null) {
+                em.remove(found);
+            }
+            em.remove(em.find(Team.class, replicaTeam.getId()));
+        });
+    }
+
+    @Test
+    void committedChangesAreServedFromMemory() {
+        long misses = replica.getMisses();
+
+        assertThat(replica.findMemberByUsername("replicaMember"))
+                .contains(new MemberView(replicaMember.getId(), "replicaMember", 10, replicaTeam.getId()));
+        assertThat(replica.findMemberById(replicaMember.getId())).isPresent();
+        assertThat(replica.findTeamByName("replicaTeam")).contains(new TeamView(replicaTeam.getId(), "replicaTeam"));
+        assertThat(replica.getMisses()).isEqualTo(misses);
+
+        transactionTemplate.executeWithoutResult(status -> em.find(Member.class, replicaMember.getId()).setAge(11));
+        assertThat(replica.findMemberById(replicaMember.getId())).get().extracting(MemberView::getAge).isEqualTo(11);
+
+        transactionTemplate.executeWithoutResult(status -> em.remove(em.find(Member.class, replicaMember.getId())));
+        assertThat(replica.findMemberByUsername("replicaMember")).isEmpty();
+        assertThat(replica.getMisses()).isEqualTo(misses + 1); // 없는 값은 DB로 확인한다.
+    }
+
+    @Test
+    void rolledBackChangesAreIgnored() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.find(Member.class, replicaMember.getId()).setAge(99);
+            em.flush();
+            status.setRollbackOnly();
+        });
+
+        assertThat(replica.findMemberById(replicaMember.getId())).get().extracting(MemberView::getAge).isEqualTo(10);
+    }
+
+    @Test
+    void bulkUpdateRefreshesOnlyMatchedMembers() throws InterruptedException {
+        // 주입받은 팩토리의 update도 BulkDmlExecutor를 지난다. (MemberAgeCoalescer flush와 같은 모양)
+        transactionTemplate.executeWithoutResult(status -> queryFactory
+                .update(member)
+                .set(member.age, 30)
+                .where(member.id.in(replicaMember.getId()))
+                .execute());
+
+        // 전체를 다시 읽지 않으니 스냅샷은 비지 않는다.
+        assertThat(replica.isLoaded()).isTrue();
+        for (int i = 0; i < 500 && replica.findMemberById(replicaMember.getId()).get().getAge() != 30; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(replica.findMemberById(replicaMember.getId())).get().extracting(MemberView::getAge).isEqualTo(30);
+    }
+
+    @Test
+    void reloadAfterUnconditionedBulkUpdate() throws InterruptedException {
+        transactionTemplate.executeWithoutResult(status ->
+                bulkDmlExecutor.update(team, null, update -> update.set(team.memberCount, team.memberCount)));
+
+        awaitLoaded();
+        assertThat(replica.findTeamByName("replicaTeam")).contains(new TeamView(replicaTeam.getId(), "replicaTeam"));
+    }
+
+    private void awaitLoaded() throws InterruptedException {
+        for (int i = 0; i < 500 && !replica.isLoaded(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(replica.isLoaded()).isTrue();
+    }
+}
@@ -0,0 +1,61 @@
+package study.querydsl.replica;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ReplicaSnapshotTest {
+
+    ReplicaSnapshot base() {
+        return ReplicaSnapshot.of(
+                new long[]{1, 3, 5}, new String[]{"a", "b", "c"}, new int[]{10, 30, 50},
+                new long[]{100, ReplicaSnapshot.NO_TEAM, 100},
+                new long[]{100, 200}, new String[]{"teamA", "teamB"});
+    }
+
+    @Test
+    void overlayIsFoundByName() {
+        ReplicaSnapshot snapshot = base()
+                .withMember(7, new MemberView(7L, "a", 70, null))  // 이름이 겹친다.
+                .withMember(3, new MemberView(3L, "d", 31, 200L)) // b -> d
+                .withTeam(300, new TeamView(300L, "teamC"));
+
+        assertThat(snapshot.membersByUsername("a")).extracting(MemberView::getId).containsExactlyInAnyOrder(1L, 7L);
+        assertThat(snapshot.membersByUsername("b")).isEmpty();
+        assertThat(snapshot.membersByUsername("d")).extracting(MemberView::getAge).containsExactly(31);
+        assertThat(snapshot.teamsByName("teamC")).extracting(TeamView::getId).containsExactly(300L);
+
+        // 다시 바꾸면 이전 이름에서 빠진다.
+        snapshot = snapshot.withMember(7, new MemberView(7L, "e", 70, null)).withMember(3, null);
+        assertThat(snapshot.membersByUsername("a")).extracting(MemberView::getId).containsExactly(1L);
+        assertThat(snapshot.membersByUsername("d")).isEmpty();
+        assertThat(snapshot.membersByUsername("e")).extracting(MemberView::getId).containsExactly(7L);
+    }
+
+    @Test
+    void compactMergesOverlayInIdOrder() {
+        ReplicaSnapshot snapshot = base()
+                .withMember(0, new MemberView(0L, "first", 1, null)) // 맨 앞
+                .withMember(3, null)                                 // 삭제
+                .withMember(4, new MemberView(4L, "middle", 40, 200L))
+                .withMember(5, new MemberView(5L, "c2", 51, null))   // 수정
+                .withMember(9, new MemberView(9L, "last", 90, 100L)) // 맨 뒤
+                .withMember(8, null)                                 // 없는 행 삭제
+                .withTeam(100, null)
+                .withTeam(150, new TeamView(150L, "teamM"));
+
+        ReplicaSnapshot compacted = snapshot.compact();
+
+        assertThat(compacted.overlaySize()).isZero();
+        assertThat(compacted.memberCount()).isEqualTo(snapshot.memberCount()).isEqualTo(5);
+        for (long id = 0; id <= 9; id++) {
+            assertThat(compacted.member(id)).as("member %d", id).isEqualTo(snapshot.member(id));
+        }
+        assertThat(compacted.membersByUsername("c2")).extracting(MemberView::getAge).containsExactly(51);
+        assertThat(compacted.member(1).getTeamId()).isEqualTo(100L);
+        assertThat(compacted.member(0).getTeamId()).isNull();
+        assertThat(compacted.team(100)).isNull();
+        assertThat(compacted.teamsByName("teamM")).extracting(TeamView::getId).containsExactly(150L);
+        assertThat(compacted.team(200).getName()).isEqualTo("teamB");
+    }
+}
@@ -0,0 +1,54 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.repository.MemberSearchPredicates.*;
+
+@SpringBootTest
+@Transactional
+class DerivedColumnTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Test
+    void derivedColumnsFollowBulkUpdate() {
+        em.persist(new Member(" Member1 ", 19));
+        em.persist(new Member("member2", 25));
+        em.persist(new Member("member3", 31));
+        em.flush();
+        em.clear();
+
+        Member loaded = queryFactory.selectFrom(member).where(usernameKeyEq("MEMBER1")).fetchOne();
+        assertThat(loaded.getUsernameKey()).isEqualTo("member1");
+        assertThat(loaded.getAgeBracket()).isEqualTo(10);
+
+        // 벌크 연산으로 나이를 바꿔도 구간은 DB가 다시 계산한다.
+        queryFactory
+                .update(member)
+                .set(member.age, member.age.add(1))
+                .execute();
+        em.clear();
+
+        List<String> twenties = queryFactory
+                .select(member.username)
+                .from(member)
+                .where(ageBracketEq(29))
+                .orderBy(member.ageBracket.asc(), member.username.asc())
+                .fetch();
+        assertThat(twenties).containsExactly(" Member1 ", "member2");
+    }
+}
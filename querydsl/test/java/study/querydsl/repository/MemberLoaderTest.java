@@ -0,0 +1,57 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.InListSupport;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class MemberLoaderTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberLoader memberLoader;
+
+    @Test
+    void findAllById() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            Member member = new Member("member" + i, i);
+            em.persist(member);
+            ids.add(member.getId());
+        }
+        em.flush();
+        em.clear();
+
+        // 영속성 컨텍스트에 미리 올려둔 회원은 그 인스턴스가 그대로 나와야 한다.
+        Member managed = em.find(Member.class, ids.get(5));
+
+        List<Long> request = new ArrayList<>(ids);
+        request.add(ids.get(5)); // 중복
+        request.add(-1L);        // 없는 id
+
+        List<Member> result = memberLoader.findAllById(request);
+
+        assertThat(result).hasSize(1200);
+        assertThat(result.get(5)).isSameAs(managed);
+        assertThat(result).extracting("id").containsExactlyElementsOf(ids);
+    }
+
+    @Test
+    void chunksKeepOrder() {
+        assertThat(InListSupport.chunks(Arrays.asList(1, 2, 3, 4, 5), 2)).containsExactly(
+                Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5));
+    }
+}
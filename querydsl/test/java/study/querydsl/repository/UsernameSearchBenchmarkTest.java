@@ -0,0 +1,103 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.repository.MemberSearchPredicates.*;
+
+/**
+ * username 부분 검색 : trigram 인덱스 vs like '%x%'
+ * 회원 수는 -Dbench.members=1000000 으로 바꾼다. (기본은 테스트가 금방 끝나게 작게)
+ *
+ * 데이터를 많이 넣고 재는 테스트라 -Dbenchmark=true 로 켤 때만 돈다. 결과 확인은 UsernameSearchTest가 기본으로 돈다.
+ */
+@SpringBootTest
+@Transactional
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class UsernameSearchBenchmarkTest {
+
+    static final int MEMBERS = Integer.getInteger("bench.members", 10_000);
+    static final int REPEAT = 20;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void beforeEach() {
+        Random random = new Random(42);
+        for (int i = 0; i < MEMBERS; i++) {
+            em.persist(new Member(randomName(random) + i, random.nextInt(80)));
+            if ((i + 1) % 1000 == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.persist(new Member("needleMember", 30));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void prefix() {
+        List<Member> like = measure("prefix like", () -> search(member.username.like("needle%")));
+        List<Member> indexed = measure("prefix index", () -> search(usernameStartsWith("needle")));
+
+        assertThat(indexed).hasSameSizeAs(like);
+        assertThat(indexed).extracting("username").containsExactly("needleMember");
+    }
+
+    @Test
+    public void substring() {
+        List<Member> like = measure("substring like", () -> search(member.username.lower().like("%dlemem%")));
+        List<Member> trigram = measure("substring trigram", () -> search(usernameContains("dleMem")));
+
+        assertThat(trigram).extracting("username").containsExactly("needleMember");
+        assertThat(like).hasSameSizeAs(trigram);
+    }
+
+    private List<Member> search(BooleanExpression... predicates) {
+        return queryFactory
+                .selectFrom(member)
+                .where(predicates)
+                .fetch();
+    }
+
+    private List<Member> measure(String name, Supplier<List<Member>> query) {
+        List<Member> result = query.get(); // 워밍업
+        long start = System.nanoTime();
+        for (int i = 0; i < REPEAT; i++) {
+            result = query.get();
+            em.clear();
+        }
+        long avgMicros = (System.nanoTime() - start) / REPEAT / 1000;
+        System.out.println(name + " : members = " + MEMBERS + ", avg = " + avgMicros + "us, hits = " + result.size());
+        return result;
+    }
+
+    private static String randomName(Random random) {
+        char[] chars = new char[6];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,101 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.repository.MemberSearchPredicates.*;
+
+/**
+ * usernameStartsWith, usernameContains 결과 확인. 속도 비교는 UsernameSearchBenchmarkTest
+ */
+@SpringBootTest
+@Transactional
+public class UsernameSearchTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void beforeEach() {
+        em.persist(new Member("needleMember", 30));
+        em.persist(new Member("haystackMember", 30));
+        em.persist(new Member("NEEDLEcase", 40));
+        em.persist(new Member("ne", 50));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void prefix() {
+        assertThat(search(usernameStartsWith("needle"))).extracting("username").containsExactly("needleMember");
+        assertThat(search(usernameStartsWith("needle"))).hasSameSizeAs(search(member.username.like("needle%")));
+    }
+
+    @Test
+    public void substring() {
+        // 대소문자 구분 없이 찾는다.
+        assertThat(search(usernameContains("dleMem"))).extracting("username").containsExactly("needleMember");
+        assertThat(search(usernameContains("EEDLE"))).extracting("username").containsExactlyInAnyOrder("needleMember", "NEEDLEcase");
+        assertThat(search(usernameContains("dleMem"))).hasSameSizeAs(search(member.username.lower().like("%dlemem%")));
+    }
+
+    @Test
+    public void shortFragmentFallsBackToLike() {
+        // 3글자 미만은 trigram이 없으니 like로 찾는다.
+        assertThat(search(usernameContains("ne"), member.age.eq(50))).extracting("username").containsExactly("ne");
+    }
+
+    @Test
+    public void composable() {
+        // 다른 조건이랑 그대로 섞어 쓸 수 있다.
+        List<Member> result = search(usernameContains("needle").and(member.age.eq(30)));
+        assertThat(result).extracting("username").containsExactly("needleMember");
+
+        assertThat(search(usernameContains(null), member.username.eq("needleMember"))).hasSize(1);
+    }
+
+    @Test
+    public void bulkRenameRebuildsGrams() {
+        queryFactory
+                .update(member)
+                .set(member.username, "renamedMember")
+                .where(member.username.eq("needleMember"))
+                .execute();
+
+        assertThat(search(usernameContains("dleMem"))).isEmpty();
+        assertThat(search(usernameContains("amedMem"))).extracting("username").containsExactly("renamedMember");
+        // 안 바뀐 회원의 trigram은 그대로
+        assertThat(search(usernameContains("stackMem"))).extracting("username").containsExactly("haystackMember");
+    }
+
+    @Test
+    public void unconditionedBulkRenameRebuildsAllGrams() {
+        queryFactory
+                .update(member)
+                .set(member.username, member.username.concat("Zq"))
+                .execute();
+
+        assertThat(search(usernameContains("caseZq"))).extracting("username").containsExactly("NEEDLEcaseZq");
+    }
+
+    private List<Member> search(BooleanExpression... predicates) {
+        return queryFactory
+                .selectFrom(member)
+                .where(predicates)
+                .fetch();
+    }
+}
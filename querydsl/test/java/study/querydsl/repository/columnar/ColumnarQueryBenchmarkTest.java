@@ -0,0 +1,140 @@
+package study.querydsl.repository.columnar;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+
+/**
+ * List<Tuple> vs 컬럼 배열 (ColumnarQuery)
+ * 팀별 평균 나이 + 전체 나이 합계를 두 방식으로 구해서 시간, 할당 바이트를 비교한다.
+ * 회원 수는 -Dbench.members=2000000 처럼 바꿀 수 있다. (기본 200,000)
+ *
+ * 힙, 시간 비교는 장비마다 달라서 기본 빌드에서는 돌리지 않는다. (-Dbenchmark=true)
+ * 결과가 Tuple과 같은지는 ColumnarQueryTest가 기본으로 확인한다.
+ */
+@SpringBootTest
+@Transactional
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ColumnarQueryBenchmarkTest {
+
+    static final int MEMBERS = Integer.getInteger("bench.members", 200_000);
+    static final int TEAMS = 50;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void beforeEach() {
+        Team[] teams = new Team[TEAMS];
+        for (int i = 0; i < TEAMS; i++) {
+            teams[i] = new Team("team" + i);
+            em.persist(teams[i]);
+        }
+        for (int i = 0; i < MEMBERS; i++) {
+            // 10명 중 1명은 팀이 없다. team.members 컬렉션은 안 채운다.
+            Member member = new Member("member" + i, i % 100);
+            member.setTeam(i % 10 == 0 ? null : teams[i % TEAMS]);
+            em.persist(member);
+            if ((i + 1) % 1000 == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void compareWithTuple() {
+        for (int i = 0; i < 3; i++) { // 워밍업
+            tupleAggregation();
+            columnarAggregation();
+            em.clear();
+        }
+
+        Object tupleResult = measure("tuple", this::tupleAggregation);
+        Object columnarResult = measure("columnar", this::columnarAggregation);
+        assertThat(columnarResult).isEqualTo(tupleResult);
+    }
+
+    private Object tupleAggregation() {
+        List<Tuple> tuples = queryFactory
+                .select(member.age, team.name)
+                .from(member)
+                .leftJoin(member.team, team)
+                .fetch();
+        long sum = 0;
+        for (Tuple tuple : tuples) {
+            sum += tuple.get(member.age);
+        }
+        return Arrays.asList(sum, tupleTeamAvg(tuples));
+    }
+
+    private Object columnarAggregation() {
+        ColumnarResult columns = ColumnarQuery.fetch(queryFactory
+                .select(member.age, team.name)
+                .from(member)
+                .leftJoin(member.team, team));
+        IntColumn age = columns.intColumn(member.age);
+        return Arrays.asList(age.sum(), columns.stringColumn(team.name).groupAvg(age));
+    }
+
+    private Map<String, Double> tupleTeamAvg(List<Tuple> tuples) {
+        Map<String, long[]> sumAndCount = new HashMap<>();
+        for (Tuple tuple : tuples) {
+            String teamName = tuple.get(team.name);
+            if (teamName != null) {
+                long[] acc = sumAndCount.computeIfAbsent(teamName, key -> new long[2]);
+                acc[0] += tuple.get(member.age);
+                acc[1]++;
+            }
+        }
+        Map<String, Double> avg = new LinkedHashMap<>();
+        for (int i = 0; i < TEAMS; i++) {
+            long[] acc = sumAndCount.get("team" + i);
+            avg.put("team" + i, (double) acc[0] / acc[1]);
+        }
+        return avg;
+    }
+
+    private Object measure(String name, Supplier<Object> aggregation) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        em.clear();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        Object result = aggregation.get();
+        long elapsedNs = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.println(String.format("%-10s rows = %d elapsed = %dms (%.0f rows/s) alloc/row = %.1f bytes",
+                name, MEMBERS, elapsedNs / 1_000_000, MEMBERS / (elapsedNs / 1_000_000_000.0), allocated / (double) MEMBERS));
+        return result;
+    }
+}
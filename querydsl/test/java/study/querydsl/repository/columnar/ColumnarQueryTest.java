@@ -0,0 +1,101 @@
+package study.querydsl.repository.columnar;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+
+/**
+ * ColumnarQuery 결과가 List<Tuple>과 같은지. 시간, 할당 비교는 ColumnarQueryBenchmarkTest
+ */
+@SpringBootTest
+@Transactional
+public class ColumnarQueryTest {
+
+    static final int MEMBERS = 200;
+    static final int TEAMS = 4;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void beforeEach() {
+        Team[] teams = new Team[TEAMS];
+        for (int i = 0; i < TEAMS; i++) {
+            teams[i] = new Team("columnarTeam" + i);
+            em.persist(teams[i]);
+        }
+        for (int i = 0; i < MEMBERS; i++) {
+            // 10명 중 1명은 팀이 없다.
+            Member newMember = new Member("columnarMember" + i, i % 100);
+            newMember.setTeam(i % 10 == 0 ? null : teams[i % TEAMS]);
+            em.persist(newMember);
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void columnarMatchesTuple() {
+        ColumnarResult columns = ColumnarQuery.fetch(queryFactory
+                .select(member.id, member.age, member.username, team.name)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.username.startsWith("columnarMember"))
+                .orderBy(member.id.asc()));
+        List<Tuple> tuples = queryFactory
+                .select(member.id, member.age, member.username, team.name)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.username.startsWith("columnarMember"))
+                .orderBy(member.id.asc())
+                .fetch();
+
+        assertThat(columns.size()).isEqualTo(tuples.size()).isEqualTo(MEMBERS);
+        for (int row = 0; row < tuples.size(); row++) {
+            Tuple tuple = tuples.get(row);
+            assertThat(columns.longColumn(member.id).get(row)).isEqualTo(tuple.get(member.id));
+            assertThat(columns.intColumn(member.age).get(row)).isEqualTo(tuple.get(member.age));
+            assertThat(columns.stringColumn(member.username).get(row)).isEqualTo(tuple.get(member.username));
+            assertThat(columns.stringColumn(team.name).get(row)).isEqualTo(tuple.get(team.name));
+        }
+        assertThat(columns.stringColumn(team.name).cardinality()).isEqualTo(TEAMS);
+        assertThat(columns.stringColumn(team.name).groupAvg(columns.intColumn(member.age)))
+                .isEqualTo(tupleTeamAvg(tuples));
+    }
+
+    private Map<String, Double> tupleTeamAvg(List<Tuple> tuples) {
+        Map<String, long[]> sumAndCount = new LinkedHashMap<>();
+        for (Tuple tuple : tuples) {
+            String teamName = tuple.get(team.name);
+            if (teamName != null) {
+                long[] acc = sumAndCount.computeIfAbsent(teamName, key -> new long[2]);
+                acc[0] += tuple.get(member.age);
+                acc[1]++;
+            }
+        }
+        Map<String, Double> avg = new LinkedHashMap<>();
+        for (int i = 0; i < TEAMS; i++) {
+            long[] acc = sumAndCount.get("columnarTeam" + i);
+            avg.put("columnarTeam" + i, (double) acc[0] / acc[1]);
+        }
+        return avg;
+    }
+}
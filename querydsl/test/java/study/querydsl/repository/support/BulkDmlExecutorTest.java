@@ -0,0 +1,89 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+
+@SpringBootTest
+@Transactional
+class BulkDmlExecutorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    BulkDmlExecutor bulkDmlExecutor;
+
+    Team teamA;
+    Member member1;
+    Member member2;
+    Member member3;
+
+    @BeforeEach
+    void beforeEach() {
+        teamA = new Team("teamA");
+        em.persist(teamA);
+        member1 = new Member("member1", 10, teamA);
+        member2 = new Member("member2", 20, teamA);
+        member3 = new Member("member3", 30, teamA);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+    }
+
+    @Test
+    void bulkUpdateEvictsOnlyMatchedEntities() {
+        // QueryDslBasicTest.bulkUpdate 와 같은 상황. em.flush(); em.clear(); 없이 결과가 맞아야 한다.
+        long count = bulkDmlExecutor.update(member, member.age.lt(28),
+                update -> update.set(member.username, "비회원"));
+
+        assertThat(count).isEqualTo(2);
+        assertThat(em.contains(member1)).isFalse();
+        assertThat(em.contains(member2)).isFalse();
+        assertThat(em.contains(member3)).isTrue(); // 상관없는 엔티티는 그대로
+        assertThat(em.contains(teamA)).isTrue();
+
+        assertThat(queryFactory.selectFrom(member).orderBy(member.age.asc()).fetch())
+                .extracting("username")
+                .containsExactly("비회원", "비회원", "member3");
+    }
+
+    @Test
+    void factoryUpdateGoesThroughExecutor() {
+        // 주입받은 팩토리로 날린 벌크 update도 BulkDmlExecutor를 지난다.
+        long count = queryFactory
+                .update(member)
+                .set(member.age, member.age.add(1))
+                .where(member.username.eq("member1"))
+                .execute();
+
+        assertThat(count).isEqualTo(1);
+        assertThat(em.contains(member1)).isFalse();
+        assertThat(em.contains(member2)).isTrue();
+        assertThat(em.find(Member.class, member1.getId()).getAge()).isEqualTo(11);
+    }
+
+    @Test
+    void bulkDeleteWithoutPredicateEvictsWholeType() {
+        long count = bulkDmlExecutor.delete(member, null);
+
+        assertThat(count).isEqualTo(3);
+        assertThat(em.contains(member1)).isFalse();
+        assertThat(em.contains(member3)).isFalse();
+        assertThat(em.contains(teamA)).isTrue();
+        assertThat(em.find(Member.class, member1.getId())).isNull();
+    }
+}
@@ -0,0 +1,107 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+
+@SpringBootTest
+@Transactional
+class QueryAdmissionGuardTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TableStats tableStats;
+
+    @BeforeEach
+    void beforeEach() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+        em.clear();
+        tableStats.refresh();
+    }
+
+    @Test
+    void rejectCartesianProduct() {
+        QuerydslQueryFactory queryFactory = factory("reject", 4, 1000, 1_000_000);
+
+        assertThatThrownBy(() -> queryFactory
+                .select(member)
+                .from(member, team)
+                .where(member.username.eq(team.name))
+                .fetch())
+                .isInstanceOf(QueryRejectedException.class)
+                .extracting("violations").asList().containsExactly(QueryAdmissionGuard.Violation.CARTESIAN_PRODUCT);
+    }
+
+    @Test
+    void rejectCollectionFetchJoinWithPaging() {
+        QuerydslQueryFactory queryFactory = factory("reject", 4, 1000, 1_000_000);
+
+        assertThatThrownBy(() -> queryFactory
+                .selectFrom(team)
+                .join(team.members, member).fetchJoin()
+                .limit(1)
+                .fetch())
+                .isInstanceOf(QueryRejectedException.class)
+                .hasMessageContaining("FETCH_JOIN_PAGING");
+
+        // to-one fetch join 페이징은 괜찮다.
+        assertThat(queryFactory
+                .selectFrom(member)
+                .join(member.team, team).fetchJoin()
+                .limit(1)
+                .fetch()).hasSize(1);
+    }
+
+    @Test
+    void rejectTooManyJoins() {
+        QuerydslQueryFactory queryFactory = factory("reject", 0, 1000, 1_000_000);
+
+        assertThatThrownBy(() -> queryFactory
+                .selectFrom(member)
+                .join(member.team, team)
+                .fetch())
+                .hasMessageContaining("TOO_MANY_JOINS");
+    }
+
+    @Test
+    void capUnboundedScan() {
+        // 회원 4명, 큰 테이블 기준 2명 -> limit 없는 전체 조회는 3건으로 잘린다.
+        QuerydslQueryFactory queryFactory = factory("cap", 4, 3, 2);
+
+        assertThat(queryFactory.selectFrom(member).fetch()).hasSize(3);
+        assertThat(queryFactory.selectFrom(member).where(member.age.goe(10)).fetch()).hasSize(4);
+        assertThat(queryFactory.selectFrom(member).fetchCount()).isEqualTo(4);
+        assertThat(QueryAdmissionGuard.unguarded(() -> queryFactory.selectFrom(member).fetch())).hasSize(4);
+    }
+
+    @Test
+    void logModeRunsEverything() {
+        QuerydslQueryFactory queryFactory = factory("log", 0, 1, 1);
+
+        assertThat(queryFactory.select(member).from(member, team).fetch()).hasSize(8);
+    }
+
+    private QuerydslQueryFactory factory(String mode, int maxJoins, long cap, long largeTableRows) {
+        return new QuerydslQueryFactory(em, new QueryAdmissionGuard(mode, maxJoins, cap, largeTableRows, tableStats));
+    }
+}
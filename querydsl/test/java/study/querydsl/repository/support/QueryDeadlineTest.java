@@ -0,0 +1,87 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.QueryTimeoutException;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+
+@SpringBootTest
+@Transactional
+class QueryDeadlineTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    QuerydslQueryFactory queryFactory;
+
+    @BeforeEach
+    void beforeEach() {
+        em.persist(new Team("teamA"));
+        em.persist(new Member("teamA", 10));
+        em.persist(new Member("member1", 20));
+        em.flush();
+    }
+
+    @AfterEach
+    void afterEach() {
+        QueryDeadline.clear();
+    }
+
+    @Test
+    void withinDeadline() {
+        QueryDeadline.start(5_000);
+
+        assertThat(thetaJoin().fetch()).extracting("username").containsExactly("teamA");
+    }
+
+    @Test
+    void expiredDeadlineFailsWithoutTouchingDatabase() {
+        JPAQuery<Member> query = thetaJoin();
+        String shape = query.toString();
+        long before = queryFactory.getTimeouts().getTimeouts(shape);
+
+        QueryDeadline.start(0);
+
+        assertThatThrownBy(query::fetch).isInstanceOf(QueryTimeoutException.class);
+        assertThat(queryFactory.getTimeouts().getTimeouts(shape)).isEqualTo(before + 1);
+    }
+
+    @Test
+    void cancelledFromAnotherThread() throws InterruptedException {
+        QueryDeadline deadline = QueryDeadline.start(60_000);
+        Thread canceller = new Thread(deadline::cancel);
+        canceller.start();
+        canceller.join();
+
+        assertThatThrownBy(() -> thetaJoin().fetch())
+                .isInstanceOf(QueryTimeoutException.class)
+                .hasMessageContaining("cancelled");
+    }
+
+    @Test
+    void noDeadlineNoTimeout() {
+        assertThat(QueryDeadline.current()).isNull();
+        assertThat(thetaJoin().fetch()).hasSize(1);
+    }
+
+    // member x team 카티션 곱을 이름으로 거르는 쿼리
+    private JPAQuery<Member> thetaJoin() {
+        return queryFactory
+                .select(member)
+                .from(member, team)
+                .where(member.username.eq(team.name));
+    }
+}
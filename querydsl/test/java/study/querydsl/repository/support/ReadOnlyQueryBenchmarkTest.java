@@ -0,0 +1,104 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+
+/**
+ * 읽기 전용 쿼리 모드 측정
+ * 회원 N명(기본 100,000, -Dbench.members 로 변경)을 영속성 컨텍스트에 올려둔 상태에서
+ * 일반 조회 vs 읽기 전용 조회의 힙 사용량과 flush 시간을 비교한다.
+ *
+ * -Dbenchmark=true 일 때만 돈다. 읽기 전용 동작 자체는 ReadOnlyQueryTest가 기본으로 확인한다.
+ */
+@SpringBootTest
+@Transactional
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ReadOnlyQueryBenchmarkTest {
+
+    static final int MEMBERS = Integer.getInteger("bench.members", 100_000);
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    QuerydslQueryFactory queryFactory;
+
+    @BeforeEach
+    public void beforeEach() {
+        for (int i = 0; i < MEMBERS; i++) {
+            em.persist(new Member("member" + i, i % 100));
+            if ((i + 1) % 1000 == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void heapAndFlush() {
+        Result managed = measure("managed", queryFactory);
+        em.clear();
+        Result readOnly = measure("read-only", queryFactory.readOnly());
+
+        System.out.println("managed   = " + managed);
+        System.out.println("read-only = " + readOnly);
+    }
+
+    private Result measure(String name, QuerydslQueryFactory factory) {
+        long before = usedHeap();
+        List<Member> result = factory
+                .selectFrom(member)
+                .fetch();
+        long heapBytes = usedHeap() - before;
+
+        long start = System.nanoTime();
+        em.flush();
+        long flushMicros = (System.nanoTime() - start) / 1000;
+
+        assertThat(result).hasSize(MEMBERS);
+        return new Result(name, heapBytes, flushMicros, result.size());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static class Result {
+        final String name;
+        final long heapBytes;
+        final long flushMicros;
+        final int rows;
+
+        Result(String name, long heapBytes, long flushMicros, int rows) {
+            this.name = name;
+            this.heapBytes = heapBytes;
+            this.flushMicros = flushMicros;
+            this.rows = rows;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s rows=%d heap=%.1fMB (%d bytes/entity) flush=%dus",
+                    name, rows, heapBytes / 1024.0 / 1024.0, heapBytes / Math.max(rows, 1), flushMicros);
+        }
+    }
+}
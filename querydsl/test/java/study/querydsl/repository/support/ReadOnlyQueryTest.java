@@ -0,0 +1,71 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+
+/**
+ * 읽기 전용 모드로 읽은 엔티티는 바꿔도 DB에 안 나간다. 힙, flush 시간 비교는 ReadOnlyQueryBenchmarkTest
+ */
+@SpringBootTest
+@Transactional
+public class ReadOnlyQueryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    QuerydslQueryFactory queryFactory;
+
+    Member member1;
+
+    @BeforeEach
+    public void beforeEach() {
+        member1 = new Member("readOnlyMember1", 1);
+        em.persist(member1);
+        em.persist(new Member("readOnlyMember2", 2));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void readOnlyEntitiesAreNotDirtyChecked() {
+        Member findMember = queryFactory.readOnly()
+                .selectFrom(member)
+                .where(member.username.eq("readOnlyMember1"))
+                .fetchOne();
+
+        // 읽기 전용이라 값을 바꿔도 update가 안 나간다.
+        findMember.setAge(999);
+        em.flush();
+        em.clear();
+
+        Integer age = queryFactory
+                .select(member.age)
+                .from(member)
+                .where(member.username.eq("readOnlyMember1"))
+                .fetchOne();
+        assertThat(age).isEqualTo(1);
+    }
+
+    @Test
+    public void readOnlySession() {
+        queryFactory.readOnlySession(() -> {
+            Member loaded = em.find(Member.class, member1.getId());
+            loaded.setAge(999);
+            return loaded;
+        });
+        em.flush();
+        em.clear();
+
+        assertThat(em.find(Member.class, member1.getId()).getAge()).isEqualTo(1);
+    }
+}
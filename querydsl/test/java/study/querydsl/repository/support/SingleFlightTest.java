@@ -0,0 +1,162 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.QueryTimeoutException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SingleFlightTest {
+
+    static final int CALLERS = 32;
+
+    @Test
+    void concurrentCallsShareOneExecution() throws Exception {
+        SingleFlight<String, List<String>> flight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> flight.execute("member1", () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return Collections.singletonList("member1");
+                })));
+            }
+
+            // 전부 leader 실행에 얹힐 때까지 기다렸다가 풀어준다.
+            while (flight.getCoalesced() < CALLERS - 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            List<String> first = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<List<String>> future : futures) {
+                assertThat(future.get(5, TimeUnit.SECONDS)).isSameAs(first);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(flight.getExecuted()).isEqualTo(1);
+        assertThat(flight.getCoalesced()).isEqualTo(CALLERS - 1);
+        assertThat(flight.getInFlight()).isZero();
+
+        // 끝난 뒤에는 다시 실행한다. (캐시 아님)
+        flight.execute("member1", () -> Collections.singletonList("again"));
+        assertThat(flight.getExecuted()).isEqualTo(2);
+    }
+
+    @Test
+    void failureIsSharedAndNotRemembered() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> flight.execute("key", () -> {
+                await(release);
+                throw new IllegalStateException("db down");
+            }));
+            while (flight.getInFlight() == 0) {
+                Thread.sleep(1);
+            }
+            Future<String> follower = executor.submit(() -> flight.execute("key", () -> "never"));
+            while (flight.getCoalesced() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(flight.execute("key", () -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    void followerRetriesWhenLeaderTimesOut() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> flight.execute("key", () -> {
+                loads.incrementAndGet();
+                await(release);
+                throw new QueryTimeoutException("query deadline exceeded");
+            }));
+            while (flight.getInFlight() == 0) {
+                Thread.sleep(1);
+            }
+            Future<String> follower = executor.submit(() -> flight.execute("key", () -> {
+                loads.incrementAndGet();
+                return "retried";
+            }));
+            while (flight.getCoalesced() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(QueryTimeoutException.class);
+            // leader 마감은 follower 탓이 아니다. follower가 leader가 돼서 다시 실행한다.
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("retried");
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void followerWaitsOnlyUntilItsOwnDeadline() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> flight.execute("key", () -> {
+                await(release);
+                return "slow";
+            }));
+            while (flight.getInFlight() == 0) {
+                Thread.sleep(1);
+            }
+            Future<String> follower = executor.submit(() -> {
+                QueryDeadline.start(50);
+                try {
+                    return flight.execute("key", () -> "never");
+                } finally {
+                    QueryDeadline.clear();
+                }
+            });
+
+            assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(QueryTimeoutException.class);
+            release.countDown();
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UserDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 결과 캐시는 커밋된 버전을 보니 테스트 트랜잭션(롤백) 없이 TransactionTemplate으로 커밋한다.
+ */
+@SpringBootTest
+class MemberSearchServiceTest {
+
+    @Autowired
+    MemberSearchService memberSearchService;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    Team searchTeam;
+    Member searchMember;
+
+    @BeforeEach
+    void beforeEach() {
+        transactionTemplate.executeWithoutResult(status -> {
+            searchTeam = new Team("searchServiceTeam");
+            em.persist(searchTeam);
+            searchMember = new Member("searchServiceMember", 10, searchTeam);
+            em.persist(searchMember);
+        });
+    }
+
+    @AfterEach
+    void afterEach() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.remove(em.find(Member.class, searchMember.getId()));
+            em.remove(em.find(Team.class, searchTeam.getId()));
+        });
+    }
+
+    @Test
+    void callersDoNotShareDtos() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("searchServiceTeam");
+
+        List<MemberDto> first = memberSearchService.search(condition);
+        first.get(0).setAge(99);
+        List<UserDto> firstUsers = memberSearchService.searchUsers(condition);
+        firstUsers.get(0).setName("changed");
+
+        // 두 번째는 캐시에서 나오지만 앞 호출이 고친 값은 안 보인다.
+        long misses = memberSearchService.getMemberResults().getMisses();
+        List<MemberDto> second = memberSearchService.search(condition);
+        assertThat(memberSearchService.getMemberResults().getMisses()).isEqualTo(misses);
+        assertThat(second).extracting("age").containsExactly(10);
+        assertThat(second.get(0)).isNotSameAs(first.get(0));
+        assertThat(memberSearchService.searchUsers(condition)).extracting("name").containsExactly("searchServiceMember");
+
+        assertThatThrownBy(() -> second.add(new MemberDto("other", 1)))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+}
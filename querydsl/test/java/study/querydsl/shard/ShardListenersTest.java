@@ -0,0 +1,65 @@
+package study.querydsl.shard;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMemberSearchView.*;
+import static study.querydsl.entity.QTeam.*;
+
+/**
+ * ShardConfig로 띄운 샤드에도 Team.memberCount, member_search_view 유지 리스너가 붙는지 본다.
+ */
+@SpringBootTest(properties = {
+        "querydsl.shard.urls=jdbc:h2:mem:shard_listener0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard_listener1;DB_CLOSE_DELAY=-1",
+        "querydsl.shard.ddl-auto=create-drop"})
+class ShardListenersTest {
+
+    @Autowired
+    ShardedQueryExecutor executor;
+
+    @Test
+    void shardWritesMaintainCountAndView() {
+        Long teamId = executor.inShard(1, em -> {
+            Team shardTeam = new Team("shardTeam");
+            em.persist(shardTeam);
+            em.persist(new Member("shardMember1", 10, shardTeam));
+            em.persist(new Member("shardMember2", 20, shardTeam));
+            return shardTeam.getId();
+        });
+
+        executor.inShard(1, em -> {
+            Member moved = em.createQuery("select m from Member m where m.username = 'shardMember2'", Member.class)
+                    .getSingleResult();
+            moved.setAge(21);
+            em.remove(em.createQuery("select m from Member m where m.username = 'shardMember1'", Member.class)
+                    .getSingleResult());
+            return null;
+        });
+
+        assertThat(executor.forTeam(teamId, query -> query
+                .select(team.memberCount)
+                .from(team)
+                .where(team.id.eq(teamId))
+                .fetchOne())).isEqualTo(1);
+        assertThat(executor.forTeam(teamId, query -> query
+                .select(memberSearchView.username, memberSearchView.age, memberSearchView.teamName)
+                .from(memberSearchView)
+                .fetch()))
+                .extracting(row -> row.get(memberSearchView.username) + ":" + row.get(memberSearchView.age)
+                        + ":" + row.get(memberSearchView.teamName))
+                .containsExactly("shardMember2:21:shardTeam");
+    }
+
+    @Test
+    void executorThreadsAreNumbered() {
+        List<String> names = executor.scatter(query -> Thread.currentThread().getName());
+
+        assertThat(names).allMatch(name -> name.matches("shard-query-\\d+"));
+    }
+}
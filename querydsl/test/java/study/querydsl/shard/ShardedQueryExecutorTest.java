@@ -0,0 +1,132 @@
+package study.querydsl.shard;
+
+import com.querydsl.core.Tuple;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QTeam.*;
+
+/**
+ * 메모리 H2 3개를 샤드로 띄워서 라우팅, 정렬 병합, 집계 병합을 확인한다.
+ */
+class ShardedQueryExecutorTest {
+
+    ShardedQueryExecutor executor;
+    Map<String, Long> teamIds = new HashMap<>();
+
+    @BeforeEach
+    void beforeEach() {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            urls.add("jdbc:h2:mem:shard_test" + i + ";DB_CLOSE_DELAY=-1");
+        }
+        executor = new ShardedQueryExecutor(ShardEntityManagerFactories.create(urls, "sa", "", 4,
+                Collections.singletonMap("hibernate.hbm2ddl.auto", "create-drop")));
+
+        // 팀 하나에 회원 2명씩, 팀은 샤드에 돌아가면서 들어간다.
+        int age = 10;
+        for (String teamName : new String[]{"teamA", "teamB", "teamC", "teamD"}) {
+            int shard = executor.shardForNewTeam();
+            int first = age;
+            Long teamId = executor.inShard(shard, em -> {
+                Team newTeam = new Team(teamName);
+                em.persist(newTeam);
+                em.persist(new Member(teamName + "_member1", first, newTeam));
+                em.persist(new Member(teamName + "_member2", first + 5, newTeam));
+                return newTeam.getId();
+            });
+            teamIds.put(teamName, teamId);
+            age += 10;
+        }
+    }
+
+    @AfterEach
+    void afterEach() {
+        executor.close();
+    }
+
+    @Test
+    void routeByTeamId() {
+        assertThat(executor.shardOf(teamIds.get("teamA"))).isEqualTo(0);
+        assertThat(executor.shardOf(teamIds.get("teamB"))).isEqualTo(1);
+        assertThat(executor.shardOf(teamIds.get("teamD"))).isEqualTo(0);
+
+        List<String> usernames = executor.forTeam(teamIds.get("teamB"), query -> query
+                .select(member.username)
+                .from(member)
+                .join(member.team, team)
+                .where(team.id.eq(teamIds.get("teamB")))
+                .orderBy(member.username.asc())
+                .fetch());
+        assertThat(usernames).containsExactly("teamB_member1", "teamB_member2");
+    }
+
+    @Test
+    void orderedMergeWithLimit() {
+        List<Member> oldest = executor.scatterOrdered(query -> query
+                        .selectFrom(member)
+                        .orderBy(member.age.desc())
+                        .limit(3)
+                        .fetch(),
+                Comparator.comparing(Member::getAge).reversed(), 3);
+
+        assertThat(oldest).extracting("age").containsExactly(45, 40, 35);
+    }
+
+    @Test
+    void groupByWithPartialAggregates() {
+        Map<String, PartialAverage> averageAgeByTeam = executor.scatterAggregate(query -> query
+                        .select(team.name, member.age.sum(), member.count())
+                        .from(member)
+                        .join(member.team, team)
+                        .groupBy(team.name)
+                        .fetch(),
+                (Tuple row) -> row.get(team.name),
+                row -> PartialAverage.of(row.get(member.age.sum()), row.get(member.count())),
+                PartialAverage::combine);
+
+        assertThat(averageAgeByTeam).hasSize(4);
+        assertThat(averageAgeByTeam.get("teamA").average()).isEqualTo(12.5);
+        assertThat(averageAgeByTeam.get("teamD").average()).isEqualTo(42.5);
+
+        long total = executor.scatter(query -> query.select(member.count()).from(member).fetchOne())
+                .stream().mapToLong(Long::longValue).sum();
+        assertThat(total).isEqualTo(8);
+    }
+
+    @Test
+    void partialAveragesOfAKeySplitAcrossShards() {
+        // teamA(샤드 0, 10살 15살)와 이름이 같은 팀을 샤드 1에 하나 더 둔다. 평균의 평균((12.5 + 60) / 2)이 아니라 205 / 5 여야 한다.
+        executor.inShard(1, em -> {
+            Team otherTeamA = new Team("teamA");
+            em.persist(otherTeamA);
+            for (int age = 50; age <= 70; age += 10) {
+                em.persist(new Member("otherTeamA_member" + age, age, otherTeamA));
+            }
+            return otherTeamA.getId();
+        });
+
+        Map<String, PartialAverage> averageAgeByTeamName = executor.scatterAggregate(query -> query
+                        .select(team.name, member.age.sum(), member.count())
+                        .from(member)
+                        .join(member.team, team)
+                        .groupBy(team.name)
+                        .fetch(),
+                (Tuple row) -> row.get(team.name),
+                row -> PartialAverage.of(row.get(member.age.sum()), row.get(member.count())),
+                PartialAverage::combine);
+
+        PartialAverage teamA = averageAgeByTeamName.get("teamA");
+        assertThat(teamA.getCount()).isEqualTo(5);
+        assertThat(teamA.getSum()).isEqualTo(205.0);
+        assertThat(teamA.average()).isEqualTo(41.0);
+        assertThat(averageAgeByTeamName.get("teamB").average()).isEqualTo(22.5);
+    }
+}
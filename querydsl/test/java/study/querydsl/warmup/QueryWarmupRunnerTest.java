@@ -0,0 +1,59 @@
+package study.querydsl.warmup;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.event.EventListener;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 테스트에서는 워밍업을 꺼두니(test/resources/config/application.yml) 여기서만 켠다.
+ */
+@SpringBootTest(properties = {"querydsl.warmup.enabled=true", "querydsl.warmup.iterations=20"})
+class QueryWarmupRunnerTest {
+
+    /**
+     * readiness가 바뀌는 순간에 워밍업 결과가 이미 채워져 있었는지 적어 둔다.
+     */
+    @TestConfiguration
+    static class ReadinessRecorder {
+
+        final Map<ReadinessState, Set<String>> warmedUpAt = new ConcurrentHashMap<>();
+        private final QueryWarmupRunner warmupRunner;
+
+        ReadinessRecorder(QueryWarmupRunner warmupRunner) {
+            this.warmupRunner = warmupRunner;
+        }
+
+        @EventListener
+        void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+            warmedUpAt.put(event.getState(), new TreeSet<>(warmupRunner.getReport().keySet()));
+        }
+    }
+
+    @Autowired
+    QueryWarmupRunner warmupRunner;
+
+    @Autowired
+    ApplicationAvailability availability;
+
+    @Autowired
+    ReadinessRecorder readinessRecorder;
+
+    @Test
+    void warmedUpBeforeReady() {
+        assertThat(availability.getReadinessState()).isEqualTo(ReadinessState.ACCEPTING_TRAFFIC);
+        assertThat(readinessRecorder.warmedUpAt.get(ReadinessState.ACCEPTING_TRAFFIC))
+                .containsExactlyInAnyOrder("memberSearch", "userSearch", "teams", "memberLoader", "memberPage");
+    }
+}